@@ -0,0 +1,118 @@
+package org.DrawingGame;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * decides in the handshake whether a connection is upgraded, before a player or session exists<br>
+ * a node takes at most {@link ServerConfig#getMaxConnections()} connections, and new ones only at the rate of a
+ * token bucket per remote address and one for the node (see {@link ServerConfig}), so a reconnect storm after a deploy
+ * is spread out instead of stalling the rooms that are already running<br>
+ * the slot of a connection is reserved in the handshake, so concurrent handshakes can't take more than the max<br>
+ * thread-safe, handshakes are checked on the decoder threads of the server
+ */
+public class AdmissionControl {
+    public enum Decision {
+        ADMIT,
+        INVALID, // malformed request or username
+        ADDRESS_RATE_LIMITED, // too many new connections from the address
+        RATE_LIMITED, // too many new connections to the node
+        FULL // the node has the max number of connections
+    }
+
+    private final int maxConnections;
+    private final int addressRate;
+    private final int addressBurst;
+    private final TokenBucket node;
+    private final Map<InetAddress, TokenBucket> addresses = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * @param config limits of the node
+     */
+    public AdmissionControl(ServerConfig config) {
+        this.maxConnections = config.getMaxConnections();
+        this.addressRate = config.getConnectAddressRate();
+        this.addressBurst = config.getConnectAddressBurst();
+        this.node = new TokenBucket(config.getConnectRate(), config.getConnectBurst());
+    }
+
+    /**
+     * reserves a slot and takes a token of the address and of the node for a new connection<br>
+     * a full node takes no tokens, so its clients are not limited further once connections are free again
+     * @param address remote address, null if unknown
+     * @param now {@link System#nanoTime()}
+     * @return whether to upgrade the connection, the slot is only kept for {@link Decision#ADMIT}
+     *         and has to be given back with {@link #release()}
+     */
+    public Decision admit(InetAddress address, long now) {
+        if(!reserve())
+            return Decision.FULL;
+        Decision decision = takeTokens(address, now);
+        if(decision != Decision.ADMIT)
+            connections.decrementAndGet();
+        return decision;
+    }
+
+    /**
+     * @return false if the node is full
+     */
+    private boolean reserve() {
+        while(true) {
+            int current = connections.get();
+            if(maxConnections > 0 && current >= maxConnections)
+                return false;
+            if(connections.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    private Decision takeTokens(InetAddress address, long now) {
+        if(address != null && addressRate > 0) {
+            TokenBucket bucket = addresses.get(address);
+            if(bucket == null) {
+                TokenBucket created = new TokenBucket(addressRate, addressBurst);
+                bucket = addresses.putIfAbsent(address, created);
+                if(bucket == null)
+                    bucket = created;
+            }
+            synchronized (bucket) {
+                if(!bucket.tryAcquire(now))
+                    return Decision.ADDRESS_RATE_LIMITED;
+            }
+        }
+        synchronized (node) {
+            if(!node.tryAcquire(now))
+                return Decision.RATE_LIMITED;
+        }
+        return Decision.ADMIT;
+    }
+
+    /**
+     * gives back the slot of an admitted connection that closed or was refused later in the handshake
+     */
+    public void release() {
+        connections.decrementAndGet();
+    }
+
+    /**
+     * @return admitted connections of players and spectators
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * drops the buckets of addresses that have all their tokens back, called periodically
+     * @param now {@link System#nanoTime()}
+     */
+    public void sweep(long now) {
+        addresses.values().removeIf(bucket -> {
+            synchronized (bucket) {
+                return bucket.isFull(now);
+            }
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package org.DrawingGame;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * message between two nodes of a cluster, see {@link RoomBus}<br>
+ * connections are identified by an id that is unique on the node that holds them
+ */
+public final class BusMessage {
+    public enum Kind {
+        JOIN, // holder -> owner: player joins a room, text is the username, code 1 for the binary codec
+        TEXT, // holder -> owner: text message of a player
+        BINARY, // holder -> owner: binary message of a player
+        LEAVE, // holder -> owner: player disconnected
+        SEND_TEXT, // owner -> holder: text frame for the connections
+        SEND_BINARY, // owner -> holder: binary frame for the connections
+        CLOSE, // owner -> holder: close the connection with code and reason
+        ROOM_CLOSED, // bus -> all nodes: room is gone, its players have to reconnect
+        SPECTATE, // relay -> owner: code 1 asks for the state and the frames of the room for spectators, code 0 stops them
+        SPECTATOR_FRAME // owner -> relay: frames for the spectators of the room, code see SpectatorRelay
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final long[] NO_CONNECTIONS = new long[0];
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final Kind kind;
+    private final String from;
+    private final long room;
+    private final long[] connections;
+    private final String text;
+    private final byte[] data;
+    private final int code;
+
+    private BusMessage(Kind kind, String from, long room, long[] connections, String text, byte[] data, int code) {
+        this.kind = kind;
+        this.from = from;
+        this.room = room;
+        this.connections = connections;
+        this.text = text;
+        this.data = data;
+        this.code = code;
+    }
+
+    public static BusMessage join(String from, long room, long connection, String username, boolean binaryStrokes) {
+        return new BusMessage(Kind.JOIN, from, room, new long[]{connection}, username, NO_DATA, binaryStrokes ? 1 : 0);
+    }
+
+    public static BusMessage text(String from, long room, long connection, String text) {
+        return new BusMessage(Kind.TEXT, from, room, new long[]{connection}, text, NO_DATA, 0);
+    }
+
+    public static BusMessage binary(String from, long room, long connection, ByteBuffer data) {
+        return new BusMessage(Kind.BINARY, from, room, new long[]{connection}, "", copy(data), 0);
+    }
+
+    public static BusMessage leave(String from, long room, long connection) {
+        return new BusMessage(Kind.LEAVE, from, room, new long[]{connection}, "", NO_DATA, 0);
+    }
+
+    public static BusMessage sendText(String from, long[] connections, String text) {
+        return new BusMessage(Kind.SEND_TEXT, from, -1, connections, text, NO_DATA, 0);
+    }
+
+    public static BusMessage sendBinary(String from, long[] connections, ByteBuffer data) {
+        return new BusMessage(Kind.SEND_BINARY, from, -1, connections, "", copy(data), 0);
+    }
+
+    public static BusMessage close(String from, long connection, int code, String reason) {
+        return new BusMessage(Kind.CLOSE, from, -1, new long[]{connection}, reason, NO_DATA, code);
+    }
+
+    public static BusMessage roomClosed(String from, long room) {
+        return new BusMessage(Kind.ROOM_CLOSED, from, room, NO_CONNECTIONS, "", NO_DATA, 0);
+    }
+
+    public static BusMessage spectate(String from, long room, boolean watch) {
+        return new BusMessage(Kind.SPECTATE, from, room, NO_CONNECTIONS, "", NO_DATA, watch ? 1 : 0);
+    }
+
+    public static BusMessage spectatorFrame(String from, long room, String frames, int code) {
+        return new BusMessage(Kind.SPECTATOR_FRAME, from, room, NO_CONNECTIONS, frames, NO_DATA, code);
+    }
+
+    /**
+     * copies the remaining bytes without moving the position, broadcast buffers are shared
+     */
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return id of the sending node
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    /**
+     * @return id of the room, -1 for messages to connections
+     */
+    public long getRoom() {
+        return room;
+    }
+
+    /**
+     * @return ids of the connections on the holding node, must not be modified
+     */
+    public long[] getConnections() {
+        return connections;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return new buffer over the binary payload
+     */
+    public ByteBuffer getData() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * writes the message in the format read by {@link #read(DataInput)}
+     * @param out output to write to
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeUTF(from);
+        out.writeLong(room);
+        out.writeInt(connections.length);
+        for(long connection : connections) {
+            out.writeLong(connection);
+        }
+        // chat and json frames can exceed the 64k limit of writeUTF
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(textBytes.length);
+        out.write(textBytes);
+        out.writeInt(data.length);
+        out.write(data);
+        out.writeInt(code);
+    }
+
+    /**
+     * @param in input to read from
+     * @return message written by {@link #write(DataOutput)}
+     */
+    public static BusMessage read(DataInput in) throws IOException {
+        int kindIdx = in.readUnsignedByte();
+        if(kindIdx >= KINDS.length)
+            throw new IOException("unknown message kind " + kindIdx);
+        String from = in.readUTF();
+        long room = in.readLong();
+        long[] connections = new long[in.readInt()];
+        for(int i = 0; i < connections.length; i++) {
+            connections[i] = in.readLong();
+        }
+        byte[] textBytes = new byte[in.readInt()];
+        in.readFully(textBytes);
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        int code = in.readInt();
+        return new BusMessage(KINDS[kindIdx], from, room, connections,
+                new String(textBytes, StandardCharsets.UTF_8), data, code);
+    }
+}
@@ -0,0 +1,212 @@
+package org.DrawingGame;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * rasterized image of compacted strokes<br>
+ * old strokes are drawn into an in-memory image (headless java.awt), so the stroke history
+ * only has to keep a short tail of recent strokes<br>
+ * the image is allocated by the first compaction and released by {@link #clear()}, drawing and png encoding
+ * run in a {@link Compaction} that may run on another thread, everything else belongs to the session
+ */
+public class CanvasSnapshot {
+    public static final int WIDTH = 1280;
+    public static final int HEIGHT = 720;
+
+    private BufferedImage image = null; // null until the first compaction and after a clear
+    private byte[] png = null; // encoded image, null if nothing was compacted
+    private int generation = 0; // incremented by clear, compactions of a cleared drawing are dropped
+
+    /**
+     * copies strokes of the store to draw into the image<br>
+     * the image is only handed to the compaction, start the next one after this one was published
+     * @param strokes stroke store
+     * @param from index of the first stroke (inclusive)
+     * @param to index of the last stroke (exclusive)
+     * @return compaction to run, on any thread
+     */
+    public Compaction compact(StrokeBuffer strokes, int from, int to) {
+        return new Compaction(generation, image, strokes, from, to);
+    }
+
+    /**
+     * @param compaction compaction started by {@link #compact(StrokeBuffer, int, int)}
+     * @return false if the drawing was cleared since the compaction was started
+     */
+    public boolean isCurrent(Compaction compaction) {
+        return compaction.generation == generation;
+    }
+
+    /**
+     * takes over the image of a finished compaction
+     * @param compaction compaction that ran
+     * @return false if the drawing was cleared since the compaction was started or it failed
+     */
+    public boolean publish(Compaction compaction) {
+        if(compaction.generation != generation || compaction.png == null)
+            return false;
+        image = compaction.image;
+        png = compaction.png;
+        return true;
+    }
+
+    /**
+     * @return true if nothing was compacted since the last clear
+     */
+    public boolean isEmpty() {
+        return png == null;
+    }
+
+    /**
+     * @return image encoded as png by the last compaction, null if empty
+     */
+    public byte[] toPng() {
+        return png;
+    }
+
+    /**
+     * replaces the image with a png encoded by a compaction, used to restore a session from the journal
+     * @param png encoded image
+     * @throws IOException if the png can not be decoded
+     */
+    public void load(byte[] png) throws IOException {
+        BufferedImage loaded = ImageIO.read(new ByteArrayInputStream(png));
+        if(loaded == null)
+            throw new IOException("snapshot is not a png");
+
+        clear();
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(loaded, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        this.png = png;
+    }
+
+    /**
+     * drops the image, a running compaction is not published
+     */
+    public void clear() {
+        image = null;
+        png = null;
+        generation++;
+    }
+
+    /**
+     * strokes drawn into the image of the snapshot and encoded as png<br>
+     * holds a copy of the strokes, so it can run while the session goes on
+     */
+    public static final class Compaction implements Runnable {
+        private final int generation;
+        private final float[] lines; // x1, y1, x2, y2 per stroke
+        private final int[] widths;
+        private final String[] colors;
+        private final Map<String, Color> colorCache = new HashMap<>();
+        private BufferedImage image; // image of the snapshot, drawn on further
+        private byte[] png = null;
+
+        private Compaction(int generation, BufferedImage image, StrokeBuffer strokes, int from, int to) {
+            this.generation = generation;
+            this.image = image;
+            int count = Math.max(0, to - from);
+            lines = new float[count * 4];
+            widths = new int[count];
+            colors = new String[count];
+            for(int i = 0; i < count; i++) {
+                lines[i * 4] = strokes.x1(from + i);
+                lines[i * 4 + 1] = strokes.y1(from + i);
+                lines[i * 4 + 2] = strokes.x2(from + i);
+                lines[i * 4 + 3] = strokes.y2(from + i);
+                widths[i] = strokes.width(from + i);
+                colors[i] = strokes.color(from + i);
+            }
+        }
+
+        /**
+         * draws the strokes into the image, allocated if there is none yet, and encodes it
+         */
+        @Override
+        public void run() {
+            if(image == null)
+                image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                Line2D.Float line = new Line2D.Float();
+                int lastWidth = -1;
+                for(int i = 0; i < widths.length; i++) {
+                    if(widths[i] != lastWidth) {
+                        lastWidth = widths[i];
+                        g.setStroke(new BasicStroke(lastWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    }
+                    g.setColor(parseColor(colors[i]));
+                    line.setLine(lines[i * 4] * WIDTH, lines[i * 4 + 1] * HEIGHT, lines[i * 4 + 2] * WIDTH, lines[i * 4 + 3] * HEIGHT);
+                    g.draw(line);
+                }
+            } finally {
+                g.dispose();
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                ImageIO.write(image, "png", output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            png = output.toByteArray();
+        }
+
+        /**
+         * @return number of compacted strokes
+         */
+        public int size() {
+            return widths.length;
+        }
+
+        /**
+         * parses css colors in the form rgba(r, g, b, a) or rgb(r, g, b)
+         * @param css css color
+         * @return parsed color or black if it can not be parsed
+         */
+        private Color parseColor(String css) {
+            return colorCache.computeIfAbsent(css, c -> {
+                int start = c.indexOf('(');
+                int end = c.indexOf(')');
+                if(start == -1 || end < start)
+                    return Color.BLACK;
+
+                String[] parts = c.substring(start + 1, end).split(",");
+                try {
+                    int r = Integer.parseInt(parts[0].trim());
+                    int g = Integer.parseInt(parts[1].trim());
+                    int b = Integer.parseInt(parts[2].trim());
+                    int a = parts.length > 3 ? Math.round(Float.parseFloat(parts[3].trim()) * 255) : 255;
+                    return new Color(clamp(r), clamp(g), clamp(b), clamp(a));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    return Color.BLACK;
+                }
+            });
+        }
+
+        private static int clamp(int value) {
+            return Math.max(0, Math.min(255, value));
+        }
+    }
+}
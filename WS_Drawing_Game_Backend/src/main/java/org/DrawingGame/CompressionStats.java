@@ -0,0 +1,58 @@
+package org.DrawingGame;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters of the permessage-deflate compression of outgoing frames, shared by all connections
+ */
+public class CompressionStats {
+    private final LongAdder compressedFrames = new LongAdder();
+    private final LongAdder skippedFrames = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LatencyHistogram time = new LatencyHistogram(); // nanos per compressed frame
+
+    /**
+     * @param before payload size before compression
+     * @param after payload size after compression
+     * @param nanos time spent compressing
+     */
+    public void recordCompressed(int before, int after, long nanos) {
+        compressedFrames.increment();
+        bytesIn.add(before);
+        bytesOut.add(after);
+        time.record(nanos);
+    }
+
+    public void recordSkipped() {
+        skippedFrames.increment();
+    }
+
+    public long getCompressedFrames() {
+        return compressedFrames.sum();
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * @return compressed size divided by uncompressed size of the compressed frames, 1 if none was compressed
+     */
+    public double getRatio() {
+        long in = bytesIn.sum();
+        return in == 0 ? 1 : (double) bytesOut.sum() / in;
+    }
+
+    public LatencyHistogram getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,72 @@
+package org.DrawingGame;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * query parameters of a connection, parsed and checked in the handshake and kept as attachment until the connection opens
+ * @param username decoded username of a player, null for a spectator
+ * @param token token to reclaim a restored player, null if not given
+ * @param spectate id of the room to watch, null for a player
+ * @param binaryStrokes whether the client sends and receives strokes in the binary format
+ */
+record ConnectRequest(String username, String token, Long spectate, boolean binaryStrokes) {
+    /**
+     * @param resourceDescriptor path and query string of the handshake
+     * @param maxUsernameLength max characters of a username
+     * @return parameters of the connection, null if the query is malformed, the room id is not a number
+     * or the username is missing, too long or contains control characters
+     */
+    static ConnectRequest parse(String resourceDescriptor, int maxUsernameLength) {
+        int queryStart = resourceDescriptor.indexOf('?');
+        if(queryStart == -1)
+            return null;
+
+        String username = null;
+        String token = null;
+        String spectate = null;
+        String codec = null;
+        int start = queryStart + 1;
+        while(start < resourceDescriptor.length()) {
+            int end = resourceDescriptor.indexOf('&', start);
+            if(end == -1)
+                end = resourceDescriptor.length();
+            int separator = resourceDescriptor.indexOf('=', start);
+            if(separator != -1 && separator < end) {
+                String value = resourceDescriptor.substring(separator + 1, end);
+                switch (resourceDescriptor.substring(start, separator)) {
+                    case "username" -> username = value;
+                    case "token" -> token = value;
+                    case "spectate" -> spectate = value;
+                    case "codec" -> codec = value;
+                    default -> { }
+                }
+            }
+            start = end + 1;
+        }
+        boolean binaryStrokes = StrokeCodec.QUERY_VALUE.equals(codec);
+
+        if(spectate != null) {
+            try {
+                return new ConnectRequest(null, null, Long.parseLong(spectate), false);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if(username == null)
+            return null;
+        try {
+            username = URLDecoder.decode(username, StandardCharsets.UTF_8); // converts ascii character from url to utf8
+            token = token == null ? null : URLDecoder.decode(token, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null; // broken escape sequence
+        }
+        if(username.isBlank() || username.length() > maxUsernameLength)
+            return null;
+        for(int i = 0; i < username.length(); i++) {
+            if(Character.isISOControl(username.charAt(i)))
+                return null;
+        }
+        return new ConnectRequest(username, token, null, binaryStrokes);
+    }
+}
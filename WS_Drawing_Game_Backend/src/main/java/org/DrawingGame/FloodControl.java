@@ -0,0 +1,52 @@
+package org.DrawingGame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * per-connection budgets for the messages a player sends, so a spamming client can't flood the room<br>
+ * strokes, chat and everything else have a bucket each (see {@link ServerConfig}),
+ * messages over the budget are dropped before they are handled or relayed<br>
+ * not thread-safe, used on the session of the player
+ */
+public class FloodControl {
+    public enum Decision {
+        ALLOW,
+        DROP, // over the budget
+        WARN // over the budget and not warned within the last second, tell the player to slow down
+    }
+
+    private static final int STROKES = 0, CHAT = 1, OTHER = 2;
+    private static final long WARN_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final TokenBucket[] buckets = new TokenBucket[3];
+    private final long[] lastWarning = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE}; // System.nanoTime() per bucket
+
+    /**
+     * @param config budgets of the buckets
+     */
+    public FloodControl(ServerConfig config) {
+        buckets[STROKES] = new TokenBucket(config.getFloodStrokeRate(), config.getFloodStrokeBurst());
+        buckets[CHAT] = new TokenBucket(config.getFloodChatRate(), config.getFloodChatBurst());
+        buckets[OTHER] = new TokenBucket(config.getFloodOtherRate(), config.getFloodOtherBurst());
+    }
+
+    /**
+     * takes a token for the message
+     * @param type type of the message, binary strokes are {@link MessageDecoder.Type#STROKE}
+     * @param now {@link System#nanoTime()}
+     * @return whether to handle the message
+     */
+    public Decision admit(MessageDecoder.Type type, long now) {
+        int bucket = switch (type) {
+            case STROKE -> STROKES;
+            case MESSAGE -> CHAT;
+            default -> OTHER;
+        };
+        if(buckets[bucket].tryAcquire(now))
+            return Decision.ALLOW;
+        if(lastWarning[bucket] != Long.MIN_VALUE && now - lastWarning[bucket] < WARN_INTERVAL)
+            return Decision.DROP;
+        lastWarning[bucket] = now;
+        return Decision.WARN;
+    }
+}
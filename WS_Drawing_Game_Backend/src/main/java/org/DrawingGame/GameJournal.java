@@ -0,0 +1,798 @@
+package org.DrawingGame;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * append-only binary journal of the sessions of this node, replayed on startup to restore them after a crash<br>
+ * sessions append records to an in-memory buffer, a single writer thread writes everything appended since
+ * its last write and syncs it with one fsync (group commit), so the stroke path never waits for the disk<br>
+ * the journal is split into segments: on every checkpoint a new segment is started and each session writes
+ * its full state into it, the older segments are deleted once all sessions did<br>
+ * record: body length (int), crc32c of the body (int), body: type (byte), journal id of the session (long), payload<br>
+ * a torn or corrupt record ends the replay of its segment, records after it are lost
+ */
+public class GameJournal {
+    static final byte OPEN = 1;
+    static final byte JOIN = 2; // player id, points, token, username
+    static final byte LEAVE = 3; // player id
+    static final byte STROKE = 4; // x1, y1, x2, y2, width, color
+    static final byte POLYLINE = 5; // width, color, point count, points
+    static final byte CLEAR = 6;
+    static final byte GUESS = 7; // player id, prepared points
+    static final byte HINT = 8; // position
+    static final byte TURN = 9; // drawer id, round, turns in round, deadline, word, points of all players
+    static final byte STOP = 10;
+    static final byte CLOSE = 11;
+    static final byte CHECKPOINT = 12; // see JournalRoom#write
+
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 8; // length, crc, type, session
+    private static final int CHUNK_SIZE = 1 << 20; // bytes per write buffer
+    private static final long MAX_BUFFERED = 64L << 20; // bytes waiting for the writer before appenders have to wait
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+    private static final int CUSTOM_COLOR = 0xFF; // color byte of colors that are not in the palette
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory; // null if the journal is disabled
+    private final long commitIntervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Chunk> sealed = new ArrayDeque<>(); // filled buffers waiting for the writer
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private final CRC32C crc = new CRC32C();
+    private final Set<Long> openSessions = new HashSet<>();
+    private final Set<Long> awaitingCheckpoint = new HashSet<>(); // sessions that did not write a checkpoint since the last rotation
+    private final AtomicLong nextSessionId = new AtomicLong();
+    private final LatencyHistogram commitTime = new LatencyHistogram(); // nanos to write and sync one batch
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile boolean enabled;
+    private ByteBuffer active = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    private int activeSegment = 0;
+    private int recordStart;
+    private long buffered = 0; // bytes appended but not written yet
+    private int checkpointSegment = 0; // first segment with a checkpoint of every session once awaitingCheckpoint is empty
+    private int deleteBefore = -1; // segments below are deleted by the writer after its next sync
+    private boolean writerWaiting = false;
+    private volatile boolean closed = false;
+    private Thread writer;
+    private FileChannel channel; // only used by the writer
+    private int channelSegment = -1;
+
+    /**
+     * buffer of records that all belong to one segment
+     */
+    private record Chunk(int segment, ByteBuffer data) {
+    }
+
+    /**
+     * writes the payload of a record
+     */
+    private interface Payload {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * @param directory directory of the segments, created if it does not exist, null disables the journal
+     * @param commitIntervalMillis min time between two syncs, appends in between are synced together
+     */
+    public GameJournal(Path directory, long commitIntervalMillis) {
+        this.directory = directory;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis);
+        this.enabled = directory != null;
+    }
+
+    /**
+     * @return true if records are written
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * reads all segments and rebuilds the sessions that were not closed, has to be called before {@link #start()}<br>
+     * the segments are kept until each recovered session is closed in the journal,
+     * the restored sessions take over with a checkpoint under a new journal id first
+     * @return state of the sessions that still had players
+     * @throws IOException if the directory can not be read
+     */
+    public List<JournalRoom> recover() throws IOException {
+        if(directory == null)
+            return List.of();
+        Files.createDirectories(directory);
+
+        List<Integer> segments = listSegments();
+        Map<Long, JournalRoom> rooms = new LinkedHashMap<>();
+        long maxId = -1;
+        for(int segment : segments) {
+            maxId = Math.max(maxId, replay(segmentPath(segment), rooms));
+        }
+        rooms.values().removeIf(room -> room.players.isEmpty());
+        nextSessionId.set(maxId + 1);
+
+        lock.lock();
+        try {
+            activeSegment = segments.isEmpty() ? 0 : segments.getLast() + 1;
+            checkpointSegment = activeSegment;
+            awaitingCheckpoint.addAll(rooms.keySet());
+        } finally {
+            lock.unlock();
+        }
+        if(rooms.isEmpty())
+            deleteSegments(activeSegment);
+        System.out.println("Journal: recovered " + rooms.size() + " sessions from " + segments.size() + " segments");
+        return new ArrayList<>(rooms.values());
+    }
+
+    /**
+     * replays a segment into the rooms
+     * @return highest journal id in the segment, -1 if there is none
+     */
+    private long replay(Path path, Map<Long, JournalRoom> rooms) throws IOException {
+        long maxId = -1;
+        long records = 0;
+        try (InputStream file = Files.newInputStream(path)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16));
+            CRC32C check = new CRC32C();
+            while(true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // end of the segment
+                }
+                if(length < 9 || length > MAX_RECORD_SIZE) {
+                    System.out.println("Journal: corrupt record length in " + path.getFileName() + " after " + records + " records");
+                    break;
+                }
+                int expected = in.readInt();
+                byte[] body = new byte[length];
+                in.readFully(body);
+                check.reset();
+                check.update(body);
+                if((int) check.getValue() != expected) {
+                    System.out.println("Journal: checksum mismatch in " + path.getFileName() + " after " + records + " records");
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte type = record.get();
+                long id = record.getLong();
+                maxId = Math.max(maxId, id);
+                try {
+                    apply(type, id, record, rooms);
+                } catch (RuntimeException e) {
+                    System.out.println("Journal: unreadable record in " + path.getFileName() + " after " + records + " records: " + e);
+                    break;
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            System.out.println("Journal: torn record at the end of " + path.getFileName() + " after " + records + " records");
+        }
+        return maxId;
+    }
+
+    private static void apply(byte type, long id, ByteBuffer payload, Map<Long, JournalRoom> rooms) {
+        switch (type) {
+            case OPEN -> rooms.put(id, new JournalRoom(id));
+            case CLOSE -> rooms.remove(id);
+            case CHECKPOINT -> rooms.put(id, JournalRoom.read(id, payload));
+            default -> {
+                JournalRoom room = rooms.get(id); // events before the first checkpoint of a deleted segment are skipped
+                if(room != null)
+                    room.apply(type, payload);
+            }
+        }
+    }
+
+    /**
+     * starts the writer thread
+     */
+    public void start() {
+        if(!enabled)
+            return;
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * writes and syncs everything appended so far, then stops the writer
+     */
+    public void close() {
+        enabled = false; // later records are dropped
+        if(writer == null)
+            return;
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * starts a new segment, all open sessions have to write a checkpoint into it<br>
+     * does not start another segment while sessions of the last rotation still have to write theirs
+     * @return journal ids of the sessions that have to write a checkpoint
+     */
+    public Set<Long> rotate() {
+        if(!enabled)
+            return Set.of();
+        lock.lock();
+        try {
+            if(awaitingCheckpoint.isEmpty()) {
+                seal();
+                activeSegment++;
+                checkpointSegment = activeSegment;
+                awaitingCheckpoint.addAll(openSessions);
+                if(awaitingCheckpoint.isEmpty())
+                    requestDelete();
+            }
+            return new HashSet<>(awaitingCheckpoint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return journal id for a new session, the session is recorded as opened
+     */
+    public long openSession() {
+        long id = nextSessionId.getAndIncrement();
+        if(!enabled)
+            return id;
+        lock.lock();
+        try {
+            put(OPEN, id, new byte[0]); // same lock as the rotation, so the session is either in the old segment and awaited, or in the new one
+            openSessions.add(id);
+        } finally {
+            lock.unlock();
+        }
+        return id;
+    }
+
+    /**
+     * records that the session is gone, replay drops its state
+     */
+    public void closeSession(long session) {
+        if(!enabled)
+            return;
+        lock.lock();
+        try {
+            put(CLOSE, session, new byte[0]);
+            openSessions.remove(session);
+            checkpointWritten(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * writes the full state of a session, replay ignores everything of the session before it
+     * @param room state of the session
+     */
+    public void checkpoint(JournalRoom room) {
+        if(!enabled)
+            return;
+        byte[] payload = encode(room::write);
+        lock.lock();
+        try {
+            put(CHECKPOINT, room.journalId, payload);
+            checkpointWritten(room.journalId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void join(long session, Player player) {
+        if(!enabled)
+            return;
+        append(JOIN, session, out -> {
+            out.writeInt(player.getId());
+            out.writeInt(player.getPoints());
+            writeString(out, player.getToken());
+            writeString(out, player.getUsername());
+        });
+    }
+
+    public void leave(long session, int playerId) {
+        if(!enabled)
+            return;
+        append(LEAVE, session, out -> out.writeInt(playerId));
+    }
+
+    public void clear(long session) {
+        if(!enabled)
+            return;
+        append(CLEAR, session, out -> { });
+    }
+
+    public void guess(long session, int playerId, int points) {
+        if(!enabled)
+            return;
+        append(GUESS, session, out -> {
+            out.writeInt(playerId);
+            out.writeInt(points);
+        });
+    }
+
+    public void hint(long session, int position) {
+        if(!enabled)
+            return;
+        append(HINT, session, out -> out.writeInt(position));
+    }
+
+    /**
+     * records the start of a turn, replay drops the drawing, guesses and hints of the last turn
+     * @param players players with their points after the last turn
+     */
+    public void turn(long session, int drawerId, int round, int turnsInRound, long deadline, String word, List<Player> players) {
+        if(!enabled)
+            return;
+        append(TURN, session, out -> {
+            out.writeInt(drawerId);
+            out.writeInt(round);
+            out.writeInt(turnsInRound);
+            out.writeLong(deadline);
+            writeString(out, word);
+            out.writeInt(players.size());
+            for(Player player : players) {
+                out.writeInt(player.getId());
+                out.writeInt(player.getPoints());
+            }
+        });
+    }
+
+    public void stop(long session) {
+        if(!enabled)
+            return;
+        append(STOP, session, out -> { });
+    }
+
+    /**
+     * records a stored stroke, encoded straight into the buffer without allocating for palette colors
+     */
+    public void stroke(long session, Stroke stroke) {
+        if(!enabled)
+            return;
+        int color = StrokeCodec.paletteIndex(stroke.color());
+        byte[] customColor = color < 0 ? stringBytes(stroke.color()) : null;
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(STROKE, session, 4 * 4 + 2 + colorSize(customColor));
+            if(buffer == null)
+                return;
+            buffer.putFloat(stroke.x1()).putFloat(stroke.y1()).putFloat(stroke.x2()).putFloat(stroke.y2());
+            buffer.putShort((short) stroke.width());
+            putColor(buffer, color, customColor);
+            end();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * records the strokes of a polyline, encoded straight into the buffer
+     */
+    public void polyline(long session, Polyline line) {
+        if(!enabled)
+            return;
+        int color = StrokeCodec.paletteIndex(line.getColor());
+        byte[] customColor = color < 0 ? stringBytes(line.getColor()) : null;
+        int points = line.getPointCount();
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(POLYLINE, session, 2 + colorSize(customColor) + 4 + points * 8);
+            if(buffer == null)
+                return;
+            buffer.putShort((short) line.getWidth());
+            putColor(buffer, color, customColor);
+            buffer.putInt(points);
+            for(int i = 0; i < points; i++) {
+                buffer.putFloat(line.getX(i)).putFloat(line.getY(i));
+            }
+            end();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * encodes the payload outside of the lock and appends the record
+     */
+    private void append(byte type, long session, Payload payload) {
+        byte[] bytes = encode(payload);
+        lock.lock();
+        try {
+            put(type, session, bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static byte[] encode(Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            payload.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("in-memory write failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * appends a record with an encoded payload, must hold the lock
+     */
+    private void put(byte type, long session, byte[] payload) {
+        ByteBuffer buffer = begin(type, session, payload.length);
+        if(buffer == null)
+            return;
+        buffer.put(payload);
+        end();
+    }
+
+    /**
+     * reserves space for a record and writes its header, must hold the lock<br>
+     * waits while the writer is too far behind
+     * @return buffer positioned at the payload, null if the journal was disabled
+     */
+    private ByteBuffer begin(byte type, long session, int payloadSize) {
+        int size = HEADER_SIZE + payloadSize;
+        while(enabled && buffered > 0 && buffered + size > MAX_BUFFERED) {
+            notFull.awaitUninterruptibly();
+        }
+        if(!enabled)
+            return null;
+        if(active.remaining() < size) {
+            seal();
+            if(size > active.capacity()) {
+                freeBuffers.add(active);
+                active = ByteBuffer.allocateDirect(size); // oversized checkpoint, not reused
+            }
+        }
+        recordStart = active.position();
+        active.putInt(size - 8).putInt(0).put(type).putLong(session);
+        buffered += size;
+        return active;
+    }
+
+    /**
+     * fills in the checksum of the record started by {@link #begin}, must hold the lock
+     */
+    private void end() {
+        int end = active.position();
+        active.limit(end).position(recordStart + 8);
+        crc.reset();
+        crc.update(active); // leaves the position at the end of the record
+        active.limit(active.capacity());
+        active.putInt(recordStart + 4, (int) crc.getValue());
+        if(writerWaiting)
+            notEmpty.signal();
+    }
+
+    /**
+     * hands the active buffer to the writer if it has records, must hold the lock
+     */
+    private void seal() {
+        if(active.position() == 0)
+            return;
+        sealed.add(new Chunk(activeSegment, active));
+        ByteBuffer free = freeBuffers.poll();
+        active = free != null ? free : ByteBuffer.allocateDirect(CHUNK_SIZE);
+    }
+
+    /**
+     * must hold the lock
+     */
+    private void checkpointWritten(long session) {
+        if(awaitingCheckpoint.remove(session) && awaitingCheckpoint.isEmpty())
+            requestDelete();
+    }
+
+    /**
+     * lets the writer delete the segments before the checkpoints after it synced them, must hold the lock
+     */
+    private void requestDelete() {
+        deleteBefore = checkpointSegment;
+        if(writerWaiting)
+            notEmpty.signal();
+    }
+
+    /**
+     * takes everything appended since the last batch, writes and syncs it, at most once per commit interval
+     */
+    private void writeLoop() {
+        List<Chunk> batch = new ArrayList<>();
+        while(true) {
+            int delete;
+            lock.lock();
+            try {
+                while(active.position() == 0 && sealed.isEmpty() && deleteBefore < 0 && !closed) {
+                    writerWaiting = true;
+                    notEmpty.awaitUninterruptibly();
+                    writerWaiting = false;
+                }
+                seal();
+                batch.addAll(sealed);
+                sealed.clear();
+                delete = deleteBefore;
+                deleteBefore = -1;
+                if(batch.isEmpty() && delete < 0 && closed)
+                    break;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            long bytes = 0;
+            try {
+                bytes = write(batch);
+                if(delete >= 0)
+                    deleteSegments(delete);
+            } catch (IOException e) {
+                System.out.println("Journal failed, sessions are no longer journaled: " + e.getMessage());
+                disable();
+            }
+            long elapsed = System.nanoTime() - start;
+            if(bytes > 0) {
+                commitTime.record(elapsed);
+                bytesWritten.addAndGet(bytes);
+            }
+
+            lock.lock();
+            try {
+                for(Chunk chunk : batch) {
+                    buffered -= chunk.data().limit();
+                    chunk.data().clear();
+                    if(chunk.data().capacity() == CHUNK_SIZE)
+                        freeBuffers.add(chunk.data());
+                }
+                if(!enabled)
+                    buffered = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            batch.clear();
+            if(elapsed < commitIntervalNanos && !closed)
+                LockSupport.parkNanos(commitIntervalNanos - elapsed); // lets more appends join the next sync
+        }
+        closeChannel();
+    }
+
+    /**
+     * writes the chunks to their segments and syncs them
+     * @return bytes written
+     */
+    private long write(List<Chunk> batch) throws IOException {
+        long bytes = 0;
+        for(Chunk chunk : batch) {
+            if(chunk.segment() != channelSegment)
+                openSegment(chunk.segment());
+            ByteBuffer data = chunk.data().flip();
+            bytes += data.limit();
+            while(data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        if(channel != null && bytes > 0)
+            channel.force(false);
+        return bytes;
+    }
+
+    /**
+     * syncs and closes the current segment and opens the given one, only called by the writer
+     */
+    private void openSegment(int segment) throws IOException {
+        if(channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channelSegment = segment;
+        syncDirectory(); // makes the new file itself survive a crash
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // not supported on every platform, the segment content is synced anyway
+        }
+    }
+
+    private void closeChannel() {
+        if(channel == null)
+            return;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Could not close journal segment: " + e.getMessage());
+        }
+        channel = null;
+        channelSegment = -1;
+    }
+
+    /**
+     * stops journaling after a write failed, the game keeps running without crash recovery
+     */
+    private void disable() {
+        lock.lock();
+        try {
+            enabled = false;
+            sealed.clear();
+            active.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeChannel();
+    }
+
+    /**
+     * deletes all segments below the given one
+     */
+    private void deleteSegments(int before) throws IOException {
+        if(channelSegment >= 0 && channelSegment < before)
+            closeChannel();
+        int deleted = 0;
+        for(int segment : listSegments()) {
+            if(segment < before) {
+                Files.deleteIfExists(segmentPath(segment));
+                deleted++;
+            }
+        }
+        if(deleted > 0)
+            System.out.println("Journal: deleted " + deleted + " segments before checkpoint " + before);
+    }
+
+    /**
+     * @return indexes of the segments in the directory, ascending
+     */
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return bytes written to the segments
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return time in nanos to write and sync a batch, counts the commits
+     */
+    public LatencyHistogram getCommitTime() {
+        return commitTime;
+    }
+
+    /**
+     * @return bytes appended but not written yet
+     */
+    public long getBufferedBytes() {
+        lock.lock();
+        try {
+            return buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int colorSize(byte[] customColor) {
+        return customColor == null ? 1 : 1 + 2 + customColor.length;
+    }
+
+    private static void putColor(ByteBuffer buffer, int paletteIndex, byte[] customColor) {
+        if(customColor == null) {
+            buffer.put((byte) paletteIndex);
+            return;
+        }
+        buffer.put((byte) CUSTOM_COLOR).putShort((short) customColor.length).put(customColor);
+    }
+
+    static String getColor(ByteBuffer buffer) {
+        int index = buffer.get() & 0xFF;
+        return index == CUSTOM_COLOR ? getString(buffer) : StrokeCodec.PALETTE.get(index);
+    }
+
+    static Stroke getStroke(ByteBuffer buffer) {
+        float x1 = buffer.getFloat();
+        float y1 = buffer.getFloat();
+        float x2 = buffer.getFloat();
+        float y2 = buffer.getFloat();
+        int width = buffer.getShort();
+        return new Stroke(x1, y1, x2, y2, getColor(buffer), width);
+    }
+
+    static void writeStroke(DataOutput out, Stroke stroke) throws IOException {
+        out.writeFloat(stroke.x1());
+        out.writeFloat(stroke.y1());
+        out.writeFloat(stroke.x2());
+        out.writeFloat(stroke.y2());
+        out.writeShort(stroke.width());
+        int index = StrokeCodec.paletteIndex(stroke.color());
+        if(index >= 0) {
+            out.writeByte(index);
+        } else {
+            out.writeByte(CUSTOM_COLOR);
+            writeString(out, stroke.color());
+        }
+    }
+
+    /**
+     * @return utf-8 bytes of the string, cut to the max length of a journal string
+     */
+    private static byte[] stringBytes(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length <= 0xFFFF)
+            return bytes;
+        byte[] cut = new byte[0xFFFF];
+        System.arraycopy(bytes, 0, cut, 0, cut.length);
+        return cut;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = stringBytes(value);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,120 @@
+package org.DrawingGame;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * server-wide scheduler shared by all game sessions<br>
+ * runs hints, turn expiry and flushes on a fixed, small number of threads
+ * instead of one thread pool per session and turn
+ */
+public class GameScheduler {
+    private final ScheduledThreadPoolExecutor executor;
+    private final int threadCount;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    public GameScheduler(int threadCount) {
+        this.threadCount = threadCount;
+        AtomicInteger threadIdx = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threadCount, r -> {
+            Thread thread = new Thread(r, "game-scheduler-" + threadIdx.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true); // cancelled turns should not stay in the queue until they would expire
+    }
+
+    /**
+     * runs the task periodically, starting immediately
+     * @param task task to run
+     * @param period period between runs
+     * @param unit time unit of the period
+     * @return future to cancel the task with
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period, TimeUnit unit) {
+        long periodNanos = unit.toNanos(period);
+        long start = System.nanoTime();
+        return executor.scheduleAtFixedRate(new Runnable() {
+            private long expected = start;
+
+            @Override
+            public void run() {
+                recordLag(System.nanoTime() - expected);
+                expected += periodNanos;
+                task.run();
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * runs the task once after the delay
+     * @param task task to run
+     * @param delay delay before the run
+     * @param unit time unit of the delay
+     * @return future to cancel the task with
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        long expected = System.nanoTime() + unit.toNanos(delay);
+        return executor.schedule(() -> {
+            recordLag(System.nanoTime() - expected);
+            task.run();
+        }, delay, unit);
+    }
+
+    /**
+     * clock sent to clients for turn deadlines<br>
+     * wall clock time of the start advanced by the monotonic clock,
+     * so it does not jump when the system clock is adjusted and offsets measured by clients stay valid
+     * @return milliseconds since the epoch
+     */
+    public long currentTimeMillis() {
+        return startMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void recordLag(long lagNanos) {
+        lag.record(lagNanos);
+    }
+
+    /**
+     * @return number of threads used by the scheduler
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return number of tasks waiting to run
+     */
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return highest delay between planned and actual run time in milliseconds
+     */
+    public double getMaxLagMillis() {
+        return lag.getMax() / 1_000_000.0;
+    }
+
+    /**
+     * @return average delay between planned and actual run time in milliseconds
+     */
+    public double getAverageLagMillis() {
+        return lag.getMean() / 1_000_000.0;
+    }
+
+    /**
+     * @return histogram of the delay between planned and actual run time in nanoseconds
+     */
+    public LatencyHistogram getLagHistogram() {
+        return lag;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,80 +1,856 @@
 package org.DrawingGame;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.handshake.ServerHandshakeBuilder;
+import org.java_websocket.server.DefaultWebSocketServerFactory;
 import org.java_websocket.server.WebSocketServer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * websocket server of one node<br>
+ * players are placed in rooms through the {@link RoomBus}, a room can be owned by any node of the cluster:
+ * players of rooms owned by this node play in a local {@link GameSession}, players of other rooms
+ * have their messages forwarded to the owner and get its frames back over the bus<br>
+ * without a configured bus the node is a cluster of one<br>
+ * with a journal directory the rooms owned by this node are journaled and restored after a restart,
+ * their players reclaim their seat with the token they got on join<br>
+ * for a deploy the node is drained with {@link #drain()}, which hands its rooms to the new process
+ * the same way (see {@link SessionHandoff})<br>
+ * spectators connect with the id of a room, they don't take a slot and get the broadcasts of the room
+ * through a {@link SpectatorRelay} on the node they connected to<br>
+ * points of finished games and of players who leave go into the {@link Leaderboard} of the node<br>
+ * handshakes pass the {@link AdmissionControl} before they are upgraded, refused ones never get a player or session
+ */
 public class GameServer extends WebSocketServer {
-    private final int MAX_SIZE = 8;
+    /**
+     * threads the session mailboxes are drained on
+     */
+    public enum SessionExecution {
+        VIRTUAL, // a virtual thread per drain, a session that blocks only parks its own thread
+        POOL // a fixed pool of platform threads (see {@link ServerConfig#getSessionThreads()}), no more threads than cores compete
+    }
+
+    private static final int MAX_SIZE = RoomBroker.DEFAULT_ROOM_SIZE;
+    private static final int SCHEDULER_THREADS = 2;
+    private static final int STATS_INTERVAL = 60; // seconds
+    private static final int ADMISSION_SWEEP_INTERVAL = 10; // seconds between drops of idle address buckets
+    private static final int LEASE_RENEW_INTERVAL = 2; // seconds, well below the lease of the broker
+    private static final int RECLAIM_TIMEOUT = 60; // seconds restored players have to reconnect
+    private static final int HANDOFF_TIMEOUT = 5; // seconds to wait for the sessions to stop for a hand-off
+    private static final int DRAIN_STOP_TIMEOUT = 1000; // ms to wait for close handshakes when draining
+    private static final String METRICS_MBEAN = "org.DrawingGame:type=Metrics";
+    private static final long SPECTATOR_SYNC_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50); // min time between clock syncs per spectator
     private final int port;
     private final String host;
-    private final List<GameSession> gameSessions = new ArrayList<>();
-    private final Map<WebSocket, GameSession> playerToGameSession = new HashMap<>();
+    private final String nodeId;
+    private final RoomBus bus;
+    private final Map<Long, GameSession> rooms = new ConcurrentHashMap<>(); // rooms owned by this node
+    private final Map<WebSocket, GameSession> playerToGameSession = new ConcurrentHashMap<>(); // local and remote players of owned rooms
+    private final Map<WebSocket, RemotePlacement> remotePlacements = new ConcurrentHashMap<>(); // local connections in rooms of other nodes
+    private final Map<Long, WebSocket> heldConnections = new ConcurrentHashMap<>(); // connection id -> websocket of remote placements
+    private final Map<WebSocket, Placement> placing = new ConcurrentHashMap<>(); // connections waiting for the bus to place them
+    private final Map<String, RemoteConnection> remoteConnections = new ConcurrentHashMap<>(); // "node/connection" -> remote player
+    private final Map<String, GameSession> reclaimable = new ConcurrentHashMap<>(); // token -> restored session of a player that is not back yet
+    private final Map<Long, SpectatorRelay> spectatorRelays = new ConcurrentHashMap<>(); // room id -> relay of its spectators on this node
+    private final Map<WebSocket, SpectatorRelay> spectatorToRelay = new ConcurrentHashMap<>();
+    private final AtomicLong nextConnectionId = new AtomicLong();
+    private final GameScheduler scheduler = new GameScheduler(SCHEDULER_THREADS);
+    private final ExecutorService sessionExecutor; // drains the mailboxes of the sessions, decoder threads only frame messages
+    private final ScheduledExecutorService spectatorExecutor; // relay threads, apart from the sessions
+    private final ExecutorService snapshotExecutor; // rasterizes compacted strokes, null to do it on the session threads
+    private final ServerConfig config;
+    private final WordDictionary dictionary;
+    private final OutboundLimiter outboundLimiter;
+    private final AdmissionControl admission;
+    private final CompressionStats compressionStats;
+    private final GameJournal journal;
+    private final Leaderboard leaderboard;
+    private final Metrics metrics;
+    private MetricsHttpServer metricsHttpServer;
+    private List<JournalRoom> handedOff = List.of(); // sessions received from the old process, restored on start
+    private volatile boolean draining = false;
+    private volatile boolean metricsRegistered = false;
+
+    /**
+     * room of another node a local connection plays in
+     * @param room room with its owner
+     * @param connectionId id of the connection on this node
+     */
+    private record RemotePlacement(RoomBus.Room room, long connectionId) {
+    }
+
+    /**
+     * attachment of a spectator connection
+     */
+    private static final class Spectator {
+        private final long connectionId; // id on this node, the owner of a remote room answers clock syncs to it
+        private long lastSync = Long.MIN_VALUE; // System.nanoTime() of the last sync, decoder thread only
+
+        private Spectator(long connectionId) {
+            this.connectionId = connectionId;
+        }
+    }
+
+    /**
+     * events of a connection that arrive while the bus places it, run in order once it is placed
+     */
+    private static final class Placement {
+        private List<Runnable> deferred = new ArrayList<>(); // null once placed
+
+        /**
+         * @return false if the connection is placed already and the event has to be handled now
+         */
+        synchronized boolean defer(Runnable event) {
+            if(deferred == null)
+                return false;
+            deferred.add(event);
+            return true;
+        }
+
+        /**
+         * runs the deferred events, events that arrive meanwhile wait for them
+         */
+        synchronized void finish() {
+            List<Runnable> events = deferred;
+            deferred = null;
+            for(Runnable event : events) {
+                event.run();
+            }
+        }
+    }
 
     public GameServer(String host, int port) {
-        super(new InetSocketAddress(host, port));
+        this(host, port, ServerConfig.fromSystemProperties());
+    }
+
+    public GameServer(String host, int port, ServerConfig config) {
+        this(host, port, config, createBus(config));
+    }
+
+    /**
+     * @param bus bus to the other nodes, nodes in one jvm can share a {@link RoomBroker} with {@link LocalRoomBus}
+     */
+    public GameServer(String host, int port, ServerConfig config, RoomBus bus) {
+        this(host, port, config, bus, new CompressionStats());
+    }
+
+    private GameServer(String host, int port, ServerConfig config, RoomBus bus, CompressionStats compressionStats) {
+        super(new InetSocketAddress(host, port), Math.max(1, config.getDecoders()), createDrafts(config, compressionStats));
         this.host = host;
         this.port = port;
+        this.config = config;
+        this.bus = bus;
+        this.nodeId = config.getNodeId() != null ? config.getNodeId() : UUID.randomUUID().toString().substring(0, 8);
+        this.compressionStats = compressionStats;
+        this.journal = new GameJournal(config.getJournalDirectory() == null ? null : Path.of(config.getJournalDirectory()),
+                config.getJournalCommitInterval());
+        this.leaderboard = new Leaderboard(config.getLeaderboardDirectory() == null ? null : Path.of(config.getLeaderboardDirectory()),
+                config.getLeaderboardFlushInterval());
+        this.metrics = new Metrics(scheduler, rooms::size, playerToGameSession::size, compressionStats, journal);
+        this.dictionary = WordDictionary.load(config.getWordsDirectory() == null ? null : Path.of(config.getWordsDirectory()));
+        dictionary.get(config.getWordCategory()); // fail at startup, not when the first room is created
+        this.admission = new AdmissionControl(config);
+        this.outboundLimiter = new OutboundLimiter(config.getSlowConsumerPolicy(), config.getOutboundSoftLimit(),
+                config.getOutboundHardLimit(), config.getSnapshotInterval());
+        this.sessionExecutor = createSessionExecutor(config);
+        AtomicInteger snapshotThreads = new AtomicInteger();
+        // a session has at most one compaction queued, so the queue is bounded by the sessions
+        this.snapshotExecutor = config.getSnapshotThreads() <= 0 ? null : Executors.newFixedThreadPool(config.getSnapshotThreads(), r -> {
+            Thread thread = new Thread(r, "snapshot-" + snapshotThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger relayThreads = new AtomicInteger();
+        this.spectatorExecutor = Executors.newScheduledThreadPool(Math.max(1, config.getSpectatorRelayThreads()), r -> {
+            Thread thread = new Thread(r, "spectator-relay-" + relayThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return executor of the configured {@link SessionExecution}
+     */
+    private static ExecutorService createSessionExecutor(ServerConfig config) {
+        if(config.getSessionExecution() == SessionExecution.VIRTUAL)
+            return Executors.newVirtualThreadPerTaskExecutor();
+        AtomicInteger sessionThreads = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, config.getSessionThreads()), r -> {
+            Thread thread = new Thread(r, "session-" + sessionThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return tcp bus if a broker is configured, otherwise a broker of its own
+     */
+    private static RoomBus createBus(ServerConfig config) {
+        if(config.getRoomBus() == null)
+            return new LocalRoomBus(new RoomBroker(MAX_SIZE, RoomBroker.DEFAULT_LEASE));
+        return TcpRoomBus.fromAddress(config.getRoomBus());
+    }
+
+    /**
+     * @return draft with permessage-deflate if compression is enabled, clients that don't offer it connect without
+     */
+    private static List<Draft> createDrafts(ServerConfig config, CompressionStats compressionStats) {
+        if(!config.isCompression())
+            return List.of(new Draft_6455());
+        return List.of(new Draft_6455(new SelectiveDeflateExtension(config.getCompressionLevel(),
+                config.getCompressionThreshold(), config.isCompressBinary(), compressionStats)));
+    }
+
+    /**
+     * refuses the handshake of a full or flooded node and of malformed requests, before the connection is upgraded<br>
+     * the client gets a 404 and closes with 1006
+     */
+    @Override
+    public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(WebSocket webSocket, Draft draft, ClientHandshake request)
+            throws InvalidDataException {
+        ServerHandshakeBuilder response = super.onWebsocketHandshakeReceivedAsServer(webSocket, draft, request);
+        InetSocketAddress remote = webSocket.getRemoteSocketAddress();
+        AdmissionControl.Decision decision = admission.admit(remote == null ? null : remote.getAddress(), System.nanoTime());
+        if(decision == AdmissionControl.Decision.ADMIT) {
+            ConnectRequest connect = ConnectRequest.parse(request.getResourceDescriptor(), config.getMaxUsernameLength());
+            if(connect == null) {
+                admission.release();
+                decision = AdmissionControl.Decision.INVALID;
+            } else
+                webSocket.setAttachment(connect);
+        }
+        metrics.recordConnect(decision);
+        return switch (decision) {
+            case ADMIT -> response;
+            case INVALID -> throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, "invalid request");
+            default -> throw new InvalidDataException(CloseFrame.TRY_AGAIN_LATER, "server busy");
+        };
     }
 
     @Override
     public void onOpen(WebSocket webSocket, ClientHandshake clientHandshake) {
         System.out.println("Player connected: " + webSocket.getRemoteSocketAddress());
-        String queryString = clientHandshake.getResourceDescriptor();
-
-        Map<String, String> queryParams = parseQueryString(queryString);
-        String username = queryParams.get("username");
-
-        if(username == null || username.trim().isEmpty()) {
-            webSocket.close();
+        ConnectRequest connect = webSocket.getAttachment();
+        webSocket.setAttachment(null);
+        if(draining) {
+            webSocket.close(CloseFrame.SERVICE_RESTART, "server restarts");
             return;
         }
+        Player newPlayer = null;
+        if(connect.spectate() == null) {
+            String token = connect.token();
+            GameSession restored = token == null ? null : reclaimable.remove(token);
+            newPlayer = restored != null ? new Player(webSocket, connect.username(), token) : new Player(webSocket, connect.username());
+            newPlayer.setBinaryStrokes(connect.binaryStrokes());
+            webSocket.setAttachment(newPlayer);
 
-        username = URLDecoder.decode(username, StandardCharsets.UTF_8); // converts ascii character from url to utf8
-
-        GameSession availableSession = null;
-        for(GameSession session : gameSessions) {
-            if(session.getGameSize() < MAX_SIZE) {
-                availableSession = session;
+            if(restored != null) {
+                // the slot of the player was reserved when the session was restored
+                Player reclaiming = newPlayer;
+                playerToGameSession.put(webSocket, restored);
+                restored.execute(() -> restored.reclaimPlayer(reclaiming));
+                return;
             }
         }
 
-        if(availableSession == null) {
-            availableSession = new GameSession();
-            gameSessions.add(availableSession);
+        // the bus may have to ask the broker, which must not stall the decoder thread of other connections
+        Player player = newPlayer;
+        Placement placement = new Placement();
+        placing.put(webSocket, placement);
+        sessionExecutor.execute(() -> {
+            try {
+                if(player == null)
+                    addSpectator(webSocket, connect.spectate());
+                else
+                    addPlayer(webSocket, player);
+            } finally {
+                placement.finish(); // before the removal, so no event overtakes the deferred ones
+                placing.remove(webSocket);
+            }
+        });
+    }
+
+    /**
+     * places a new player in a room of this node or of another node, runs on a session thread
+     * @param webSocket connection of the player
+     * @param newPlayer player of the connection
+     */
+    private void addPlayer(WebSocket webSocket, Player newPlayer) {
+        RoomBus.Room room;
+        try {
+            room = bus.join();
+        } catch (IOException e) {
+            System.out.println("Could not place player: " + e.getMessage());
+            webSocket.close(CloseFrame.TRY_AGAIN_LATER, "no room available");
+            return;
         }
 
-        Player newPlayer = new Player(webSocket, username);
-        availableSession.addPlayer(newPlayer);
-        playerToGameSession.put(newPlayer.getWebSocket(), availableSession);
+        if(room.owner().equals(nodeId)) {
+            GameSession session = rooms.computeIfAbsent(room.id(), id -> new GameSession(this, id));
+            playerToGameSession.put(webSocket, session);
+            session.execute(() -> session.addPlayer(newPlayer));
+        } else {
+            long connectionId = nextConnectionId.getAndIncrement();
+            heldConnections.put(connectionId, webSocket);
+            remotePlacements.put(webSocket, new RemotePlacement(room, connectionId));
+            bus.send(room.owner(), BusMessage.join(nodeId, room.id(), connectionId, newPlayer.getUsername(), newPlayer.usesBinaryStrokes()));
+        }
     }
 
     @Override
     public void onClose(WebSocket webSocket, int i, String s, boolean b) {
         System.out.println("Player disconnected: " + webSocket.getRemoteSocketAddress());
-        if(playerToGameSession.containsKey(webSocket)) {
-            GameSession session = playerToGameSession.get(webSocket);
-            session.deletePlayer(webSocket);
-            playerToGameSession.remove(webSocket);
+        admission.release(); // only opened connections are closed, they all reserved a slot in the handshake
+        Placement placement = placing.get(webSocket);
+        if(placement == null || !placement.defer(() -> dropConnection(webSocket)))
+            dropConnection(webSocket);
+    }
+
+    /**
+     * removes a closed connection from its room or relay
+     * @param webSocket closed connection
+     */
+    private void dropConnection(WebSocket webSocket) {
+        SpectatorRelay relay = spectatorToRelay.remove(webSocket);
+        if(relay != null) {
+            Spectator spectator = webSocket.getAttachment();
+            heldConnections.remove(spectator.connectionId);
+            removeSpectator(webSocket, relay);
+            return;
+        }
+        GameSession session = playerToGameSession.remove(webSocket);
+        if(session != null) {
+            leaveRoom(webSocket, session);
+            return;
+        }
+
+        RemotePlacement placement = remotePlacements.remove(webSocket);
+        if(placement != null) {
+            heldConnections.remove(placement.connectionId());
+            bus.send(placement.room().owner(), BusMessage.leave(nodeId, placement.room().id(), placement.connectionId()));
+        }
+    }
+
+    /**
+     * removes the player from the session and frees its slot, closes the session if it is empty now
+     * @param webSocket local or remote connection of the player
+     * @param session session of a room owned by this node
+     */
+    private void leaveRoom(WebSocket webSocket, GameSession session) {
+        session.execute(() -> session.deletePlayer(webSocket));
+        sessionExecutor.execute(() -> freeSlot(session)); // not on the decoder or bus thread, the bus may wait for the broker
+    }
+
+    /**
+     * frees a slot of the room, closes the session if the room is empty now<br>
+     * waits for the bus, so it must not run on a decoder thread or in the bus listener
+     * @param session session of a room owned by this node
+     */
+    private void freeSlot(GameSession session) {
+        boolean empty;
+        try {
+            empty = bus.leave(session.getRoomId());
+        } catch (IOException e) {
+            System.out.println("Could not free slot in room " + session.getRoomId() + ": " + e.getMessage());
+            return;
+        }
+        if(empty) {
+            rooms.remove(session.getRoomId());
+            session.execute(session::close); // empty session is not reachable anymore
         }
     }
 
     @Override
     public void onMessage(WebSocket webSocket, String s) {
+        Placement pending = placing.get(webSocket);
+        if(pending != null && pending.defer(() -> onMessage(webSocket, s)))
+            return;
         GameSession game = playerToGameSession.get(webSocket);
         if(game != null) {
-            game.handleMessage(webSocket, s);
+            game.execute(() -> game.handleMessage(webSocket, s));
+            return;
+        }
+        RemotePlacement placement = remotePlacements.get(webSocket);
+        if(placement != null) {
+            bus.send(placement.room().owner(), BusMessage.text(nodeId, placement.room().id(), placement.connectionId(), s));
+            return;
+        }
+        if(spectatorToRelay.containsKey(webSocket))
+            handleSpectatorMessage(webSocket, s);
+    }
+
+    /**
+     * adds a spectator to the relay of the room on this node, the relay is created for the first spectator of the room<br>
+     * runs on a session thread, the bus may have to ask the broker for the owner
+     * @param webSocket connection of the spectator
+     * @param roomId id of the room to watch
+     */
+    private void addSpectator(WebSocket webSocket, long roomId) {
+        RoomBus.Room room;
+        try {
+            room = bus.find(roomId);
+        } catch (IOException e) {
+            System.out.println("Could not find room " + roomId + " for a spectator: " + e.getMessage());
+            webSocket.close(CloseFrame.TRY_AGAIN_LATER, "room bus unavailable");
+            return;
+        }
+        if(room == null) {
+            webSocket.close(CloseFrame.REFUSE, "unknown room");
+            return;
+        }
+        Spectator spectator = new Spectator(nextConnectionId.getAndIncrement());
+        webSocket.setAttachment(spectator);
+        if(!room.owner().equals(nodeId))
+            heldConnections.put(spectator.connectionId, webSocket); // for the clock syncs of the owner
+
+        // added inside compute, so the relay can't be dropped by its last spectator leaving in between
+        SpectatorRelay relay = spectatorRelays.compute(roomId, (id, current) -> {
+            SpectatorRelay target = current != null ? current : new SpectatorRelay(id, room.owner(), this, spectatorExecutor);
+            spectatorToRelay.put(webSocket, target);
+            target.add(webSocket);
+            return target;
+        });
+        relay.watch(); // after compute, the answer may arrive before it returned
+        webSocket.send("{\"type\":\"room\",\"data\":\"" + roomId + "\"}");
+    }
+
+    /**
+     * removes a spectator, drops the relay and tells the owner to stop sending if it was the last one
+     * @param webSocket connection of the spectator
+     * @param relay relay the spectator was added to
+     */
+    private void removeSpectator(WebSocket webSocket, SpectatorRelay relay) {
+        boolean[] last = {false};
+        spectatorRelays.computeIfPresent(relay.getRoomId(), (id, current) -> {
+            if(current != relay)
+                return current; // the room was closed and watched again
+            last[0] = relay.remove(webSocket);
+            return last[0] ? null : relay;
+        });
+        if(last[0])
+            watchRoom(relay.getRoomId(), relay.getOwner(), false);
+    }
+
+    /**
+     * spectators can only sync their clock to count down the turn, everything else they send is ignored<br>
+     * the deadline of a turn is on the clock of the owner, so syncs for a room of another node are answered by the owner
+     * @param webSocket connection of the spectator
+     * @param message message of the spectator
+     */
+    private void handleSpectatorMessage(WebSocket webSocket, String message) {
+        if(new MessageDecoder().decode(message).getType() != MessageDecoder.Type.SYNC)
+            return;
+        long now = System.nanoTime();
+        Spectator spectator = webSocket.getAttachment();
+        SpectatorRelay relay = spectatorToRelay.get(webSocket);
+        if(relay == null || spectator.lastSync != Long.MIN_VALUE && now - spectator.lastSync < SPECTATOR_SYNC_INTERVAL)
+            return;
+        spectator.lastSync = now;
+        if(relay.getOwner().equals(nodeId))
+            webSocket.send(clockMessage());
+        else
+            bus.send(relay.getOwner(), BusMessage.text(nodeId, relay.getRoomId(), spectator.connectionId, message));
+    }
+
+    /**
+     * @return answer to a clock sync with the current time of this node
+     */
+    private String clockMessage() {
+        return "{\"type\":\"sync\",\"data\":" + scheduler.currentTimeMillis() + "}";
+    }
+
+    /**
+     * asks the owner of the room to start or stop sending its frames to the spectators of this node
+     * @param roomId watched room
+     * @param owner node that owns the room
+     * @param watch true to start, the owner answers with the state of the room
+     */
+    void watchRoom(long roomId, String owner, boolean watch) {
+        if(!owner.equals(nodeId)) {
+            bus.send(owner, BusMessage.spectate(nodeId, roomId, watch));
+            return;
+        }
+        GameSession session = rooms.get(roomId);
+        if(session != null)
+            session.execute(() -> {
+                if(watch)
+                    session.addSpectatorNode(nodeId);
+                else
+                    session.removeSpectatorNode(nodeId);
+            });
+        else if(watch)
+            sessionExecutor.execute(() -> onSpectatorFrame(roomId, "", SpectatorRelay.CLOSED)); // not inside the caller's lock
+    }
+
+    /**
+     * sends frames of a room owned by this node to the relays of the nodes with spectators of it
+     * @param roomId room of the frames
+     * @param nodes nodes with spectators of the room
+     * @param frames encoded messages, separated by commas for a state
+     * @param code see {@link SpectatorRelay}
+     */
+    void relayToSpectators(long roomId, Collection<String> nodes, String frames, int code) {
+        for(String node : nodes) {
+            if(node.equals(nodeId))
+                onSpectatorFrame(roomId, frames, code);
+            else
+                bus.send(node, BusMessage.spectatorFrame(nodeId, roomId, frames, code));
+        }
+    }
+
+    /**
+     * passes frames of the owner to the relay of the room
+     */
+    private void onSpectatorFrame(long roomId, String frames, int code) {
+        SpectatorRelay relay = code == SpectatorRelay.CLOSED ? spectatorRelays.remove(roomId) : spectatorRelays.get(roomId);
+        if(relay != null)
+            relay.receive(frames, code);
+    }
+
+    /**
+     * sends a batch to a shard of spectators, called on a relay thread<br>
+     * spectators that can't keep up are disconnected instead of slowing down the others
+     * @param batch encoded batch, shared by all spectators of the room
+     * @param shard spectators to send to
+     */
+    void sendToSpectators(String batch, List<WebSocket> shard) {
+        List<WebSocket> recipients = new ArrayList<>(shard.size());
+        for(WebSocket spectator : shard) {
+            if(spectator.isOpen() && outboundLimiter.admitSpectator(spectator))
+                recipients.add(spectator);
+        }
+        if(recipients.isEmpty())
+            return;
+        long start = System.nanoTime();
+        super.broadcast(batch, recipients);
+        metrics.recordBroadcast(System.nanoTime() - start);
+        metrics.recordOutbound("spectate", Metrics.Codec.JSON, batch.length(), recipients.size());
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, ByteBuffer message) {
+        Placement pending = placing.get(webSocket);
+        if(pending != null && pending.defer(() -> onMessage(webSocket, message)))
+            return;
+        GameSession game = playerToGameSession.get(webSocket);
+        if(game != null) {
+            game.execute(() -> game.handleBinaryMessage(webSocket, message));
+            return;
+        }
+        RemotePlacement placement = remotePlacements.get(webSocket);
+        if(placement != null)
+            bus.send(placement.room().owner(), BusMessage.binary(nodeId, placement.room().id(), placement.connectionId(), message));
+    }
+
+    /**
+     * handles a message of another node, called by the bus<br>
+     * must not wait for the bus, its reading thread is the one that gets the replies
+     * @param message received message
+     */
+    private void onBusMessage(BusMessage message) {
+        switch (message.getKind()) {
+            case JOIN -> addRemotePlayer(message);
+            case TEXT, BINARY -> {
+                RemoteConnection connection = remoteConnections.get(remoteKey(message.getFrom(), message.getConnections()[0]));
+                if(connection == null) {
+                    answerSpectatorSync(message);
+                    return;
+                }
+                GameSession game = playerToGameSession.get(connection);
+                if(game == null)
+                    return;
+                if(message.getKind() == BusMessage.Kind.TEXT)
+                    game.execute(() -> game.handleMessage(connection, message.getText()));
+                else
+                    game.execute(() -> game.handleBinaryMessage(connection, message.getData()));
+            }
+            case LEAVE -> {
+                RemoteConnection connection = remoteConnections.remove(remoteKey(message.getFrom(), message.getConnections()[0]));
+                if(connection == null)
+                    return;
+                connection.markClosed();
+                GameSession session = playerToGameSession.remove(connection);
+                if(session != null)
+                    leaveRoom(connection, session);
+            }
+            case SEND_TEXT -> {
+                List<WebSocket> recipients = heldRecipients(message.getConnections());
+                if(!recipients.isEmpty())
+                    super.broadcast(message.getText(), recipients);
+            }
+            case SEND_BINARY -> {
+                List<WebSocket> recipients = heldRecipients(message.getConnections());
+                if(!recipients.isEmpty())
+                    super.broadcast(message.getData(), recipients);
+            }
+            case CLOSE -> {
+                WebSocket webSocket = heldConnections.get(message.getConnections()[0]);
+                if(webSocket != null)
+                    webSocket.close(message.getCode(), message.getText());
+            }
+            case ROOM_CLOSED -> closeRoom(message.getRoom());
+            case SPECTATE -> {
+                GameSession session = rooms.get(message.getRoom());
+                if(session == null) {
+                    if(message.getCode() == 1)
+                        bus.send(message.getFrom(), BusMessage.spectatorFrame(nodeId, message.getRoom(), "", SpectatorRelay.CLOSED));
+                    return;
+                }
+                String node = message.getFrom();
+                if(message.getCode() == 1)
+                    session.execute(() -> session.addSpectatorNode(node));
+                else
+                    session.execute(() -> session.removeSpectatorNode(node));
+            }
+            case SPECTATOR_FRAME -> onSpectatorFrame(message.getRoom(), message.getText(), message.getCode());
         }
     }
 
+    /**
+     * adds a player connected to another node to a room of this node<br>
+     * the join can arrive before the player that created the room reached its session, so the session may be created here;
+     * a join for a room this node no longer holds is refused and the player reconnects
+     */
+    private void addRemotePlayer(BusMessage message) {
+        long connectionId = message.getConnections()[0];
+        if(!bus.holdsLease(message.getRoom())) {
+            bus.send(message.getFrom(), BusMessage.close(nodeId, connectionId, CloseFrame.TRY_AGAIN_LATER, "room closed"));
+            return;
+        }
+        GameSession session = rooms.computeIfAbsent(message.getRoom(), id -> new GameSession(this, id));
+        RemoteConnection connection = new RemoteConnection(bus, nodeId, message.getFrom(), connectionId, message.getRoom());
+        Player player = new Player(connection, message.getText());
+        player.setBinaryStrokes(message.getCode() == 1);
+        connection.setAttachment(player);
+        remoteConnections.put(remoteKey(message.getFrom(), connectionId), connection);
+        playerToGameSession.put(connection, session);
+        session.execute(() -> session.addPlayer(player));
+    }
+
+    /**
+     * answers a clock sync of a spectator on another node, spectators are not players of the room
+     * @param message text message of a connection that is not a player of this node
+     */
+    private void answerSpectatorSync(BusMessage message) {
+        if(message.getKind() != BusMessage.Kind.TEXT || !rooms.containsKey(message.getRoom())
+                || new MessageDecoder().decode(message.getText()).getType() != MessageDecoder.Type.SYNC)
+            return;
+        bus.send(message.getFrom(), BusMessage.sendText(nodeId, message.getConnections(), clockMessage()));
+    }
+
+    private static String remoteKey(String node, long connectionId) {
+        return node + "/" + connectionId;
+    }
+
+    /**
+     * @param connectionIds ids of connections held by this node
+     * @return websockets of the connections that are still open
+     */
+    private List<WebSocket> heldRecipients(long[] connectionIds) {
+        List<WebSocket> recipients = new ArrayList<>(connectionIds.length);
+        for(long connectionId : connectionIds) {
+            WebSocket webSocket = heldConnections.get(connectionId);
+            if(webSocket != null)
+                recipients.add(webSocket);
+        }
+        return recipients;
+    }
+
+    /**
+     * closes all connections of this node that play in the room, they reconnect and are placed again<br>
+     * also drops the session if this node owned the room
+     * @param roomId id of the closed room
+     */
+    private void closeRoom(long roomId) {
+        GameSession session = rooms.remove(roomId);
+        if(session != null) {
+            reclaimable.values().removeIf(restored -> restored == session);
+            for(Map.Entry<WebSocket, GameSession> entry : playerToGameSession.entrySet()) {
+                if(entry.getValue() == session)
+                    entry.getKey().close(CloseFrame.TRY_AGAIN_LATER, "room closed");
+            }
+            session.execute(session::close);
+        }
+        for(Map.Entry<WebSocket, RemotePlacement> entry : remotePlacements.entrySet()) {
+            if(entry.getValue().room().id() == roomId)
+                entry.getKey().close(CloseFrame.TRY_AGAIN_LATER, "room closed");
+        }
+        onSpectatorFrame(roomId, "", SpectatorRelay.CLOSED);
+    }
+
+    /**
+     * renews the leases of the rooms of this node, closes them if the lease already ran out
+     */
+    private void renewLeases() {
+        try {
+            if(!bus.renewLeases()) {
+                System.out.println("Lease of node " + nodeId + " ran out, closing its " + rooms.size() + " rooms");
+                for(long roomId : new ArrayList<>(rooms.keySet())) {
+                    closeRoom(roomId);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not renew room leases: " + e.getMessage());
+        }
+    }
+
+    /**
+     * restores the sessions of the journal and the sessions handed off by the old process as rooms of this node
+     * and starts journaling<br>
+     * the slots of their players are reserved for {@link #RECLAIM_TIMEOUT} seconds
+     */
+    private void restoreSessions() {
+        List<JournalRoom> recovered = List.of();
+        try {
+            recovered = journal.recover();
+        } catch (IOException e) {
+            System.out.println("Could not read the journal, no sessions are restored: " + e.getMessage());
+        }
+        journal.start();
+
+        for(JournalRoom state : recovered) {
+            restoreRoom(state);
+            journal.closeSession(state.journalId); // after the new session wrote its checkpoint
+        }
+        for(JournalRoom state : handedOff) {
+            restoreRoom(state);
+        }
+        if(!recovered.isEmpty() || !handedOff.isEmpty())
+            scheduler.schedule(() -> sessionExecutor.execute(this::expireReclaims), RECLAIM_TIMEOUT, TimeUnit.SECONDS);
+        handedOff = List.of();
+    }
+
+    /**
+     * creates a room of this node for the state and reserves the slots of its players
+     * @param state recovered or handed off state of a session
+     */
+    private void restoreRoom(JournalRoom state) {
+        RoomBus.Room room;
+        try {
+            room = bus.create(state.players.size());
+        } catch (IOException e) {
+            System.out.println("Could not restore session " + state.journalId + ": " + e.getMessage());
+            return;
+        }
+        GameSession session = new GameSession(this, room.id());
+        session.restore(state); // before the session is reachable, so it runs before any join
+        for(JournalRoom.Member member : state.players.values()) {
+            reclaimable.put(member.token(), session);
+        }
+        rooms.put(room.id(), session);
+    }
+
+    /**
+     * frees the slots of restored players that did not reconnect
+     */
+    private void expireReclaims() {
+        for(Map.Entry<String, GameSession> entry : reclaimable.entrySet()) {
+            String token = entry.getKey();
+            GameSession session = entry.getValue();
+            if(reclaimable.remove(token, session)) {
+                session.execute(() -> session.dropAbsentPlayer(token));
+                freeSlot(session);
+            }
+        }
+    }
+
+    /**
+     * starts a new journal segment and lets every session write a checkpoint into it,
+     * older segments are deleted once all did
+     */
+    private void checkpointSessions() {
+        Set<Long> awaiting = journal.rotate();
+        for(GameSession session : rooms.values()) {
+            if(awaiting.contains(session.getJournalId()))
+                session.execute(session::checkpoint);
+        }
+    }
+
+    /**
+     * broadcasts to local connections directly and to remote players with one message per holding node
+     */
+    @Override
+    public void broadcast(String text, Collection<WebSocket> clients) {
+        super.broadcast(text, forwardRemote(clients, ids -> BusMessage.sendText(nodeId, ids, text)));
+    }
+
+    /**
+     * broadcasts to local connections directly and to remote players with one message per holding node
+     */
+    @Override
+    public void broadcast(ByteBuffer data, Collection<WebSocket> clients) {
+        super.broadcast(data, forwardRemote(clients, ids -> BusMessage.sendBinary(nodeId, ids, data)));
+    }
+
+    /**
+     * sends the message to the nodes holding the remote players among the clients
+     * @param clients recipients of a broadcast
+     * @param message creates the message for the connection ids of one node
+     * @return the local connections among the clients
+     */
+    private Collection<WebSocket> forwardRemote(Collection<WebSocket> clients, Function<long[], BusMessage> message) {
+        Map<String, List<RemoteConnection>> byNode = null;
+        for(WebSocket client : clients) {
+            if(client instanceof RemoteConnection remote) {
+                if(byNode == null)
+                    byNode = new HashMap<>();
+                if(remote.isOpen())
+                    byNode.computeIfAbsent(remote.getHolderNode(), n -> new ArrayList<>()).add(remote);
+            }
+        }
+        if(byNode == null)
+            return clients; // only local players, the common case
+
+        for(Map.Entry<String, List<RemoteConnection>> entry : byNode.entrySet()) {
+            List<RemoteConnection> remotes = entry.getValue();
+            long[] ids = new long[remotes.size()];
+            for(int i = 0; i < ids.length; i++) {
+                ids[i] = remotes.get(i).getConnectionId();
+            }
+            bus.send(entry.getKey(), message.apply(ids));
+        }
+        List<WebSocket> local = new ArrayList<>(clients.size());
+        for(WebSocket client : clients) {
+            if(!(client instanceof RemoteConnection))
+                local.add(client);
+        }
+        return local;
+    }
+
     @Override
     public void onError(WebSocket webSocket, Exception e) {
         System.out.println("An Error occurred: ");
@@ -83,28 +859,267 @@ public class GameServer extends WebSocketServer {
 
     @Override
     public void onStart() {
-        System.out.println("Server started on " + host + ":" + port);
+        System.out.println("Server started on " + host + ":" + port + " as node " + nodeId + " with " + decoders.size()
+                + " decoder threads and " + config.getSessionExecution().name().toLowerCase(Locale.ROOT) + " session threads");
+        try {
+            bus.register(nodeId, this::onBusMessage);
+        } catch (IOException e) {
+            System.out.println("Could not join the room bus: " + e.getMessage());
+        }
+        try {
+            leaderboard.load();
+        } catch (IOException e) {
+            System.out.println("Could not read the leaderboard, it is kept in memory only: " + e.getMessage());
+        }
+        leaderboard.start();
+        restoreSessions();
+        scheduler.scheduleAtFixedRate(() -> sessionExecutor.execute(this::renewLeases), LEASE_RENEW_INTERVAL, TimeUnit.SECONDS);
+        if(journal.isEnabled())
+            scheduler.scheduleAtFixedRate(() -> sessionExecutor.execute(this::checkpointSessions),
+                    config.getJournalCheckpointInterval(), TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(() -> sessionExecutor.execute(() -> admission.sweep(System.nanoTime())),
+                ADMISSION_SWEEP_INTERVAL, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::printSchedulerStats, STATS_INTERVAL, TimeUnit.SECONDS);
+        startMetrics();
     }
 
     /**
-     * parses all key-value pairs from the query string into a HashMap
-     * @param queryString query string to parse
-     * @return HashMap with all key-value pairs in the query string
+     * starts the server, with a hand-off port it first waits for the old process to hand off its sessions
+     * and release the game port<br>
+     * socket options of the config are applied before the port is bound
      */
-    private Map<String, String> parseQueryString(String queryString) {
-        Map<String, String> params = new HashMap<>();
-        int queryStartIdx = queryString.indexOf('?');
-        if(queryStartIdx == -1)
-            return params;
+    @Override
+    public void start() {
+        if(config.getHandoffPort() > 0)
+            handedOff = SessionHandoff.receive(config.getHandoffPort(), TimeUnit.SECONDS.toMillis(config.getHandoffWait()));
+        setReuseAddr(true); // a node restarted after a crash binds while connections of the old process are in TIME_WAIT
+        setTcpNoDelay(config.isTcpNoDelay());
+        setConnectionLostTimeout(config.getConnectionLostTimeout());
+        if(config.getReceiveBufferSize() > 0)
+            setReceiveBufferSize(config.getReceiveBufferSize());
+        if(config.getSendBufferSize() > 0) {
+            // the server only sets options on its listening socket, the send buffer is set on every accepted socket
+            setWebSocketFactory(new DefaultWebSocketServerFactory() {
+                @Override
+                public SocketChannel wrapChannel(SocketChannel channel, SelectionKey key) {
+                    try {
+                        channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+                    } catch (IOException e) {
+                        System.out.println("Could not set the send buffer: " + e.getMessage()); // the connection keeps the default
+                    }
+                    return channel;
+                }
+            });
+        }
+        super.start();
+    }
 
-        String[] pairs = queryString.substring(queryStartIdx+1).split("&");
-        for(String pair : pairs) {
-            String[] kv = pair.split("=", 2);
-            if(kv.length == 2) {
-                params.put(kv[0], kv[1]);
+    /**
+     * drains the node for a deploy and stops it<br>
+     * no new players are placed on this node, the sessions are stopped and handed to the process at the hand-off address,
+     * then all players are disconnected with {@link CloseFrame#SERVICE_RESTART} so they reconnect and reclaim their seat
+     * in the new process<br>
+     * without a hand-off address, or if the hand-off fails, the journal restores the sessions on the next start if enabled
+     */
+    public synchronized void drain() {
+        if(draining)
+            return;
+        draining = true;
+        System.out.println("Draining node " + nodeId + " with " + rooms.size() + " rooms");
+        try {
+            bus.drain();
+        } catch (IOException e) {
+            System.out.println("Could not drain rooms on the room bus: " + e.getMessage());
+        }
+
+        SessionHandoff handoff = null;
+        if(config.getHandoffAddress() != null) {
+            List<JournalRoom> states = stopSessions();
+            try {
+                handoff = SessionHandoff.connect(config.getHandoffAddress());
+                handoff.send(states);
+                for(JournalRoom state : states) {
+                    journal.closeSession(state.journalId); // the new process owns them now
+                }
+                System.out.println("Handed off " + states.size() + " sessions to " + config.getHandoffAddress());
+            } catch (IOException e) {
+                System.out.println("Could not hand off sessions to " + config.getHandoffAddress() + ": " + e.getMessage());
             }
         }
 
-        return params;
+        for(WebSocket webSocket : playerToGameSession.keySet()) {
+            if(webSocket instanceof RemoteConnection)
+                webSocket.close(CloseFrame.SERVICE_RESTART, "server restarts"); // players of other nodes in rooms of this node
+        }
+        for(WebSocket webSocket : getConnections()) {
+            webSocket.close(CloseFrame.SERVICE_RESTART, "server restarts");
+        }
+        try {
+            stop(DRAIN_STOP_TIMEOUT, "server restarts");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(handoff != null) {
+            try {
+                handoff.close();
+            } catch (IOException e) {
+                System.out.println("Could not tell the new process that the port is free: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * stops all sessions for a hand-off
+     * @return state of the sessions that stopped in time
+     */
+    private List<JournalRoom> stopSessions() {
+        List<CompletableFuture<JournalRoom>> futures = new ArrayList<>();
+        for(GameSession session : rooms.values()) {
+            CompletableFuture<JournalRoom> future = new CompletableFuture<>();
+            session.execute(() -> future.complete(session.handOff()));
+            futures.add(future);
+        }
+
+        List<JournalRoom> states = new ArrayList<>(futures.size());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(HANDOFF_TIMEOUT);
+        for(CompletableFuture<JournalRoom> future : futures) {
+            try {
+                states.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException | TimeoutException e) {
+                System.out.println("A session did not stop for the hand-off: " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public void stop(int timeout, String closeMessage) throws InterruptedException {
+        if(metricsHttpServer != null)
+            metricsHttpServer.stop();
+        unregisterMetrics();
+        boolean restored = journal.isEnabled(); // rooms come back with their points on the next start
+        journal.close(); // before the players are disconnected, so their rooms are restored on the next start
+        if(restored)
+            leaderboard.close(); // points of restored players are recorded by the next process
+        super.stop(timeout, closeMessage);
+        if(!restored)
+            leaderboard.close(); // after the players left with their points
+        bus.unregister();
+        scheduler.shutdown(); // no lease renewals or turn events after the node left
+        spectatorExecutor.shutdown();
+        if(snapshotExecutor != null)
+            snapshotExecutor.shutdown();
+    }
+
+    /**
+     * registers the metrics as mbean and starts the prometheus endpoint if a port is configured<br>
+     * the game keeps running if either fails
+     */
+    private void startMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(METRICS_MBEAN));
+            metricsRegistered = true;
+        } catch (JMException e) {
+            System.out.println("Could not register metrics mbean: " + e.getMessage());
+        }
+
+        if(config.getMetricsPort() <= 0)
+            return;
+        metricsHttpServer = new MetricsHttpServer(metrics, config.getMetricsPort());
+        try {
+            metricsHttpServer.start();
+        } catch (IOException e) {
+            System.out.println("Could not start metrics endpoint: " + e.getMessage());
+            metricsHttpServer = null;
+        }
+    }
+
+    /**
+     * unregisters the metrics mbean if this server registered it, so a server started after it in the same jvm can
+     */
+    private void unregisterMetrics() {
+        if(!metricsRegistered)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(METRICS_MBEAN));
+            metricsRegistered = false;
+        } catch (JMException e) {
+            System.out.println("Could not unregister metrics mbean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * prints thread count and lag of the shared scheduler
+     */
+    private void printSchedulerStats() {
+        System.out.printf("Scheduler: %d threads, %d sessions, %d queued tasks, lag avg %.2f ms / max %.2f ms%n",
+                scheduler.getThreadCount(), rooms.size(), scheduler.getQueuedTasks(),
+                scheduler.getAverageLagMillis(), scheduler.getMaxLagMillis());
+        System.out.printf("Slow consumers: %d frames dropped, %d replays instead, %d disconnected%n",
+                outboundLimiter.getDropped(), outboundLimiter.getCoalesced(), outboundLimiter.getDisconnected());
+        if(config.isCompression())
+            System.out.printf("Compression: %d frames compressed to %.0f%%, %.1f us avg, %d frames below threshold%n",
+                    compressionStats.getCompressedFrames(), compressionStats.getRatio() * 100,
+                    compressionStats.getTime().getMean() / 1000, compressionStats.getSkippedFrames());
+        System.out.printf("Connections: %d open, %d admitted, %d refused%n",
+                admission.getConnections(), metrics.getConnectionsAdmitted(), metrics.getConnectionsRefused());
+        if(metrics.getMessagesFlooded() > 0)
+            System.out.printf("Flood control: %d messages dropped%n", metrics.getMessagesFlooded());
+        if(!spectatorToRelay.isEmpty())
+            System.out.printf("Spectators: %d watching %d rooms%n", spectatorToRelay.size(), spectatorRelays.size());
+        if(journal.isEnabled())
+            System.out.printf("Journal: %.1f MB written in %d commits, p99 %.2f ms per commit, %d bytes buffered%n",
+                    journal.getBytesWritten() / 1e6, journal.getCommitTime().getCount(),
+                    journal.getCommitTime().getValueAtPercentile(99) / 1e6, journal.getBufferedBytes());
+    }
+
+    /**
+     * @return id of this node in the cluster
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    GameScheduler getScheduler() {
+        return scheduler;
+    }
+
+    ExecutorService getSessionExecutor() {
+        return sessionExecutor;
+    }
+
+    /**
+     * @return executor compactions are rendered on, null to render them on the session thread
+     */
+    ExecutorService getSnapshotExecutor() {
+        return snapshotExecutor;
+    }
+
+    ServerConfig getConfig() {
+        return config;
+    }
+
+    WordDictionary getDictionary() {
+        return dictionary;
+    }
+
+    OutboundLimiter getOutboundLimiter() {
+        return outboundLimiter;
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    GameJournal getJournal() {
+        return journal;
+    }
+
+    Leaderboard getLeaderboard() {
+        return leaderboard;
     }
 }
@@ -1,16 +1,15 @@
 package org.DrawingGame;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import org.java_websocket.WebSocket;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class GameSession {
@@ -21,51 +20,89 @@ public class GameSession {
     private static final double FIRST_HINT = 0.75; // 75%
     private static final double SECOND_HINT = 0.5; // 50%
     private static final double THIRD_HINT = 0.25; // 25%
+    private static final int REPLAY_BATCH_SIZE = 512; // strokes per replay frame
+    private static final int COMPACT_THRESHOLD = 4096; // stored strokes before old ones are rasterized
+    private static final int COMPACT_KEEP = 512; // newest strokes kept as strokes after compaction
+    private static final long REPLAY_INTERVAL = TimeUnit.SECONDS.toNanos(1); // min time between replays per player
+    private static final int LEADERBOARD_SIZE = 10; // players in the answer to a leaderboard request
+    private static final long SYNC_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50); // min time between clock syncs per player
+    private static final long MIN_RESUME_TIME = TimeUnit.SECONDS.toMillis(30); // min time left of a turn restored from the journal
+    private static final long RESUME_GRACE = TimeUnit.SECONDS.toMillis(5); // time a restored turn waits for its drawer
+
+    private static final Gson gson = new Gson();
+    private static final Map<String, String> typeMessages = new ConcurrentHashMap<>(); // pre-encoded type-only messages
 
-    private final Gson gson = new Gson();
     private final Random rand = new Random();
     private final List<Player> players = new ArrayList<>();
+    private final List<WebSocket> connections = new ArrayList<>(); // websockets of players, kept in sync for broadcasts
     private final List<Player> guessedPlayers = new ArrayList<>();
     private final Map<Player, Integer> playerToPreparedPoints = new HashMap<>();
-    private final List<String> words = new ArrayList<>();
+    private final WordCursor words;
     private final List<Integer> hintPositions = new ArrayList<>();
-    private final List<Map<String, Object>> strokes = new ArrayList<>();
+    private GuessMatcher guessMatcher; // matcher of the current word, null while no word is set
+    private final StrokeBuffer strokes = new StrokeBuffer();
+    private final CanvasSnapshot snapshot = new CanvasSnapshot();
 
     private int maxPlayerID = 0;
     private String word;
     private Player currentTurn;
     private int playerIdx = 0;
     private boolean isRunning = false;
-    private int timeLeft;
     private int currentRound = 1;
     private int turnsInRound = 0;
-    private ScheduledExecutorService timeService = Executors.newScheduledThreadPool(1);
-
+    private final GameServer server;
+    private final long roomId;
+    private final GameScheduler scheduler;
+    private final Mailbox mailbox;
+    private final StrokeCoalescer coalescer;
+    private final MessageDecoder decoder = new MessageDecoder();
+    private final OutboundLimiter outboundLimiter;
+    private final Metrics metrics;
+    private final int strokeFlushRate;
+    private boolean flushScheduled = false;
+    private boolean compacting = false; // a compaction is rendered on a snapshot thread
+    private final List<ScheduledFuture<?>> timeTasks = new ArrayList<>();
+    private long turnDeadline; // server clock millis when the current turn ends
+    private int turnId = 0;
+    private final GameJournal journal;
+    private final Leaderboard leaderboard;
+    private final long journalId;
+    private final Map<String, JournalRoom.Member> absentPlayers = new HashMap<>(); // token -> restored player that is not back yet
+    private final Map<Integer, Integer> restoredGuesses = new HashMap<>(); // player id -> prepared points of absent players
+    private int restoredDrawerId = -1; // drawer of a restored turn that resumes once two players are back
+    private long restoredDeadline;
+    private boolean resumeScheduled = false;
+    private boolean handedOff = false; // the session moved to another process, its players are leaving
+    private final Set<String> spectatorNodes = new HashSet<>(); // nodes with spectators of this room, get every broadcast once
 
-    public GameSession() {
-        timeLeft = ROUND_DURATION;
-        try {
-            readWordsFile("/words.txt");
-        } catch (FileNotFoundException e) {
-            System.out.println("File not found");
-            System.exit(-1);
-        }
+    /**
+     * @param server server which provides the shared scheduler, executor and config<br>
+     *               and frames broadcasts once for all recipients
+     * @param roomId id of the room in the cluster
+     */
+    public GameSession(GameServer server, long roomId) {
+        this.server = server;
+        this.roomId = roomId;
+        this.scheduler = server.getScheduler();
+        this.mailbox = new Mailbox(server.getSessionExecutor());
+        this.coalescer = new StrokeCoalescer(server.getConfig().getStrokeTolerance());
+        this.strokeFlushRate = server.getConfig().getStrokeFlushRate();
+        this.outboundLimiter = server.getOutboundLimiter();
+        this.metrics = server.getMetrics();
+        this.words = new WordCursor(server.getDictionary().get(server.getConfig().getWordCategory()), rand);
+        this.journal = server.getJournal();
+        this.leaderboard = server.getLeaderboard();
+        this.journalId = journal.openSession();
     }
 
     /**
-     * reads file and adds the words to an array
-     * @param filePath file path in the resource directory
-     * @throws FileNotFoundException if file is not found
+     * runs the command on the session<br>
+     * all state of the session must only be touched from commands posted here,
+     * so each session runs single-threaded while different sessions run in parallel
+     * @param command command to run
      */
-    private void readWordsFile(String filePath) throws FileNotFoundException {
-        InputStream input = getClass().getResourceAsStream(filePath);
-        if(input == null) {
-            throw new FileNotFoundException("words.txt not found!");
-        }
-        Scanner scanner = new Scanner(input);
-        while(scanner.hasNext()) {
-            words.add(scanner.nextLine());
-        }
+    public void execute(Runnable command) {
+        mailbox.execute(command);
     }
 
     /**
@@ -74,14 +111,66 @@ public class GameSession {
      * @param player player to add
      */
     public void addPlayer(Player player) {
-        WebSocket ws = player.getWebSocket();
         player.setId(maxPlayerID++);
+        admitPlayer(player);
+    }
+
+    /**
+     * adds a player that reconnected after a restart with its id, points and guess of the restored session<br>
+     * joins as a new player if it is not expected anymore
+     * @param player player with the token of the restored player
+     */
+    public void reclaimPlayer(Player player) {
+        JournalRoom.Member member = absentPlayers.remove(player.getToken());
+        if (member == null) {
+            addPlayer(player);
+            return;
+        }
+
+        player.setId(member.id());
+        player.addPoints(member.points());
+        Integer preparedPoints = restoredGuesses.remove(member.id());
+        if (preparedPoints != null) {
+            guessedPlayers.add(player);
+            player.setGuessed(true);
+            playerToPreparedPoints.put(player, preparedPoints);
+        }
+        admitPlayer(player);
+    }
+
+    /**
+     * forgets a restored player that did not reconnect in time
+     * @param token token of the player
+     */
+    public void dropAbsentPlayer(String token) {
+        JournalRoom.Member member = absentPlayers.remove(token);
+        if (member == null)
+            return;
+        restoredGuesses.remove(member.id());
+        journal.leave(journalId, member.id());
+        leaderboard.add(member.username(), member.points());
+    }
+
+    /**
+     * sends id and token to the player and starts or resumes the game if player count is 2
+     * @param player player with its id
+     */
+    private void admitPlayer(Player player) {
+        WebSocket ws = player.getWebSocket();
+        player.setFloodControl(new FloodControl(server.getConfig()));
         send(ws, Map.of("type", "id", "data", Integer.toString(player.getId())));
+        send(ws, Map.of("type", "token", "data", player.getToken()));
+        send(ws, Map.of("type", "room", "data", Long.toString(roomId))); // for links to spectate the room
         players.add(player);
+        connections.add(ws);
+        journal.join(journalId, player);
 
         if (players.size() >= 2) {
             if (!isRunning) {
-                startGame();
+                if (restoredDrawerId >= 0)
+                    resumeWhenDrawerBack();
+                else
+                    startGame();
             } else {
                 sendFullGameData(player);
             }
@@ -97,11 +186,15 @@ public class GameSession {
      */
     public void deletePlayer(WebSocket player) {
         Player playerToRemove = getPlayerFromWebSocket(player);
-        if (playerToRemove == null)
+        if (playerToRemove == null || handedOff)
             return;
 
         boolean wasCurrentTurn = playerToRemove == currentTurn;
-        players.remove(playerToRemove);
+        if (!players.remove(playerToRemove))
+            return;
+        connections.remove(player);
+        journal.leave(journalId, playerToRemove.getId());
+        leaderboard.add(playerToRemove.getUsername(), playerToRemove.getPoints());
 
         if (wasCurrentTurn || players.size() < 2) {
             broadcast("clear");
@@ -112,25 +205,30 @@ public class GameSession {
                 broadcast("wait");
             }
         } else {
-            for(Player p : players) {
-                sendScoreboard(p);
-            }
+            broadcastScoreboard();
         }
     }
 
     /**
      * @param ws Websocket
-     * @return Player with the given Websocket
+     * @return Player attached to the given Websocket
      */
     private Player getPlayerFromWebSocket(WebSocket ws) {
-        Player player = null;
-        for(Player p : players)  {
-            if(p.getWebSocket().equals(ws)) {
-                player = p;
-                break;
-            }
-        }
-        return player;
+        return ws.getAttachment();
+    }
+
+    /**
+     * @return id of the room in the cluster
+     */
+    public long getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * @return id of the session in the journal
+     */
+    public long getJournalId() {
+        return journalId;
     }
 
     /**
@@ -141,6 +239,172 @@ public class GameSession {
         return players.size();
     }
 
+    /**
+     * stops timers and drops the drawing of an empty session that was removed from matchmaking
+     */
+    public void close() {
+        cancelTimeService();
+        isRunning = false;
+        clearDrawing();
+        journal.closeSession(journalId);
+        if (!spectatorNodes.isEmpty())
+            server.relayToSpectators(roomId, spectatorNodes, "", SpectatorRelay.CLOSED);
+        spectatorNodes.clear();
+    }
+
+    /**
+     * sends the state of the room to the spectators of the node, then every broadcast of the room<br>
+     * also answers a node that already watches and asks again, its new spectators wait for a state
+     * @param node node with spectators of this room
+     */
+    public void addSpectatorNode(String node) {
+        spectatorNodes.add(node);
+        server.relayToSpectators(roomId, Set.of(node), spectatorState(), SpectatorRelay.STATE);
+    }
+
+    /**
+     * stops sending to the spectators of the node, its last spectator left
+     * @param node node with spectators of this room
+     */
+    public void removeSpectatorNode(String node) {
+        spectatorNodes.remove(node);
+    }
+
+    /**
+     * builds the messages a spectator needs to show the room like a player who is not drawing,
+     * separated by commas to be sent in one batch
+     * @return encoded messages
+     */
+    private String spectatorState() {
+        if (!isRunning || currentTurn == null)
+            return typeMessages.computeIfAbsent("wait", t -> gson.toJson(Map.of("type", t)));
+
+        flushStrokes();
+        List<String> messages = new ArrayList<>();
+        messages.add(gson.toJson(startMessage()));
+        messages.add(gson.toJson(scoreboardMessage()));
+        List<Map<String, String>> guessedPlayersData = new ArrayList<>();
+        for (Player p : guessedPlayers) {
+            guessedPlayersData.add(Map.of("id", Integer.toString(p.getId()), "username", p.getUsername()));
+        }
+        messages.add(gson.toJson(Map.of("type", "guessed_players", "data", guessedPlayersData)));
+        for (int idx : hintPositions) {
+            messages.add(gson.toJson(Map.of("type", "hint", "position", Integer.toString(idx), "letter", Character.toString(word.charAt(idx)))));
+        }
+        messages.add(gson.toJson(Map.of("type", "clear")));
+        if (!snapshot.isEmpty())
+            messages.add(gson.toJson(Map.of("type", "snapshot", "data", Base64.getEncoder().encodeToString(snapshot.toPng()))));
+        for (int from = 0; from < strokes.size(); from += REPLAY_BATCH_SIZE) {
+            int to = Math.min(from + REPLAY_BATCH_SIZE, strokes.size());
+            List<Stroke> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(strokes.get(i));
+            }
+            messages.add(gson.toJson(Map.of("type", "strokes", "data", batch)));
+        }
+        messages.add(gson.toJson(Map.of("type", "replay_done", "data", Integer.toString(strokes.size()))));
+        return String.join(",", messages);
+    }
+
+    /**
+     * passes a broadcast on to the nodes with spectators, spectators see what a player who is not drawing sees
+     * @param message encoded message
+     */
+    private void spectate(String message) {
+        if (!spectatorNodes.isEmpty())
+            server.relayToSpectators(roomId, spectatorNodes, message, SpectatorRelay.LIVE);
+    }
+
+    /**
+     * writes the full state of the session to the journal, replay starts from the latest checkpoint
+     */
+    public void checkpoint() {
+        if (!journal.isEnabled() || handedOff)
+            return;
+        journal.checkpoint(state());
+    }
+
+    /**
+     * stops the session for a hand-off to another process, timers are cancelled and messages of its players are ignored
+     * from now on, so the returned state stays the latest
+     * @return full state of the session
+     */
+    public JournalRoom handOff() {
+        flushStrokes();
+        cancelTimeService();
+        handedOff = true;
+        return state();
+    }
+
+    /**
+     * @return full state of the session, as written for a checkpoint
+     */
+    private JournalRoom state() {
+        JournalRoom state = new JournalRoom(journalId);
+        state.maxPlayerId = maxPlayerID;
+        state.running = isRunning || restoredDrawerId >= 0;
+        state.drawerId = isRunning ? currentTurn.getId() : restoredDrawerId;
+        state.deadline = isRunning ? turnDeadline : restoredDeadline;
+        state.round = currentRound;
+        state.turnsInRound = turnsInRound;
+        state.word = word == null ? "" : word;
+        for (Player p : players) {
+            state.players.put(p.getId(), new JournalRoom.Member(p.getId(), p.getToken(), p.getUsername(), p.getPoints()));
+        }
+        for (JournalRoom.Member member : absentPlayers.values()) {
+            state.players.put(member.id(), member);
+        }
+        for (Map.Entry<Player, Integer> guess : playerToPreparedPoints.entrySet()) {
+            state.guessed.put(guess.getKey().getId(), guess.getValue());
+        }
+        state.guessed.putAll(restoredGuesses);
+        state.hints.addAll(hintPositions);
+        if (!snapshot.isEmpty())
+            state.snapshot = snapshot.toPng();
+        for (int i = 0; i < strokes.size(); i++) {
+            state.strokes.add(strokes.get(i));
+        }
+        return state;
+    }
+
+    /**
+     * takes over a session recovered from the journal or handed off by another process,
+     * its players are absent until they reclaim their player<br>
+     * a running turn resumes once two players are back<br>
+     * the state is written as checkpoint of this session, the caller closes the old session in the journal after
+     * @param state recovered state
+     */
+    public void restore(JournalRoom state) {
+        maxPlayerID = state.maxPlayerId;
+        currentRound = state.round;
+        turnsInRound = state.turnsInRound;
+        for (JournalRoom.Member member : state.players.values()) {
+            absentPlayers.put(member.token(), member);
+        }
+
+        if (state.running && !state.word.isEmpty()) {
+            setWord(state.word);
+            restoredDrawerId = state.drawerId;
+            restoredDeadline = state.deadline;
+            hintPositions.addAll(state.hints);
+            restoredGuesses.putAll(state.guessed);
+            if (state.snapshot != null) {
+                try {
+                    snapshot.load(state.snapshot);
+                } catch (IOException e) {
+                    System.out.println("Could not restore drawing snapshot: " + e.getMessage());
+                }
+            }
+            for (Stroke stroke : state.strokes) {
+                strokes.add(stroke);
+            }
+            metrics.addStoredStrokes(strokes.size());
+            compactStrokes();
+        }
+
+        checkpoint();
+    }
+
     /**
      * starts the game and broadcasts the data
      */
@@ -149,13 +413,12 @@ public class GameSession {
         playerIdx = 0;
         currentRound = 1;
         turnsInRound = 0;
-        word = words.get(rand.nextInt(words.size()));
-        broadcast(Map.of("type", "start", "name", currentTurn.getUsername(), "id", Integer.toString(currentTurn.getId()), "length", Integer.toString(word.length()), "round", currentRound, "maxRound", ROUND_COUNT));
+        setWord(words.next());
         activateTimeService();
+        journal.turn(journalId, currentTurn.getId(), currentRound, turnsInRound, turnDeadline, word, players);
+        broadcast(startMessage());
 
-        for(Player p : players) {
-            sendScoreboard(p);
-        }
+        broadcastScoreboard();
 
         isRunning = true;
         send(currentTurn.getWebSocket(), Map.of("type", "word", "data", word));
@@ -174,6 +437,7 @@ public class GameSession {
             Player player = sortedPlayers.get(i);
             String display = String.format("%d → %s: %d", sortedPlayers.size() - i, player.getUsername(), player.getPoints());
             broadcast(Map.of("type", "message", "data", display));
+            leaderboard.add(player.getUsername(), player.getPoints());
             player.resetPoints();
         }
         startGame();
@@ -184,11 +448,14 @@ public class GameSession {
      * (clears game state variables)
      */
     private void stopGame() {
-        timeService.shutdown();
+        cancelTimeService();
         isRunning = false;
-        strokes.clear();
+        restoredDrawerId = -1; // a restored turn that did not resume is dropped as well
+        clearDrawing();
         hintPositions.clear();
-        guessedPlayers.clear();
+        clearGuesses();
+        guessMatcher = null;
+        journal.stop(journalId);
         broadcast("clear");
     }
 
@@ -196,25 +463,55 @@ public class GameSession {
      * adds the points from the current turn to the players and starts next turn
      */
     private void endTurn() {
-        int totalPoints = 0;
-        for(Player p : playerToPreparedPoints.keySet()) {
-            int preparedPoints = playerToPreparedPoints.get(p);
-            p.addPoints(preparedPoints);
-            totalPoints += preparedPoints;
-        }
-        playerToPreparedPoints.clear();
+        boolean absentScored = !restoredGuesses.isEmpty();
+        int totalPoints = bookPreparedPoints();
         int drawerPoints = (int)(totalPoints * 0.5);
         currentTurn.addPoints(drawerPoints);
 
         if(isRunning)
             nextTurn();
+        if(absentScored)
+            checkpoint(); // points of absent players are not part of the turn record
+    }
+
+    /**
+     * adds the prepared points of the turn to the players that guessed,
+     * also to guessers of a restored turn that are not back yet
+     * @return sum of the points
+     */
+    private int bookPreparedPoints() {
+        int totalPoints = 0;
+        for(Map.Entry<Player, Integer> guess : playerToPreparedPoints.entrySet()) {
+            guess.getKey().addPoints(guess.getValue());
+            totalPoints += guess.getValue();
+        }
+        playerToPreparedPoints.clear();
+        for(Map.Entry<Integer, Integer> guess : restoredGuesses.entrySet()) {
+            addAbsentPoints(guess.getKey(), guess.getValue());
+            totalPoints += guess.getValue();
+        }
+        restoredGuesses.clear();
+        return totalPoints;
+    }
+
+    /**
+     * adds points to a restored player that is not back yet, it gets them when it reclaims its player
+     * @param id id of the player
+     * @param points points to add
+     */
+    private void addAbsentPoints(int id, int points) {
+        for(Map.Entry<String, JournalRoom.Member> entry : absentPlayers.entrySet()) {
+            JournalRoom.Member member = entry.getValue();
+            if(member.id() == id)
+                entry.setValue(new JournalRoom.Member(id, member.token(), member.username(), member.points() + points));
+        }
     }
 
     /**
      * starts next turn, resets variables and broadcasts scoreboard
      */
     private void nextTurn() {
-        timeService.shutdown();
+        cancelTimeService();
 
         turnsInRound++;
         if (turnsInRound >= players.size()) {
@@ -229,98 +526,419 @@ public class GameSession {
 
         playerIdx = (playerIdx + 1) % players.size();
         currentTurn = players.get(playerIdx);
-        word = words.get(rand.nextInt(words.size()));
-        strokes.clear();
-        guessedPlayers.clear();
+        setWord(words.next());
+        clearDrawing();
+        clearGuesses();
         hintPositions.clear();
         broadcast("clear");
-        broadcast(Map.of("type", "start", "name", currentTurn.getUsername(), "id", Integer.toString(currentTurn.getId()), "length", Integer.toString(word.length()), "round", currentRound, "maxRound", ROUND_COUNT));
+        activateTimeService();
+        journal.turn(journalId, currentTurn.getId(), currentRound, turnsInRound, turnDeadline, word, players);
+        broadcast(startMessage());
         send(currentTurn.getWebSocket(), Map.of("type", "word", "data", word));
 
-        for(Player p : players) {
-            sendScoreboard(p);
+        broadcastScoreboard();
+    }
+
+    /**
+     * resumes the restored turn once its drawer is back, or after {@link #RESUME_GRACE} without it
+     */
+    private void resumeWhenDrawerBack() {
+        if (findPlayer(restoredDrawerId) != null) {
+            resumeGame();
+            return;
         }
+        broadcast("wait");
+        if (resumeScheduled)
+            return;
+        resumeScheduled = true;
+        scheduler.schedule(() -> execute(() -> {
+            resumeScheduled = false;
+            if (!isRunning && restoredDrawerId >= 0 && players.size() >= 2)
+                resumeGame();
+        }), RESUME_GRACE, TimeUnit.MILLISECONDS);
+    }
 
-        activateTimeService();
+    /**
+     * @param id id of the player
+     * @return player with the id, null if it is not in the session
+     */
+    private Player findPlayer(int id) {
+        for (Player p : players) {
+            if (p.getId() == id)
+                return p;
+        }
+        return null;
     }
 
     /**
-     * activates timer which broadcasts the time left in the current turn <br>
-     * will send hints on 75%, 50% and 25%<br>
-     * if time left is 0, it will end the turn
+     * continues the turn that was running when the session was journaled or handed off for the last time<br>
+     * the turn gets the time it had left, at least {@link #MIN_RESUME_TIME}<br>
+     * if the drawer is not back, the turn ends with the points of its guesses and a new turn starts
+     */
+    private void resumeGame() {
+        Player drawer = findPlayer(restoredDrawerId);
+        int drawerId = restoredDrawerId;
+        restoredDrawerId = -1;
+        isRunning = true;
+
+        if (drawer == null) {
+            addAbsentPoints(drawerId, (int) (bookPreparedPoints() * 0.5));
+            playerIdx = -1; // next turn starts with the first player
+            nextTurn();
+            checkpoint(); // points of absent players are not part of the turn record
+            return;
+        }
+
+        currentTurn = drawer;
+        playerIdx = players.indexOf(drawer);
+        activateTimeService(Math.max(MIN_RESUME_TIME, restoredDeadline - scheduler.currentTimeMillis()));
+        broadcast(startMessage());
+        broadcastScoreboard();
+        for (Player p : players) {
+            sendTurnState(p);
+        }
+        send(drawer.getWebSocket(), Map.of("type", "word", "data", word));
+        checkpoint(); // the deadline changed
+    }
+
+    /**
+     * @return start message of the current turn<br>
+     * contains the deadline of the turn on the server clock, clients count down to it on their own
+     */
+    private Map<String, Object> startMessage() {
+        return Map.of("type", "start", "name", currentTurn.getUsername(), "id", Integer.toString(currentTurn.getId()),
+                "length", Integer.toString(word.length()), "round", currentRound, "maxRound", ROUND_COUNT,
+                "deadline", turnDeadline, "duration", ROUND_DURATION);
+    }
+
+    /**
+     * sets the deadline of a new turn and schedules its events
      */
     private void activateTimeService() {
-        timeLeft = ROUND_DURATION;
-        timeService = Executors.newScheduledThreadPool(1);
-
-        int firstHint = (int) (ROUND_DURATION * FIRST_HINT);
-        int secondHint = (int) (ROUND_DURATION * SECOND_HINT);
-        int finalHint = (int) (ROUND_DURATION * THIRD_HINT);
-
-        Runnable timeRunnable = () -> {
-            broadcast(Map.of("type", "time", "data", Integer.toString(timeLeft)));
-            
-            boolean isHintTime = timeLeft == firstHint || timeLeft == secondHint || timeLeft == finalHint;
-            boolean canRevealHint = hintPositions.size() < word.length();
-            if(canRevealHint && isHintTime) {
-                int idx;
-                do {
-                    idx = rand.nextInt(0, word.length());
-                } while (hintPositions.contains(idx));
-                hintPositions.add(idx);
-                broadcastBut(currentTurn, Map.of("type" ,"hint", "position", Integer.toString(idx),
-                        "letter", Character.toString(word.charAt(idx))));
-            }
-            if(timeLeft == 0)
-                endTurn();
-            timeLeft--;
-        };
-        timeService.scheduleAtFixedRate(timeRunnable, 0, 1, TimeUnit.SECONDS);
+        activateTimeService(TimeUnit.SECONDS.toMillis(ROUND_DURATION));
+    }
+
+    /**
+     * sets the deadline of the turn and schedules its events<br>
+     * will send hints on 75%, 50% and 25% of the time left, hints that were already revealed are skipped<br>
+     * at the deadline, it will end the turn<br>
+     * the countdown itself is rendered by the clients, the server sends no time updates
+     * @param timeLeft ms until the turn ends
+     */
+    private void activateTimeService(long timeLeft) {
+        cancelTimeService();
+        int turn = ++turnId;
+        long now = scheduler.currentTimeMillis();
+        turnDeadline = now + timeLeft;
+
+        long turnStart = turnDeadline - TimeUnit.SECONDS.toMillis(ROUND_DURATION);
+        double[] hints = {FIRST_HINT, SECOND_HINT, THIRD_HINT};
+        for (int i = hintPositions.size(); i < hints.length; i++) {
+            long hintTime = turnStart + TimeUnit.SECONDS.toMillis(ROUND_DURATION - (int) (ROUND_DURATION * hints[i]));
+            scheduleTurnEvent(turn, Math.max(0, hintTime - now), this::revealHint);
+        }
+        scheduleTurnEvent(turn, timeLeft, this::endTurn);
+    }
+
+    /**
+     * runs the event on the session after the delay if the turn is still running
+     * @param turn id of the turn the event belongs to
+     * @param delay ms from now
+     * @param event event to run
+     */
+    private void scheduleTurnEvent(int turn, long delay, Runnable event) {
+        timeTasks.add(scheduler.schedule(() -> execute(() -> {
+            if(turn == turnId) // event was queued before the turn changed
+                event.run();
+        }), delay, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * reveals a random letter of the word that is not revealed yet to all players but the drawer
+     */
+    private void revealHint() {
+        if(hintPositions.size() >= word.length())
+            return;
+
+        int idx;
+        do {
+            idx = rand.nextInt(0, word.length());
+        } while (hintPositions.contains(idx));
+        hintPositions.add(idx);
+        journal.hint(journalId, idx);
+        broadcastBut(currentTurn, Map.of("type" ,"hint", "position", Integer.toString(idx),
+                "letter", Character.toString(word.charAt(idx))));
+    }
+
+    /**
+     * cancels the events of the current turn if there are any
+     */
+    private void cancelTimeService() {
+        turnId++;
+        for(ScheduledFuture<?> task : timeTasks) {
+            task.cancel(false);
+        }
+        timeTasks.clear();
     }
 
     /**
      * gets called if websocket server receives a message<br>
-     * parses json and will call the function in the message if given
+     * decodes the json and will call the function in the message if given<br>
+     * invalid messages are answered with an error message
      * @param ws Player which sent the message
      * @param message Message
      */
     public void handleMessage(WebSocket ws, String message) {
-        JsonObject jsonMessage = JsonParser.parseString(message).getAsJsonObject();
-        if (!jsonMessage.has("type"))
+        Player author = getPlayerFromWebSocket(ws);
+        if (author == null || handedOff)
             return;
 
-        String type = jsonMessage.get("type").getAsString();
+        long start = System.nanoTime();
+        MessageDecoder.Message decoded = decoder.decode(message);
+        if (!admit(author, decoded.getType(), start)) {
+            metrics.recordInbound(Metrics.Codec.JSON, decoded.getType(), message.length(), System.nanoTime() - start);
+            return;
+        }
+        switch (decoded.getType()) {
+            case STROKE -> addStroke(ws, decoded.toStroke());
+            case CLEAR -> sendClear(ws);
+            case GET_STROKES -> requestStrokes(author);
+            case SYNC -> sendClock(author);
+            case LEADERBOARD -> sendLeaderboard(author);
+            case MESSAGE -> handleChatMessage(author, decoded.getText());
+            case INVALID -> send(ws, Map.of("type", "error", "data", "invalid message: " + decoded.getError()));
+            case UNKNOWN -> { }
+        }
+        metrics.recordInbound(Metrics.Codec.JSON, decoded.getType(), message.length(), System.nanoTime() - start);
+    }
+
+    /**
+     * gets called if websocket server receives a binary message<br>
+     * binary messages are only used for strokes (see {@link StrokeCodec})
+     * @param ws Player which sent the message
+     * @param message Message
+     */
+    public void handleBinaryMessage(WebSocket ws, ByteBuffer message) {
         Player author = getPlayerFromWebSocket(ws);
+        if (author == null || handedOff)
+            return;
+        long start = System.nanoTime();
+        int size = message.remaining();
+        if (!admit(author, MessageDecoder.Type.STROKE, start)) {
+            metrics.recordInbound(Metrics.Codec.BINARY, MessageDecoder.Type.STROKE, size, System.nanoTime() - start);
+            return;
+        }
+        Stroke stroke;
+        try {
+            stroke = StrokeCodec.decode(message);
+        } catch (IllegalArgumentException e) {
+            metrics.recordInbound(Metrics.Codec.BINARY, MessageDecoder.Type.INVALID, size, System.nanoTime() - start);
+            return;
+        }
+        addStroke(ws, stroke);
+        metrics.recordInbound(Metrics.Codec.BINARY, MessageDecoder.Type.STROKE, size, System.nanoTime() - start);
+    }
 
-        switch (type) {
-            case "stroke" -> handleStroke(ws, jsonMessage);
-            case "clear" -> sendClear(ws);
-            case "get_strokes" -> sendStrokes(ws);
-            case "message" -> handleChatMessage(author, jsonMessage);
+    /**
+     * takes the message from the budget of the player, the first message over the budget is answered with an error
+     * @param player sender of the message
+     * @param type type of the message
+     * @param now {@link System#nanoTime()}
+     * @return true if the message can be handled, false if it is dropped
+     */
+    private boolean admit(Player player, MessageDecoder.Type type, long now) {
+        switch (player.getFloodControl().admit(type, now)) {
+            case ALLOW -> {
+                return true;
+            }
+            case WARN -> send(player.getWebSocket(), Map.of("type", "error", "data", "too many messages, slow down"));
+            case DROP -> { }
         }
+        metrics.recordFlooded(type);
+        return false;
     }
 
     /**
-     * gets stroke and broadcasts it to other players
-     * @param ws Player which sent the message
-     * @param jsonMessage Json Message containing the stroke
+     * stores stroke and relays it to other players if it was drawn by the current player<br>
+     * with a flush rate the stroke is coalesced and sent with the next flush
+     * @param ws Player which sent the stroke
+     * @param stroke stroke to add
+     */
+    void addStroke(WebSocket ws, Stroke stroke) {
+        if(getPlayerFromWebSocket(ws) != currentTurn)
+            return;
+
+        if(strokeFlushRate > 0) {
+            coalescer.add(stroke);
+            scheduleFlush();
+            return;
+        }
+
+        if(!strokes.add(stroke))
+            return;
+        journal.stroke(journalId, stroke);
+        metrics.addStoredStrokes(1);
+        compactStrokes();
+
+        // encoded and framed once per codec, not once per player
+        ByteBuffer binary = StrokeCodec.encode(stroke);
+        relayBinaryOrJson("stroke", binary, Map.of("type", "stroke", "data", stroke));
+    }
+
+    /**
+     * schedules a flush of the coalesced strokes if none is scheduled
+     */
+    private void scheduleFlush() {
+        if(flushScheduled)
+            return;
+        flushScheduled = true;
+        scheduler.schedule(() -> execute(this::flushStrokes), TimeUnit.SECONDS.toNanos(1) / strokeFlushRate, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * stores the coalesced strokes and sends them as one polyline message per line
      */
-    private void handleStroke(WebSocket ws, JsonObject jsonMessage) {
-        if(getPlayerFromWebSocket(ws) != currentTurn || !jsonMessage.has("data"))
+    private void flushStrokes() {
+        flushScheduled = false;
+        if(coalescer.isEmpty())
             return;
 
-        JsonObject data = jsonMessage.getAsJsonObject("data");
+        int storedBefore = strokes.size();
+        for(Polyline line : coalescer.drain()) {
+            for(int i = 1; i < line.getPointCount(); i++) {
+                strokes.add(line.getX(i - 1), line.getY(i - 1), line.getX(i), line.getY(i), line.getColor(), line.getWidth());
+            }
+            journal.polyline(journalId, line);
 
-        Map<String, Object> stroke = new HashMap<>();
-        stroke.put("x1", data.get("x1").getAsDouble());
-        stroke.put("y1", data.get("y1").getAsDouble());
-        stroke.put("x2", data.get("x2").getAsDouble());
-        stroke.put("y2", data.get("y2").getAsDouble());
-        stroke.put("color", data.get("color").getAsString());
-        stroke.put("width", data.get("width").getAsInt());
-        strokes.add(stroke);
+            Map<String, Object> data = Map.of("color", line.getColor(), "width", line.getWidth(), "points", line.getPoints());
+            relayBinaryOrJson("polyline", StrokeCodec.encodePolyline(line), Map.of("type", "polyline", "data", data));
+        }
+        metrics.addStoredStrokes(strokes.size() - storedBefore);
+        compactStrokes();
+    }
 
-        broadcastBut(currentTurn, Map.of("type", "stroke", "data", stroke));
+    /**
+     * rasterizes old strokes into the snapshot once the history gets too long<br>
+     * keeps replays and memory bounded no matter how long the drawer draws<br>
+     * the strokes are drawn and encoded on the snapshot threads of the server, until the snapshot is published
+     * they stay in the history, so replays in between are complete
+     */
+    private void compactStrokes() {
+        if(strokes.size() < COMPACT_THRESHOLD || compacting)
+            return;
+
+        CanvasSnapshot.Compaction compaction = snapshot.compact(strokes, 0, strokes.size() - COMPACT_KEEP);
+        ExecutorService renderer = server.getSnapshotExecutor();
+        if(renderer == null) {
+            compaction.run();
+            finishCompaction(compaction);
+            return;
+        }
+        compacting = true;
+        renderer.execute(() -> {
+            try {
+                compaction.run();
+            } finally {
+                execute(() -> finishCompaction(compaction));
+            }
+        });
+    }
+
+    /**
+     * publishes the snapshot and drops the compacted strokes, unless the drawing was cleared meanwhile
+     */
+    private void finishCompaction(CanvasSnapshot.Compaction compaction) {
+        if(!snapshot.isCurrent(compaction))
+            return; // the clear already reset compacting, another compaction may be running
+        compacting = false;
+        if(!snapshot.publish(compaction))
+            return; // rendering failed, the next flush tries again
+        metrics.addStoredStrokes(-compaction.size());
+        metrics.recordCompaction();
+        strokes.keepLast(strokes.size() - compaction.size());
+        compactStrokes();
+    }
+
+    /**
+     * drops the stored strokes, pending strokes and the snapshot
+     */
+    private void clearDrawing() {
+        if(!strokes.isEmpty() || !snapshot.isEmpty()) {
+            metrics.recordHistorySize(strokes.size());
+            metrics.addStoredStrokes(-strokes.size());
+        }
+        strokes.clear();
+        coalescer.clear();
+        snapshot.clear(); // releases the image, a running compaction is dropped
+        compacting = false;
+        for(Player p : players) {
+            // the canvas of every player is cleared, nothing is left to resync
+            p.setNeedsResync(false);
+            p.setSnapshotOnly(false);
+        }
+    }
+
+    /**
+     * sends drawing data to all players but the drawer<br>
+     * players with the binary codec get the binary frame if there is one, all others get json
+     * @param type type of the message, used for metrics
+     * @param binary binary frame or null
+     * @param objMap json message
+     */
+    private void relayBinaryOrJson(String type, ByteBuffer binary, Map<String, Object> objMap) {
+        List<WebSocket> jsonRecipients = new ArrayList<>(players.size());
+        List<WebSocket> binaryRecipients = new ArrayList<>(players.size());
+        List<Player> resyncPlayers = null;
+        for(Player p : players) {
+            if(p == currentTurn)
+                continue;
+
+            switch (outboundLimiter.admitDrawing(p)) {
+                case SEND -> {
+                    if(binary != null && p.usesBinaryStrokes())
+                        binaryRecipients.add(p.getWebSocket());
+                    else
+                        jsonRecipients.add(p.getWebSocket());
+                }
+                case RESYNC -> {
+                    if(resyncPlayers == null)
+                        resyncPlayers = new ArrayList<>();
+                    resyncPlayers.add(p);
+                }
+                case SKIP -> { }
+            }
+        }
+
+        if(!binaryRecipients.isEmpty()) {
+            long start = System.nanoTime();
+            int size = binary.remaining();
+            server.broadcast(binary, binaryRecipients);
+            metrics.recordBroadcast(System.nanoTime() - start);
+            metrics.recordOutbound(type, Metrics.Codec.BINARY, size, binaryRecipients.size());
+        }
+        if(!jsonRecipients.isEmpty() || !spectatorNodes.isEmpty()) {
+            String json = gson.toJson(objMap);
+            broadcastEncoded(type, json, jsonRecipients);
+            spectate(json);
+        }
+        if(resyncPlayers != null) {
+            for(Player p : resyncPlayers) {
+                replayStrokes(p); // the history already contains the frame that was not sent
+            }
+        }
+    }
+
+    /**
+     * answers a clock sync request with the current server clock, at most once per {@link #SYNC_INTERVAL}<br>
+     * clients estimate their offset to the server clock from the round trip and count down to the turn deadline
+     * @param player Player which sent the request
+     */
+    private void sendClock(Player player) {
+        long now = System.nanoTime();
+        if(player.getLastClockSync() != Long.MIN_VALUE && now - player.getLastClockSync() < SYNC_INTERVAL)
+            return;
+        player.setLastClockSync(now);
+        send(player.getWebSocket(), Map.of("type", "sync", "data", scheduler.currentTimeMillis()));
     }
 
     /**
@@ -329,40 +947,126 @@ public class GameSession {
      */
     private void sendClear(WebSocket ws) {
         if (getPlayerFromWebSocket(ws) == currentTurn) {
-            strokes.clear();
+            clearDrawing();
+            journal.clear(journalId);
             broadcastBut(currentTurn, Map.of("type", "clear"));
         }
     }
 
+    /**
+     * sends all strokes to the player, at most once per {@link #REPLAY_INTERVAL}<br>
+     * requests inside the interval are merged into one replay at the end of the interval
+     * @param player Player which sent the message
+     */
+    private void requestStrokes(Player player) {
+        if (player.isStrokeReplayPending())
+            return;
+
+        long wait = player.getLastStrokeReplay() + REPLAY_INTERVAL - System.nanoTime();
+        if (player.getLastStrokeReplay() == Long.MIN_VALUE || wait <= 0) {
+            sendStrokes(player);
+            return;
+        }
+
+        player.setStrokeReplayPending(true);
+        scheduler.schedule(() -> execute(() -> {
+            player.setStrokeReplayPending(false);
+            if (players.contains(player))
+                sendStrokes(player);
+        }), wait, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * sends all strokes that got drawn since last clear or turn change
-     * @param ws Player which sent the message
+     * @param player Player to receive the strokes
      */
-    private void sendStrokes(WebSocket ws) {
-        send(ws, Map.of("type", "clear"));
-        for (Map<String, Object> stroke : strokes) {
-            send(ws, Map.of("type", "stroke", "data", stroke));
+    private void sendStrokes(Player player) {
+        flushStrokes();
+        replayStrokes(player);
+    }
+
+    /**
+     * clears the canvas of the player and sends the stored stroke history
+     * @param player Player to receive the strokes
+     */
+    private void replayStrokes(Player player) {
+        player.setLastStrokeReplay(System.nanoTime());
+        send(player.getWebSocket(), Map.of("type", "clear"));
+        sendStrokeHistory(player);
+    }
+
+    /**
+     * sends the snapshot of compacted strokes if there is one,
+     * then streams the remaining stroke history in batches of {@link #REPLAY_BATCH_SIZE} strokes<br>
+     * finishes with a replay_done message
+     * @param player Player to receive the strokes
+     */
+    private void sendStrokeHistory(Player player) {
+        WebSocket ws = player.getWebSocket();
+        if (!snapshot.isEmpty()) {
+            byte[] png = snapshot.toPng();
+            if (player.usesBinaryStrokes())
+                sendBinary(ws, "snapshot", StrokeCodec.encodeSnapshot(png));
+            else
+                send(ws, Map.of("type", "snapshot", "data", Base64.getEncoder().encodeToString(png)));
         }
+
+        for (int from = 0; from < strokes.size(); from += REPLAY_BATCH_SIZE) {
+            int to = Math.min(from + REPLAY_BATCH_SIZE, strokes.size());
+            ByteBuffer binary = player.usesBinaryStrokes() ? StrokeCodec.encodeBatch(strokes, from, to) : null;
+            if (binary != null) {
+                sendBinary(ws, "strokes", binary);
+                continue;
+            }
+
+            List<Stroke> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(strokes.get(i));
+            }
+            send(ws, Map.of("type", "strokes", "data", batch));
+        }
+        send(ws, Map.of("type", "replay_done", "data", Integer.toString(strokes.size())));
     }
 
     /**
      * broadcasts chat message<br>
-     * also if it is the current word, it will mark them as guessed
+     * also if it is the current word, it will mark them as guessed<br>
+     * messages that are the word or close to it are never shown to the room, a guessing player is told it was close
      * @param author Player which sent the message
-     * @param jsonMessage Message
+     * @param msg Message
      */
-    private void handleChatMessage(Player author, JsonObject jsonMessage) {
-        if (!jsonMessage.has("data"))
-            return;
-        String msg = jsonMessage.get("data").getAsString();
-
-        if (msg.equalsIgnoreCase(word) && author != currentTurn && !guessedPlayers.contains(author)) {
+    void handleChatMessage(Player author, String msg) {
+        GuessMatcher.Result result = guessMatcher == null ? GuessMatcher.Result.MISS : guessMatcher.match(msg);
+        boolean canGuess = author != currentTurn && !author.hasGuessed();
+        if (result == GuessMatcher.Result.EXACT && canGuess) {
             processCorrectGuess(author);
+        } else if (result != GuessMatcher.Result.MISS) {
+            if (canGuess)
+                send(author.getWebSocket(), Map.of("type", "close", "data", msg));
         } else {
             broadcastBut(author, Map.of("type", "message", "data", msg, "username", author.getUsername()));
         }
     }
 
+    /**
+     * sets the word of the turn and prepares the matcher for its guesses
+     * @param word new word
+     */
+    private void setWord(String word) {
+        this.word = word;
+        guessMatcher = new GuessMatcher(word);
+    }
+
+    /**
+     * forgets who guessed the word of the turn
+     */
+    private void clearGuesses() {
+        for (Player p : guessedPlayers) {
+            p.setGuessed(false);
+        }
+        guessedPlayers.clear();
+    }
+
     /**
      * will add the player to guessed players and calculate the points they will get <br>
      * broadcasts message containing the guessed player
@@ -371,9 +1075,11 @@ public class GameSession {
     private void processCorrectGuess(Player author) {
         broadcast(Map.of("type", "correct", "id", Integer.toString(author.getId()), "username", author.getUsername()));
         guessedPlayers.add(author);
+        author.setGuessed(true);
 
         int points = players.size() > 2 ? (int) (BASE_POINTS * Math.pow(DECAY_FACTOR, guessedPlayers.size() - 1)) : BASE_POINTS;
         playerToPreparedPoints.put(author, points);
+        journal.guess(journalId, author.getId(), points);
 
         if (checkDone()) {
             endTurn();
@@ -392,36 +1098,76 @@ public class GameSession {
      * sends full game state to the player
      * @param player Player to receive game state
      */
-    private void sendFullGameData(Player player) {
-        WebSocket ws = player.getWebSocket();
-        send(ws, Map.of("type", "start", "name", currentTurn.getUsername(), "id", Integer.toString(currentTurn.getId()), "length", Integer.toString(word.length()), "round", currentRound, "maxRound", ROUND_COUNT));
+    void sendFullGameData(Player player) {
+        send(player.getWebSocket(), startMessage());
 
-        for(Player p : players) {
-            sendScoreboard(p);
-        }
+        broadcastScoreboard();
+
+        sendTurnState(player);
+    }
 
+    /**
+     * sends guessed players, revealed hints and the drawing of the current turn to the player
+     * @param player Player to receive the turn state
+     */
+    private void sendTurnState(Player player) {
+        WebSocket ws = player.getWebSocket();
         List<Map<String, String>> guessedPlayersData = new ArrayList<>();
         for (Player p : guessedPlayers) {
             guessedPlayersData.add(Map.of("id", Integer.toString(p.getId()), "username", p.getUsername()));
         }
         send(ws, Map.of("type", "guessed_players", "data", guessedPlayersData));
 
-        for (Map<String, Object> stroke : strokes) {
-            send(ws, Map.of("type", "stroke", "data", stroke));
+        if (player != currentTurn) {
+            for (int idx : hintPositions) {
+                send(ws, Map.of("type", "hint", "position", Integer.toString(idx), "letter", Character.toString(word.charAt(idx))));
+            }
+        }
+
+        flushStrokes();
+        sendStrokeHistory(player);
+    }
+
+    /**
+     * sends the best players of the leaderboard and the rank of the player,
+     * points of games still running are added once the game ends or the player leaves
+     * @param player player who asked
+     */
+    private void sendLeaderboard(Player player) {
+        List<Map<String, String>> top = new ArrayList<>();
+        for (Leaderboard.Rank rank : leaderboard.top(LEADERBOARD_SIZE)) {
+            top.add(rankData(rank));
         }
+        Map<String, Object> objMap = new HashMap<>();
+        objMap.put("type", "leaderboard");
+        objMap.put("data", top);
+        Leaderboard.Rank own = leaderboard.rank(player.getUsername());
+        if (own != null)
+            objMap.put("rank", rankData(own));
+        send(player.getWebSocket(), objMap);
+    }
+
+    private static Map<String, String> rankData(Leaderboard.Rank rank) {
+        return Map.of("rank", Integer.toString(rank.rank()), "username", rank.username(), "points", Long.toString(rank.points()));
+    }
 
+    /**
+     * broadcasts scoreboard(id, name, points) to all players<br>
+     * the scoreboard is built and encoded once for all players
+     */
+    void broadcastScoreboard() {
+        broadcast(scoreboardMessage());
     }
 
     /**
-     * sends scoreboard(id, name, points) to the player
-     * @param player Player to receive leaderboard
+     * @return scoreboard(id, name, points) of all players
      */
-    private void sendScoreboard(Player player) {
+    private Map<String, Object> scoreboardMessage() {
         List<Map<String, String>> scoreboardData = new ArrayList<>();
         for(Player p : players) {
             scoreboardData.add(Map.of("id", Integer.toString(p.getId()), "username", p.getUsername(), "points", Integer.toString(p.getPoints())));
         }
-        send(player.getWebSocket(), Map.of("type", "scoreboard", "data", scoreboardData));
+        return Map.of("type", "scoreboard", "data", scoreboardData);
     }
 
     /**
@@ -429,10 +1175,9 @@ public class GameSession {
      * @param type type of the message
      */
     private void broadcast(String type) {
-        String message = gson.toJson(Map.of("type", type));
-        for(Player p : players) {
-            p.getWebSocket().send(message);
-        }
+        String message = typeMessages.computeIfAbsent(type, t -> gson.toJson(Map.of("type", t)));
+        broadcastEncoded(type, message, connections);
+        spectate(message);
     }
 
     /**
@@ -441,9 +1186,8 @@ public class GameSession {
      */
     private void broadcast(Map<String, Object> objMap) {
         String message = gson.toJson(objMap);
-        for(Player p : players) {
-            p.getWebSocket().send(message);
-        }
+        broadcastEncoded(typeOf(objMap), message, connections);
+        spectate(message);
     }
 
     /**
@@ -451,12 +1195,28 @@ public class GameSession {
      * @param player player to not send to
      * @param objMap object map of type and values
      */
-    private void broadcastBut(Player player, Map<String, Object> objMap) {
+    void broadcastBut(Player player, Map<String, Object> objMap) {
+        List<WebSocket> recipients = new ArrayList<>(connections);
+        recipients.remove(player.getWebSocket());
         String message = gson.toJson(objMap);
-        for(Player p : players) {
-            if(p != player)
-                p.getWebSocket().send(message);
-        }
+        broadcastEncoded(typeOf(objMap), message, recipients);
+        spectate(message);
+    }
+
+    /**
+     * sends an already encoded message to the recipients<br>
+     * the message is framed once and the frames are shared by all recipients
+     * @param type type of the message, used for metrics
+     * @param message encoded message
+     * @param recipients websockets to send to
+     */
+    private void broadcastEncoded(String type, String message, List<WebSocket> recipients) {
+        if(recipients.isEmpty())
+            return;
+        long start = System.nanoTime();
+        server.broadcast(message, recipients);
+        metrics.recordBroadcast(System.nanoTime() - start);
+        metrics.recordOutbound(type, Metrics.Codec.JSON, message.length(), recipients.size());
     }
 
     /**
@@ -466,6 +1226,35 @@ public class GameSession {
      */
     private void send(WebSocket ws, Map<String, Object> objMap) {
         String message = gson.toJson(objMap);
-        ws.send(message);
+        try {
+            ws.send(message);
+        } catch (WebsocketNotConnectedException e) {
+            return; // player disconnected, its removal is already queued in the mailbox
+        }
+        metrics.recordOutbound(typeOf(objMap), Metrics.Codec.JSON, message.length(), 1);
+    }
+
+    /**
+     * send binary frame to player
+     * @param ws websocket of player to send to
+     * @param type type of the frame, used for metrics
+     * @param frame encoded frame
+     */
+    private void sendBinary(WebSocket ws, String type, ByteBuffer frame) {
+        int size = frame.remaining();
+        try {
+            ws.send(frame);
+        } catch (WebsocketNotConnectedException e) {
+            return; // player disconnected, its removal is already queued in the mailbox
+        }
+        metrics.recordOutbound(type, Metrics.Codec.BINARY, size, 1);
+    }
+
+    /**
+     * @param objMap object map of type and values
+     * @return type of the message
+     */
+    private static String typeOf(Map<String, Object> objMap) {
+        return (String) objMap.get("type");
     }
 }
@@ -0,0 +1,141 @@
+package org.DrawingGame;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * matches chat messages against the word of a turn<br>
+ * word and guess are compared normalized: lower case, accents removed, anything but letters and digits
+ * collapsed into single spaces and trimmed, so "Éclair", "eclair " and "ECLAIR" all match "eclair"<br>
+ * a guess within a small edit distance (typos, one swapped pair of letters) is close<br>
+ * the word is normalized once per turn, a guess is normalized and compared in reused buffers,
+ * so matching allocates nothing and gives up as soon as the guess can't be within the distance anymore<br>
+ * not thread-safe, used on the session
+ */
+public class GuessMatcher {
+    public enum Result { EXACT, CLOSE, MISS }
+
+    private static final int FOLD_SIZE = 0x250; // latin-1 and latin extended-a/b, other characters are only lower-cased
+    private static final char[] FOLD = buildFoldTable();
+    private static final char SEPARATOR = ' ';
+
+    private final char[] word;
+    private final int maxDistance;
+    private final char[] guess;
+    private int[] before; // rows of the edit distance, reused for every guess
+    private int[] previous;
+    private int[] current;
+
+    /**
+     * @param word word of the turn
+     */
+    public GuessMatcher(String word) {
+        char[] buffer = new char[word.length()];
+        int length = normalize(word, buffer, buffer.length);
+        this.word = Arrays.copyOf(buffer, Math.max(0, length));
+        this.maxDistance = this.word.length >= 8 ? 2 : this.word.length >= 3 ? 1 : 0;
+        this.guess = new char[this.word.length + maxDistance];
+        this.before = new int[this.word.length + 1];
+        this.previous = new int[this.word.length + 1];
+        this.current = new int[this.word.length + 1];
+    }
+
+    /**
+     * @param text chat message
+     * @return whether the message is the word, close to it or neither
+     */
+    public Result match(String text) {
+        int length = normalize(text, guess, guess.length);
+        if(length <= 0)
+            return Result.MISS;
+        if(length == word.length && equalsWord(length))
+            return Result.EXACT;
+        return isClose(length) ? Result.CLOSE : Result.MISS;
+    }
+
+    private boolean equalsWord(int length) {
+        for(int i = 0; i < length; i++) {
+            if(guess[i] != word[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * optimal string alignment distance within {@link #maxDistance}, only the band of cells that can stay
+     * within it is computed
+     */
+    private boolean isClose(int length) {
+        if(maxDistance == 0 || Math.abs(length - word.length) > maxDistance)
+            return false;
+        int outside = maxDistance + 1; // any value over the bound
+        for(int j = 0; j <= word.length; j++) {
+            previous[j] = j <= maxDistance ? j : outside;
+        }
+        for(int i = 1; i <= length; i++) {
+            int from = Math.max(1, i - maxDistance);
+            int to = Math.min(word.length, i + maxDistance);
+            current[0] = i <= maxDistance ? i : outside;
+            if(from > 1)
+                current[from - 1] = outside;
+            int rowMin = current[0];
+            for(int j = from; j <= to; j++) {
+                int cost = guess[i - 1] == word[j - 1] ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if(i > 1 && j > 1 && guess[i - 1] == word[j - 2] && guess[i - 2] == word[j - 1])
+                    distance = Math.min(distance, before[j - 2] + 1);
+                current[j] = Math.min(distance, outside);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if(to < word.length)
+                current[to + 1] = outside;
+            if(rowMin > maxDistance)
+                return false;
+            int[] oldest = before;
+            before = previous;
+            previous = current;
+            current = oldest;
+        }
+        return previous[word.length] <= maxDistance;
+    }
+
+    /**
+     * writes the normalized text into the buffer
+     * @return length of the normalized text, -1 if it does not fit
+     */
+    private static int normalize(String text, char[] buffer, int capacity) {
+        int length = 0;
+        boolean pendingSeparator = false;
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c >= FOLD_SIZE && Character.getType(c) == Character.NON_SPACING_MARK)
+                continue; // accent of a decomposed letter
+            char folded = c < FOLD_SIZE ? FOLD[c] : Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+            if(folded == 0) {
+                pendingSeparator = length > 0;
+                continue;
+            }
+            if(length + (pendingSeparator ? 2 : 1) > capacity)
+                return -1;
+            if(pendingSeparator)
+                buffer[length++] = SEPARATOR;
+            pendingSeparator = false;
+            buffer[length++] = folded;
+        }
+        return length;
+    }
+
+    /**
+     * @return lower-case letter without accents or digit for every character below {@link #FOLD_SIZE}, 0 for separators
+     */
+    private static char[] buildFoldTable() {
+        char[] fold = new char[FOLD_SIZE];
+        for(char c = 0; c < FOLD_SIZE; c++) {
+            if(!Character.isLetterOrDigit(c))
+                continue;
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            fold[c] = Character.toLowerCase(decomposed.charAt(0));
+        }
+        return fold;
+    }
+}
@@ -0,0 +1,195 @@
+package org.DrawingGame;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * state of one session as written to the {@link GameJournal}<br>
+ * built by the session for a checkpoint, and rebuilt on recovery from the last checkpoint
+ * and the events that followed it<br>
+ * a plain holder, only used by {@link GameJournal} and {@link GameSession}
+ */
+class JournalRoom {
+    /**
+     * player of the room, identified by the token the client keeps to reclaim the player after a reconnect
+     */
+    record Member(int id, String token, String username, int points) {
+    }
+
+    final long journalId;
+    int maxPlayerId = 0;
+    boolean running = false;
+    int drawerId = -1;
+    int round = 1;
+    int turnsInRound = 0;
+    long deadline = 0; // server clock millis when the turn ends
+    String word = "";
+    final Map<Integer, Member> players = new LinkedHashMap<>();
+    final Map<Integer, Integer> guessed = new LinkedHashMap<>(); // player id -> prepared points
+    final List<Integer> hints = new ArrayList<>();
+    final List<Stroke> strokes = new ArrayList<>();
+    byte[] snapshot = null; // png of the compacted strokes, null if there are none
+
+    /**
+     * @param journalId id of the session in the journal
+     */
+    JournalRoom(long journalId) {
+        this.journalId = journalId;
+    }
+
+    /**
+     * applies an event record that followed the last checkpoint
+     * @param type record type, see {@link GameJournal}
+     * @param payload payload of the record
+     */
+    void apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case GameJournal.JOIN -> {
+                int id = payload.getInt();
+                int points = payload.getInt();
+                String token = GameJournal.getString(payload);
+                players.put(id, new Member(id, token, GameJournal.getString(payload), points));
+                maxPlayerId = Math.max(maxPlayerId, id + 1);
+            }
+            case GameJournal.LEAVE -> {
+                int id = payload.getInt();
+                players.remove(id);
+                guessed.remove(id);
+            }
+            case GameJournal.STROKE -> strokes.add(GameJournal.getStroke(payload));
+            case GameJournal.POLYLINE -> {
+                int width = payload.getShort();
+                String color = GameJournal.getColor(payload);
+                int count = payload.getInt();
+                float x = payload.getFloat();
+                float y = payload.getFloat();
+                for(int i = 1; i < count; i++) {
+                    float nextX = payload.getFloat();
+                    float nextY = payload.getFloat();
+                    strokes.add(new Stroke(x, y, nextX, nextY, color, width));
+                    x = nextX;
+                    y = nextY;
+                }
+            }
+            case GameJournal.CLEAR -> clearDrawing();
+            case GameJournal.GUESS -> guessed.put(payload.getInt(), payload.getInt());
+            case GameJournal.HINT -> hints.add(payload.getInt());
+            case GameJournal.TURN -> {
+                running = true;
+                drawerId = payload.getInt();
+                round = payload.getInt();
+                turnsInRound = payload.getInt();
+                deadline = payload.getLong();
+                word = GameJournal.getString(payload);
+                int count = payload.getInt();
+                for(int i = 0; i < count; i++) {
+                    Member member = players.get(payload.getInt());
+                    int points = payload.getInt();
+                    if(member != null)
+                        players.put(member.id(), new Member(member.id(), member.token(), member.username(), points));
+                }
+                clearTurn();
+            }
+            case GameJournal.STOP -> {
+                running = false;
+                drawerId = -1;
+                clearTurn();
+            }
+            default -> throw new IllegalArgumentException("unknown journal record " + type);
+        }
+    }
+
+    private void clearTurn() {
+        guessed.clear();
+        hints.clear();
+        clearDrawing();
+    }
+
+    private void clearDrawing() {
+        strokes.clear();
+        snapshot = null;
+    }
+
+    /**
+     * writes the full state as checkpoint payload
+     * @param out output of the payload
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(maxPlayerId);
+        out.writeBoolean(running);
+        out.writeInt(drawerId);
+        out.writeInt(round);
+        out.writeInt(turnsInRound);
+        out.writeLong(deadline);
+        GameJournal.writeString(out, word);
+        out.writeInt(players.size());
+        for(Member member : players.values()) {
+            out.writeInt(member.id());
+            out.writeInt(member.points());
+            GameJournal.writeString(out, member.token());
+            GameJournal.writeString(out, member.username());
+        }
+        out.writeInt(guessed.size());
+        for(Map.Entry<Integer, Integer> guess : guessed.entrySet()) {
+            out.writeInt(guess.getKey());
+            out.writeInt(guess.getValue());
+        }
+        out.writeInt(hints.size());
+        for(int hint : hints) {
+            out.writeInt(hint);
+        }
+        out.writeInt(snapshot == null ? 0 : snapshot.length);
+        if(snapshot != null)
+            out.write(snapshot);
+        out.writeInt(strokes.size());
+        for(Stroke stroke : strokes) {
+            GameJournal.writeStroke(out, stroke);
+        }
+    }
+
+    /**
+     * @param journalId id of the session in the journal
+     * @param payload checkpoint payload written by {@link #write(DataOutput)}
+     * @return state of the checkpoint
+     */
+    static JournalRoom read(long journalId, ByteBuffer payload) {
+        JournalRoom room = new JournalRoom(journalId);
+        room.maxPlayerId = payload.getInt();
+        room.running = payload.get() != 0;
+        room.drawerId = payload.getInt();
+        room.round = payload.getInt();
+        room.turnsInRound = payload.getInt();
+        room.deadline = payload.getLong();
+        room.word = GameJournal.getString(payload);
+        int count = payload.getInt();
+        for(int i = 0; i < count; i++) {
+            int id = payload.getInt();
+            int points = payload.getInt();
+            String token = GameJournal.getString(payload);
+            room.players.put(id, new Member(id, token, GameJournal.getString(payload), points));
+        }
+        count = payload.getInt();
+        for(int i = 0; i < count; i++) {
+            room.guessed.put(payload.getInt(), payload.getInt());
+        }
+        count = payload.getInt();
+        for(int i = 0; i < count; i++) {
+            room.hints.add(payload.getInt());
+        }
+        int snapshotSize = payload.getInt();
+        if(snapshotSize > 0) {
+            room.snapshot = new byte[snapshotSize];
+            payload.get(room.snapshot);
+        }
+        count = payload.getInt();
+        for(int i = 0; i < count; i++) {
+            room.strokes.add(GameJournal.getStroke(payload));
+        }
+        return room;
+    }
+}
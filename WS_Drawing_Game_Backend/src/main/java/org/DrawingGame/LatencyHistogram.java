@@ -0,0 +1,90 @@
+package org.DrawingGame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * lock-free, allocation-free histogram of non-negative values (e.g. nanoseconds)<br>
+ * log-linear buckets like HDR histograms: every power of two is split into 8 linear sub-buckets,
+ * so recorded values are kept with a relative error of at most 12.5%
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2; // values below are counted exactly
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * records a value, negative values are recorded as 0
+     * @param value value to record
+     */
+    public void record(long value) {
+        if(value < 0)
+            value = 0;
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int bucketIndex(long value) {
+        if(value < LINEAR_LIMIT)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return highest value that falls into the bucket
+     */
+    private static long bucketUpperBound(int idx) {
+        if(idx < LINEAR_LIMIT)
+            return idx;
+        int exponent = (idx - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long subBucket = (idx - LINEAR_LIMIT) % SUB_BUCKETS;
+        long lowerBound = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return value that the given percentage of recorded values is below or equal to, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if(total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if(seen >= rank)
+                return Math.min(bucketUpperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+}
@@ -0,0 +1,474 @@
+package org.DrawingGame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * total points of every username over all games, kept across restarts<br>
+ * sessions add the points of a game with {@link #add(String, int)}, which only merges them into a pending map;
+ * a writer thread applies the pending points once per flush interval, so the game never waits for the ranking or the disk<br>
+ * ranks come from a {@link RankTree}: top k and the rank of a user in O(log n) for millions of users<br>
+ * storage, without a directory the leaderboard lives in memory only:
+ * <ul>
+ *     <li>leaderboard.log: append-only, header (magic, generation), then per update the new total of a user:
+ *     body length (int), crc32c of the body (int), body: total (long), utf-8 username</li>
+ *     <li>leaderboard.idx: memory-mapped, header (magic, generation, length of the log it covers, user count),
+ *     then the log offset of the latest record of every user, so a start reads one record per user
+ *     instead of the whole history</li>
+ * </ul>
+ * the log is rewritten with one record per user once it is more than twice that size
+ */
+public class Leaderboard {
+    private static final int LOG_MAGIC = 0x44474C42; // "DGLB"
+    private static final int INDEX_MAGIC = 0x44474C49; // "DGLI"
+    private static final int LOG_HEADER = 4 + 8; // magic, generation
+    private static final int INDEX_HEADER = 32; // magic, padding, generation, covered log length, count, padding
+    private static final int RECORD_HEADER = 4 + 4; // length, crc
+    private static final int MAX_NAME_LENGTH = 256; // longer names are not ranked
+    private static final int MAX_NAME_BYTES = 3 * MAX_NAME_LENGTH;
+    private static final int INITIAL_INDEX_CAPACITY = 1024; // users
+    private static final long COMPACT_MIN_SIZE = 1 << 20; // bytes of log before it is ever compacted
+    private static final String LOG_FILE = "leaderboard.log";
+    private static final String INDEX_FILE = "leaderboard.idx";
+
+    /**
+     * @param rank 1 for the user with the most points
+     * @param username name the points were scored with
+     * @param points total points
+     */
+    public record Rank(int rank, String username, long points) {
+    }
+
+    /**
+     * user of the leaderboard, points are changed under the lock, offset and slot only by the writer
+     */
+    private static final class Entry {
+        private final String name;
+        private final int recordSize;
+        private long points;
+        private final int slot; // position in the index
+        private long offset; // log position of the latest record
+
+        private Entry(String name, int slot) {
+            this.name = name;
+            this.recordSize = RECORD_HEADER + 8 + name.getBytes(StandardCharsets.UTF_8).length;
+            this.slot = slot;
+        }
+    }
+
+    private final Path directory; // null keeps the leaderboard in memory
+    private final long flushIntervalNanos;
+    private final Map<String, Long> pending = new ConcurrentHashMap<>(); // points added since the last flush
+    private final Map<String, Entry> entries = new HashMap<>(); // changed by the writer under the lock
+    private final List<Entry> slots = new ArrayList<>(); // entries by index slot, only used by the writer
+    private final RankTree tree = new RankTree();
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(64 * 1024);
+    private volatile boolean closed = false;
+    private Thread writer;
+    private FileChannel log; // only used by the writer once started
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private long generation;
+    private long logSize;
+    private long liveBytes = LOG_HEADER; // size the log would have with one record per user
+
+    /**
+     * @param directory directory of the files, created if it does not exist, null keeps the leaderboard in memory
+     * @param flushIntervalMillis time between two flushes of the pending points
+     */
+    public Leaderboard(Path directory, long flushIntervalMillis) {
+        this.directory = directory;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+    }
+
+    /**
+     * reads the stored totals, has to be called before {@link #start()}<br>
+     * uses the index if it matches the log, otherwise the whole log is read and the index rebuilt;
+     * a torn record at the end of the log is cut off
+     * @throws IOException if the files can not be read or created, the leaderboard then starts empty in memory
+     */
+    public void load() throws IOException {
+        if(directory == null)
+            return;
+        try {
+            read();
+        } catch (IOException e) {
+            closeFiles();
+            entries.clear();
+            slots.clear();
+            throw e;
+        }
+        for(Entry entry : slots) {
+            tree.insert(entry.name, entry.points);
+            liveBytes += entry.recordSize;
+        }
+        System.out.println("Leaderboard loaded with " + entries.size() + " users");
+    }
+
+    /**
+     * opens the files and reads the latest total of every user into the entries
+     */
+    private void read() throws IOException {
+        Files.createDirectories(directory);
+        Path logPath = directory.resolve(LOG_FILE);
+        if(!Files.exists(logPath) || Files.size(logPath) < LOG_HEADER) {
+            createLog(logPath, ThreadLocalRandom.current().nextLong());
+            openIndex(true);
+            return;
+        }
+
+        log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if(log.size() > Integer.MAX_VALUE)
+            throw new IOException(logPath + " is too large for the leaderboard");
+        MappedByteBuffer data = log.map(FileChannel.MapMode.READ_ONLY, 0, log.size());
+        if(data.getInt(0) != LOG_MAGIC)
+            throw new IOException(logPath + " is not a leaderboard log");
+        generation = data.getLong(4);
+
+        long scanFrom = LOG_HEADER;
+        openIndex(false);
+        if(index.getInt(0) == INDEX_MAGIC && index.getLong(8) == generation && index.getLong(16) <= data.limit()
+                && index.getInt(24) <= (index.capacity() - INDEX_HEADER) / 8) {
+            int count = index.getInt(24);
+            for(int slot = 0; slot < count && scanFrom >= 0; slot++) {
+                int offset = (int) index.getLong(INDEX_HEADER + 8 * slot);
+                if(readRecord(data, offset, slot) < 0)
+                    scanFrom = -1; // the index does not match the log
+            }
+            if(scanFrom >= 0)
+                scanFrom = index.getLong(16);
+        } else {
+            scanFrom = -1;
+        }
+        if(scanFrom < 0) {
+            System.out.println("Leaderboard index does not match the log, reading the whole log");
+            entries.clear();
+            slots.clear();
+            scanFrom = LOG_HEADER;
+        }
+
+        // records written after the index was last updated
+        int position = (int) scanFrom;
+        while(position < data.limit()) {
+            int next = readRecord(data, position, -1);
+            if(next < 0) {
+                System.out.println("Leaderboard log ends with a torn record at " + position + ", cutting it off");
+                break;
+            }
+            position = next;
+        }
+        log.truncate(position);
+        log.position(position);
+        logSize = position;
+        rebuildIndex();
+    }
+
+    /**
+     * reads the record at the position into the entries
+     * @param slot index slot the record belongs to, -1 to look the user up by name
+     * @return position after the record, -1 if it is torn or corrupt
+     */
+    private int readRecord(ByteBuffer data, int position, int slot) {
+        if(position < LOG_HEADER || position + RECORD_HEADER > data.limit())
+            return -1;
+        int length = data.getInt(position);
+        if(length < 8 || length > 8 + MAX_NAME_BYTES || position + RECORD_HEADER + length > data.limit())
+            return -1;
+        ByteBuffer body = data.slice(position + RECORD_HEADER, length);
+        crc.reset();
+        crc.update(body.duplicate());
+        if((int) crc.getValue() != data.getInt(position + 4))
+            return -1;
+
+        long total = body.getLong(0);
+        byte[] nameBytes = new byte[length - 8];
+        body.get(8, nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        Entry entry = entries.get(name);
+        if(entry == null) {
+            if(slot >= 0 && slot != slots.size())
+                return -1;
+            entry = new Entry(name, slots.size());
+            entries.put(name, entry);
+            slots.add(entry);
+        } else if(slot >= 0) {
+            return -1; // a user in two slots
+        }
+        entry.points = total;
+        entry.offset = position;
+        return position + RECORD_HEADER + length;
+    }
+
+    /**
+     * starts the writer thread
+     */
+    public void start() {
+        writer = new Thread(this::writeLoop, "leaderboard-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * flushes the pending points and stops the writer
+     */
+    public void close() {
+        closed = true;
+        if(writer == null)
+            return;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * adds points of a game to the total of the user, applied with the next flush
+     * @param username name the points were scored with
+     * @param points points of the game, nothing happens for 0
+     */
+    public void add(String username, int points) {
+        if(points != 0 && !closed && username.length() <= MAX_NAME_LENGTH)
+            pending.merge(username, (long) points, Long::sum);
+    }
+
+    /**
+     * @param count number of users
+     * @return users with the most points, best first
+     */
+    public synchronized List<Rank> top(int count) {
+        List<Rank> ranks = new ArrayList<>(Math.min(count, tree.size()));
+        tree.top(count, ranks);
+        return ranks;
+    }
+
+    /**
+     * @param username name of the user
+     * @return rank and total of the user, null if it has no points yet
+     */
+    public synchronized Rank rank(String username) {
+        Entry entry = entries.get(username);
+        if(entry == null)
+            return null;
+        return new Rank(tree.countBefore(entry.name, entry.points) + 1, entry.name, entry.points);
+    }
+
+    /**
+     * @return number of users with points
+     */
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    private void writeLoop() {
+        while(true) {
+            boolean last = closed;
+            long start = System.nanoTime();
+            try {
+                flush();
+            } catch (IOException e) {
+                System.out.println("Could not write the leaderboard, totals are kept in memory only: " + e.getMessage());
+                closeFiles();
+            }
+            if(last)
+                break;
+            long elapsed = System.nanoTime() - start;
+            if(elapsed < flushIntervalNanos)
+                LockSupport.parkNanos(flushIntervalNanos - elapsed);
+        }
+        closeFiles();
+    }
+
+    /**
+     * applies the pending points to the ranking, then appends the new totals to the log and points the index at them
+     */
+    private void flush() throws IOException {
+        if(pending.isEmpty())
+            return;
+        List<Entry> changed = new ArrayList<>();
+        synchronized (this) {
+            for(String name : pending.keySet()) {
+                Long points = pending.remove(name); // points added while the batch is applied go into the next one
+                if(points == null)
+                    continue;
+                Entry entry = entries.get(name);
+                if(entry == null) {
+                    entry = new Entry(name, slots.size());
+                    entries.put(name, entry);
+                    slots.add(entry);
+                    liveBytes += entry.recordSize;
+                } else {
+                    tree.remove(entry.name, entry.points);
+                }
+                entry.points += points;
+                tree.insert(entry.name, entry.points);
+                changed.add(entry);
+            }
+        }
+        if(log == null)
+            return;
+
+        // one write and one sync for the whole batch
+        recordBuffer.clear();
+        for(Entry entry : changed) {
+            putRecord(entry);
+        }
+        writeRecords();
+        log.force(false);
+
+        ensureIndexCapacity(slots.size());
+        for(Entry entry : changed) {
+            index.putLong(INDEX_HEADER + 8 * entry.slot, entry.offset);
+        }
+        index.putInt(24, slots.size());
+        index.putLong(16, logSize);
+        index.force();
+
+        if(logSize > COMPACT_MIN_SIZE && logSize > 2 * liveBytes)
+            compact();
+    }
+
+    /**
+     * adds the current total of the entry to the record buffer, writing the buffer out first if it is full
+     */
+    private void putRecord(Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        if(recordBuffer.remaining() < RECORD_HEADER + 8 + name.length) {
+            writeRecords();
+            recordBuffer.clear();
+        }
+        int start = recordBuffer.position();
+        entry.offset = logSize + start;
+        recordBuffer.putInt(8 + name.length).putInt(0).putLong(entry.points).put(name);
+        crc.reset();
+        crc.update(recordBuffer.slice(start + RECORD_HEADER, 8 + name.length));
+        recordBuffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * appends the filled part of the record buffer to the log
+     */
+    private void writeRecords() throws IOException {
+        recordBuffer.flip();
+        while(recordBuffer.hasRemaining()) {
+            logSize += log.write(recordBuffer);
+        }
+    }
+
+    /**
+     * rewrites the log with one record per user under a new generation and rebuilds the index for it<br>
+     * the index is replaced after the log, an index of the old generation is ignored on the next start
+     */
+    private void compact() throws IOException {
+        long before = logSize;
+        Path logPath = directory.resolve(LOG_FILE);
+        Path tmp = directory.resolve(LOG_FILE + ".tmp");
+        log.close();
+        log = null;
+        createLog(tmp, generation + 1);
+        recordBuffer.clear();
+        for(Entry entry : slots) {
+            putRecord(entry);
+        }
+        writeRecords();
+        log.force(false);
+        log.close();
+        Files.move(tmp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log.position(logSize);
+        rebuildIndex();
+        System.out.printf("Leaderboard log compacted from %.1f MB to %.1f MB%n", before / 1e6, logSize / 1e6);
+    }
+
+    /**
+     * creates a log with only the header and opens it for appending
+     */
+    private void createLog(Path path, long newGeneration) throws IOException {
+        generation = newGeneration;
+        log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putLong(generation).flip();
+        while(header.hasRemaining()) {
+            log.write(header);
+        }
+        log.force(false);
+        logSize = LOG_HEADER;
+        log.position(logSize);
+    }
+
+    /**
+     * writes the offsets of all users into the index for the current generation
+     */
+    private void rebuildIndex() throws IOException {
+        ensureIndexCapacity(slots.size());
+        for(Entry entry : slots) {
+            index.putLong(INDEX_HEADER + 8 * entry.slot, entry.offset);
+        }
+        index.putInt(0, INDEX_MAGIC);
+        index.putLong(8, generation);
+        index.putLong(16, logSize);
+        index.putInt(24, slots.size());
+        index.force();
+    }
+
+    /**
+     * opens and maps the index file
+     * @param reset whether to drop its content
+     */
+    private void openIndex(boolean reset) throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if(reset)
+            indexChannel.truncate(0);
+        long capacity = Math.max(INITIAL_INDEX_CAPACITY, (indexChannel.size() - INDEX_HEADER) / 8);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + 8 * capacity);
+        if(reset)
+            rebuildIndex();
+    }
+
+    /**
+     * grows the mapping of the index to at least the given number of users, doubling its size
+     */
+    private void ensureIndexCapacity(int users) throws IOException {
+        long capacity = (index.capacity() - INDEX_HEADER) / 8;
+        if(users <= capacity)
+            return;
+        while(capacity < users) {
+            capacity *= 2;
+        }
+        if(INDEX_HEADER + 8 * capacity > Integer.MAX_VALUE)
+            throw new IOException("too many users for the leaderboard index");
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + 8 * capacity);
+    }
+
+    private void closeFiles() {
+        try {
+            if(log != null)
+                log.close();
+            if(indexChannel != null)
+                indexChannel.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the leaderboard: " + e.getMessage());
+        }
+        log = null;
+        indexChannel = null;
+    }
+}
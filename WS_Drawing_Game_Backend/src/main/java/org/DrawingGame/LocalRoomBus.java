@@ -0,0 +1,87 @@
+package org.DrawingGame;
+
+import java.io.IOException;
+
+/**
+ * {@link RoomBus} of a node on a {@link RoomBroker} in the same jvm<br>
+ * with its own broker the node is a cluster of one, which is the default of {@link GameServer};
+ * nodes that share a broker form a cluster in one jvm<br>
+ * messages are delivered synchronously on the sender's thread
+ */
+public class LocalRoomBus implements RoomBus {
+    private final RoomBroker broker;
+    private volatile String nodeId;
+    private volatile Listener listener;
+    private volatile boolean unregistered = false;
+
+    /**
+     * @param broker broker shared by the nodes of the cluster
+     */
+    public LocalRoomBus(RoomBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public void register(String nodeId, Listener listener) {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        broker.register(nodeId, listener::onMessage);
+    }
+
+    @Override
+    public void unregister() {
+        unregistered = true;
+        if(nodeId != null)
+            broker.unregister(nodeId);
+    }
+
+    @Override
+    public Room join() throws IOException {
+        Room room = broker.join(nodeId);
+        if(room == null)
+            throw new IOException("node " + nodeId + " is not registered");
+        return room;
+    }
+
+    @Override
+    public Room create(int players) throws IOException {
+        Room room = broker.create(nodeId, players);
+        if(room == null)
+            throw new IOException("node " + nodeId + " is not registered");
+        return room;
+    }
+
+    @Override
+    public Room find(long roomId) {
+        return broker.find(roomId);
+    }
+
+    @Override
+    public boolean holdsLease(long roomId) {
+        Room room = broker.find(roomId);
+        return room != null && room.owner().equals(nodeId);
+    }
+
+    @Override
+    public void drain() {
+        broker.drain(nodeId);
+    }
+
+    @Override
+    public boolean leave(long roomId) {
+        return broker.leave(roomId);
+    }
+
+    @Override
+    public boolean renewLeases() {
+        if(unregistered || broker.renew(nodeId))
+            return true;
+        broker.register(nodeId, listener::onMessage);
+        return false;
+    }
+
+    @Override
+    public void send(String nodeId, BusMessage message) {
+        broker.route(nodeId, message);
+    }
+}
@@ -0,0 +1,62 @@
+package org.DrawingGame;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * lock-free multi-producer, single-consumer command queue<br>
+ * commands can be posted from any thread, but are run one after another,
+ * so the owner of the mailbox never runs on two threads at once
+ */
+public class Mailbox implements Executor {
+    private static final int BATCH_SIZE = 64; // commands before giving the thread back to other mailboxes
+
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Executor executor;
+
+    /**
+     * @param executor executor that drains the mailbox, can be shared with other mailboxes
+     */
+    public Mailbox(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * posts a command to the mailbox
+     * @param command command to run
+     */
+    @Override
+    public void execute(Runnable command) {
+        commands.offer(command);
+        if(scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * runs queued commands until the mailbox is empty or the batch size is reached<br>
+     * reschedules itself if commands are left
+     */
+    private void drain() {
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            Runnable command = commands.poll();
+            if(command == null)
+                break;
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                System.out.println("An Error occurred in a mailbox command: ");
+                e.printStackTrace();
+            }
+        }
+
+        scheduled.set(false);
+        // a producer may have posted after the last poll without scheduling a drain
+        if(!commands.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+}
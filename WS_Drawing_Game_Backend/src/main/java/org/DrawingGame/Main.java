@@ -1,8 +1,20 @@
 package org.DrawingGame;
 
+import java.io.IOException;
+
 public class Main {
     public static void main(String[] args) {
-        GameServer server = new GameServer("0.0.0.0", 3000);
+        System.setProperty("java.awt.headless", "true"); // canvas snapshots are rendered without a display
+        ServerConfig config;
+        try {
+            config = ServerConfig.load(args);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Invalid configuration: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        GameServer server = new GameServer(config.getHost(), config.getPort(), config);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::drain, "drain")); // SIGTERM of a deploy hands the rooms to the new process
         server.start();
     }
 }
\ No newline at end of file
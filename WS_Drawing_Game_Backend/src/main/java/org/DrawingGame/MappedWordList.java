@@ -0,0 +1,73 @@
+package org.DrawingGame;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * word list backed by a memory-mapped utf-8 file with one word per line<br>
+ * only an offset index is kept on the heap, words are decoded when they are drawn
+ */
+public class MappedWordList implements WordList {
+    private final MappedByteBuffer buffer;
+    private final int[] starts;
+    private final int[] ends;
+    private final int size;
+
+    /**
+     * maps the file and indexes the start and end of every non-empty line
+     * @param file word file
+     * @throws IOException if the file can not be mapped
+     */
+    public MappedWordList(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large for a word list");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // mapping stays valid after close
+        }
+
+        int[] lineStarts = new int[1024];
+        int[] lineEnds = new int[1024];
+        int count = 0;
+        int limit = buffer.limit();
+        int lineStart = 0;
+        for(int i = 0; i <= limit; i++) {
+            if(i < limit && buffer.get(i) != '\n')
+                continue;
+
+            int lineEnd = i;
+            if(lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r')
+                lineEnd--;
+            if(lineEnd > lineStart) {
+                if(count == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, count * 2);
+                    lineEnds = Arrays.copyOf(lineEnds, count * 2);
+                }
+                lineStarts[count] = lineStart;
+                lineEnds[count] = lineEnd;
+                count++;
+            }
+            lineStart = i + 1;
+        }
+
+        starts = Arrays.copyOf(lineStarts, count);
+        ends = Arrays.copyOf(lineEnds, count);
+        size = count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String get(int idx) {
+        byte[] bytes = new byte[ends[idx] - starts[idx]];
+        buffer.get(starts[idx], bytes); // absolute get, safe for concurrent readers
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
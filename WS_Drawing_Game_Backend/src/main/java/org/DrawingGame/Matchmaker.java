@@ -0,0 +1,109 @@
+package org.DrawingGame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * index of rooms grouped by player count<br>
+ * joins and leaves cost O(max size) no matter how many rooms exist,
+ * rooms that are closest to full are filled first<br>
+ * all methods are thread-safe
+ * @param <T> room type, compared with equals
+ */
+public class Matchmaker<T> {
+    private final int maxSize;
+    private final List<LinkedHashSet<T>> buckets = new ArrayList<>(); // index is the player count
+    private final Map<T, Integer> roomSizes = new HashMap<>();
+
+    /**
+     * @param maxSize max player count per room
+     */
+    public Matchmaker(int maxSize) {
+        this.maxSize = maxSize;
+        for(int i = 0; i <= maxSize; i++) {
+            buckets.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * reserves a slot in the fullest room that is not full yet<br>
+     * creates a new room if there is none
+     * @param roomFactory creates a new room if all rooms are full
+     * @return room the player joins
+     */
+    public synchronized T join(Supplier<T> roomFactory) {
+        for(int size = maxSize - 1; size >= 1; size--) {
+            LinkedHashSet<T> bucket = buckets.get(size);
+            if(!bucket.isEmpty()) {
+                T room = bucket.getFirst();
+                move(room, size, size + 1);
+                return room;
+            }
+        }
+
+        T room = roomFactory.get();
+        buckets.get(1).add(room);
+        roomSizes.put(room, 1);
+        return room;
+    }
+
+    /**
+     * adds a room that already has players, e.g. a room restored after a restart
+     * @param room room to add, must not be known yet
+     * @param size player count of the room, at least 1
+     */
+    public synchronized void add(T room, int size) {
+        size = Math.max(1, Math.min(maxSize, size));
+        buckets.get(size).add(room);
+        roomSizes.put(room, size);
+    }
+
+    /**
+     * frees the slot of a leaving player
+     * @param room room the player leaves
+     * @return true if the room is empty now and was removed
+     */
+    public synchronized boolean leave(T room) {
+        Integer size = roomSizes.get(room);
+        if(size == null)
+            return false;
+
+        if(size == 1) {
+            buckets.get(1).remove(room);
+            roomSizes.remove(room);
+            return true;
+        }
+        move(room, size, size - 1);
+        return false;
+    }
+
+    /**
+     * removes the room no matter how many players it has, no more players are placed in it
+     * @param room room to remove
+     * @return true if the room was known
+     */
+    public synchronized boolean remove(T room) {
+        Integer size = roomSizes.remove(room);
+        if(size == null)
+            return false;
+        buckets.get(size).remove(room);
+        return true;
+    }
+
+    private void move(T room, int from, int to) {
+        buckets.get(from).remove(room);
+        buckets.get(to).add(room);
+        roomSizes.put(room, to);
+    }
+
+    /**
+     * @return number of rooms with at least one player
+     */
+    public synchronized int getSessionCount() {
+        return roomSizes.size();
+    }
+}
@@ -0,0 +1,168 @@
+package org.DrawingGame;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * streaming decoder for json messages from clients<br>
+ * reads the message with a {@link JsonReader} straight into a reused {@link Message}
+ * instead of building a json tree first<br>
+ * not thread-safe, every session owns its own decoder
+ */
+public class MessageDecoder {
+    public enum Type {
+        STROKE, CLEAR, GET_STROKES, MESSAGE, SYNC, LEADERBOARD,
+        UNKNOWN, // valid json with a type the server does not handle
+        INVALID // malformed json, missing fields or a stroke outside the canvas, see {@link Message#getError()}
+    }
+
+    private static final int X1 = 1, Y1 = 2, X2 = 4, Y2 = 8, COLOR = 16, WIDTH = 32;
+    private static final int ALL_STROKE_FIELDS = X1 | Y1 | X2 | Y2 | COLOR | WIDTH;
+
+    private final Message message = new Message();
+
+    /**
+     * decoded message, reused for every decode
+     */
+    public static final class Message {
+        private Type type;
+        private String error;
+        private float x1, y1, x2, y2;
+        private String color;
+        private int width;
+        private String text;
+        private int strokeFields; // bit set of the stroke fields found in data
+        private boolean hasText;
+
+        private void reset() {
+            type = null;
+            error = null;
+            color = null;
+            text = null;
+            strokeFields = 0;
+            hasText = false;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return reason why the message is invalid or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return chat text of a message
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return stroke of a stroke message
+         */
+        public Stroke toStroke() {
+            return new Stroke(x1, y1, x2, y2, color, Stroke.clampWidth(width));
+        }
+    }
+
+    /**
+     * decodes a json message<br>
+     * fields can be in any order, unknown fields are skipped
+     * @param json message from the client
+     * @return decoded message, only valid until the next call
+     */
+    public Message decode(String json) {
+        message.reset();
+        String typeName = null;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.beginObject();
+            while(reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "type" -> typeName = reader.nextString();
+                    case "data" -> readData(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if(reader.peek() != JsonToken.END_DOCUMENT)
+                return invalid("unexpected data after message");
+        } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+            return invalid("malformed json");
+        }
+
+        if(typeName == null)
+            return invalid("missing type");
+
+        message.type = switch (typeName) {
+            case "stroke" -> Type.STROKE;
+            case "clear" -> Type.CLEAR;
+            case "get_strokes" -> Type.GET_STROKES;
+            case "message" -> Type.MESSAGE;
+            case "sync" -> Type.SYNC;
+            case "leaderboard" -> Type.LEADERBOARD;
+            default -> Type.UNKNOWN;
+        };
+
+        if(message.type == Type.STROKE && message.strokeFields != ALL_STROKE_FIELDS)
+            return invalid("incomplete stroke");
+        // a number too large for a float turns into infinity, which can't be encoded as json again
+        if(message.type == Type.STROKE && !(inCanvas(message.x1) && inCanvas(message.y1) && inCanvas(message.x2) && inCanvas(message.y2)))
+            return invalid("stroke outside the canvas");
+        if(message.type == Type.MESSAGE && !message.hasText)
+            return invalid("missing message text");
+        return message;
+    }
+
+    /**
+     * reads data, which is a stroke object for strokes and a string for chat messages
+     */
+    private void readData(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if(token == JsonToken.STRING) {
+            message.text = reader.nextString();
+            message.hasText = true;
+            return;
+        }
+        if(token != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginObject();
+        while(reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "x1" -> { message.x1 = (float) reader.nextDouble(); message.strokeFields |= X1; }
+                case "y1" -> { message.y1 = (float) reader.nextDouble(); message.strokeFields |= Y1; }
+                case "x2" -> { message.x2 = (float) reader.nextDouble(); message.strokeFields |= X2; }
+                case "y2" -> { message.y2 = (float) reader.nextDouble(); message.strokeFields |= Y2; }
+                case "color" -> { message.color = reader.nextString(); message.strokeFields |= COLOR; }
+                case "width" -> { message.width = reader.nextInt(); message.strokeFields |= WIDTH; }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * @return true for coordinates from 0 to 1, false for nan and infinity
+     */
+    private static boolean inCanvas(float coordinate) {
+        return coordinate >= 0 && coordinate <= 1;
+    }
+
+    private Message invalid(String error) {
+        message.reset();
+        message.type = Type.INVALID;
+        message.error = error;
+        return message;
+    }
+}
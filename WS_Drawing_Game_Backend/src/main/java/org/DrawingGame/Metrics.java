@@ -0,0 +1,352 @@
+package org.DrawingGame;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * server-wide counters, gauges and latency histograms<br>
+ * recording only touches pre-allocated adders and histograms, so it can be used on the stroke path<br>
+ * message sizes of text frames are counted in chars, not in utf-8 bytes
+ */
+public class Metrics implements MetricsMXBean {
+    public enum Codec { JSON, BINARY }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final MessageDecoder.Type[] TYPES = MessageDecoder.Type.values();
+
+    private final LongAdder[][] inboundMessages = newAdders(Codec.values().length, TYPES.length);
+    private final LongAdder[][] inboundBytes = newAdders(Codec.values().length, TYPES.length);
+    private final LongAdder[] flooded = newAdders(1, TYPES.length)[0]; // messages dropped by flood control
+    private final LongAdder[] connects = newAdders(1, AdmissionControl.Decision.values().length)[0]; // handshakes by decision
+    private final Map<String, Traffic> outbound = new ConcurrentHashMap<>(); // by message type
+    private final LatencyHistogram handleTime = new LatencyHistogram(); // nanos
+    private final LatencyHistogram broadcastTime = new LatencyHistogram(); // nanos
+    private final LatencyHistogram historySize = new LatencyHistogram(); // strokes of a drawing when it is cleared
+    private final LongAdder storedStrokes = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final GameScheduler scheduler;
+    private final IntSupplier sessions;
+    private final IntSupplier players;
+    private final CompressionStats compression;
+    private final GameJournal journal;
+
+    /**
+     * outgoing messages and bytes of one message type per codec
+     */
+    private static final class Traffic {
+        private final LongAdder[][] counts = newAdders(2, Codec.values().length); // [messages, bytes][codec]
+    }
+
+    /**
+     * @param scheduler scheduler to report the timer lag of
+     * @param sessions supplier of the active session count
+     * @param players supplier of the connected player count
+     * @param compression stats of the permessage-deflate compression
+     * @param journal journal to report the write rate and commit time of
+     */
+    public Metrics(GameScheduler scheduler, IntSupplier sessions, IntSupplier players, CompressionStats compression, GameJournal journal) {
+        this.scheduler = scheduler;
+        this.sessions = sessions;
+        this.players = players;
+        this.compression = compression;
+        this.journal = journal;
+    }
+
+    private static LongAdder[][] newAdders(int rows, int columns) {
+        LongAdder[][] adders = new LongAdder[rows][columns];
+        for(LongAdder[] row : adders) {
+            for(int i = 0; i < columns; i++) {
+                row[i] = new LongAdder();
+            }
+        }
+        return adders;
+    }
+
+    /**
+     * counts a received message
+     * @param codec codec of the message
+     * @param type decoded type
+     * @param size size of the message
+     * @param nanos time spent handling the message
+     */
+    public void recordInbound(Codec codec, MessageDecoder.Type type, int size, long nanos) {
+        inboundMessages[codec.ordinal()][type.ordinal()].increment();
+        inboundBytes[codec.ordinal()][type.ordinal()].add(size);
+        handleTime.record(nanos);
+    }
+
+    /**
+     * counts a message that was over the budget of its sender and dropped
+     * @param type decoded type
+     */
+    public void recordFlooded(MessageDecoder.Type type) {
+        flooded[type.ordinal()].increment();
+    }
+
+    /**
+     * counts a handshake
+     * @param decision whether it was admitted or why it was refused
+     */
+    public void recordConnect(AdmissionControl.Decision decision) {
+        connects[decision.ordinal()].increment();
+    }
+
+    /**
+     * counts a message sent to the recipients
+     * @param type type of the message
+     * @param codec codec of the message
+     * @param size size of the message
+     * @param recipients number of recipients
+     */
+    public void recordOutbound(String type, Codec codec, int size, int recipients) {
+        Traffic traffic = outbound.get(type);
+        if(traffic == null)
+            traffic = outbound.computeIfAbsent(type, t -> new Traffic());
+        traffic.counts[0][codec.ordinal()].add(recipients);
+        traffic.counts[1][codec.ordinal()].add((long) size * recipients);
+    }
+
+    /**
+     * @param nanos time spent framing and queueing a broadcast for all recipients
+     */
+    public void recordBroadcast(long nanos) {
+        broadcastTime.record(nanos);
+    }
+
+    /**
+     * @param delta change of the number of strokes stored by a session
+     */
+    public void addStoredStrokes(long delta) {
+        storedStrokes.add(delta);
+    }
+
+    /**
+     * @param strokes number of strokes a drawing had when it got cleared
+     */
+    public void recordHistorySize(int strokes) {
+        historySize.record(strokes);
+    }
+
+    public void recordCompaction() {
+        compactions.increment();
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return sessions.getAsInt();
+    }
+
+    @Override
+    public int getActivePlayers() {
+        return players.getAsInt();
+    }
+
+    @Override
+    public long getStoredStrokes() {
+        return storedStrokes.sum();
+    }
+
+    @Override
+    public long getMessagesIn() {
+        return sum(inboundMessages);
+    }
+
+    @Override
+    public long getMessagesFlooded() {
+        return sum(flooded);
+    }
+
+    @Override
+    public long getConnectionsAdmitted() {
+        return connects[AdmissionControl.Decision.ADMIT.ordinal()].sum();
+    }
+
+    @Override
+    public long getConnectionsRefused() {
+        return sum(connects) - getConnectionsAdmitted();
+    }
+
+    @Override
+    public long getMessagesOut() {
+        long total = 0;
+        for(Traffic traffic : outbound.values()) {
+            total += sum(traffic.counts[0]);
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return sum(inboundBytes);
+    }
+
+    @Override
+    public long getBytesOut() {
+        long total = 0;
+        for(Traffic traffic : outbound.values()) {
+            total += sum(traffic.counts[1]);
+        }
+        return total;
+    }
+
+    @Override
+    public double getHandleTimeP50Millis() {
+        return handleTime.getValueAtPercentile(50) / 1_000_000.0;
+    }
+
+    @Override
+    public double getHandleTimeP99Millis() {
+        return handleTime.getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getHandleTimeMaxMillis() {
+        return handleTime.getMax() / 1_000_000.0;
+    }
+
+    @Override
+    public double getBroadcastTimeP99Millis() {
+        return broadcastTime.getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getBroadcastTimeMaxMillis() {
+        return broadcastTime.getMax() / 1_000_000.0;
+    }
+
+    @Override
+    public double getTimerLagP99Millis() {
+        return scheduler.getLagHistogram().getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getTimerLagMaxMillis() {
+        return scheduler.getMaxLagMillis();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        return compression.getRatio();
+    }
+
+    @Override
+    public double getCompressionTimeP99Millis() {
+        return compression.getTime().getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long total = 0;
+        for(LongAdder adder : adders) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    private static long sum(LongAdder[][] adders) {
+        long total = 0;
+        for(LongAdder[] row : adders) {
+            total += sum(row);
+        }
+        return total;
+    }
+
+    /**
+     * @return all metrics in the prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        sb.append("# TYPE drawing_messages_in_total counter\n");
+        appendInbound(sb, "drawing_messages_in_total", inboundMessages);
+        sb.append("# TYPE drawing_bytes_in_total counter\n");
+        appendInbound(sb, "drawing_bytes_in_total", inboundBytes);
+
+        sb.append("# TYPE drawing_messages_flooded_total counter\n");
+        for(MessageDecoder.Type type : TYPES) {
+            long value = flooded[type.ordinal()].sum();
+            if(value != 0)
+                sb.append("drawing_messages_flooded_total{type=\"").append(label(type)).append("\"} ").append(value).append('\n');
+        }
+
+        sb.append("# TYPE drawing_connections_total counter\n");
+        for(AdmissionControl.Decision decision : AdmissionControl.Decision.values()) {
+            sb.append("drawing_connections_total{decision=\"").append(label(decision)).append("\"} ")
+                    .append(connects[decision.ordinal()].sum()).append('\n');
+        }
+
+        sb.append("# TYPE drawing_messages_out_total counter\n");
+        appendOutbound(sb, "drawing_messages_out_total", 0);
+        sb.append("# TYPE drawing_bytes_out_total counter\n");
+        appendOutbound(sb, "drawing_bytes_out_total", 1);
+
+        appendSummary(sb, "drawing_handle_seconds", handleTime, 1e-9);
+        appendSummary(sb, "drawing_broadcast_seconds", broadcastTime, 1e-9);
+        appendSummary(sb, "drawing_timer_lag_seconds", scheduler.getLagHistogram(), 1e-9);
+        appendSummary(sb, "drawing_stroke_history_size", historySize, 1);
+        appendSummary(sb, "drawing_deflate_seconds", compression.getTime(), 1e-9);
+        appendSummary(sb, "drawing_journal_commit_seconds", journal.getCommitTime(), 1e-9);
+
+        appendGauge(sb, "drawing_sessions", getActiveSessions());
+        appendGauge(sb, "drawing_players", getActivePlayers());
+        appendGauge(sb, "drawing_stored_strokes", getStoredStrokes());
+        appendGauge(sb, "drawing_scheduler_queued_tasks", scheduler.getQueuedTasks());
+        appendGauge(sb, "drawing_journal_buffered_bytes", journal.getBufferedBytes());
+        sb.append("# TYPE drawing_journal_bytes_total counter\n");
+        sb.append("drawing_journal_bytes_total ").append(journal.getBytesWritten()).append('\n');
+        sb.append("# TYPE drawing_stroke_compactions_total counter\n");
+        sb.append("drawing_stroke_compactions_total ").append(compactions.sum()).append('\n');
+        sb.append("# TYPE drawing_deflate_frames_total counter\n");
+        sb.append("drawing_deflate_frames_total{result=\"compressed\"} ").append(compression.getCompressedFrames()).append('\n');
+        sb.append("drawing_deflate_frames_total{result=\"skipped\"} ").append(compression.getSkippedFrames()).append('\n');
+        sb.append("# TYPE drawing_deflate_bytes_total counter\n");
+        sb.append("drawing_deflate_bytes_total{stage=\"before\"} ").append(compression.getBytesIn()).append('\n');
+        sb.append("drawing_deflate_bytes_total{stage=\"after\"} ").append(compression.getBytesOut()).append('\n');
+        return sb.toString();
+    }
+
+    private void appendInbound(StringBuilder sb, String name, LongAdder[][] adders) {
+        for(Codec codec : Codec.values()) {
+            for(MessageDecoder.Type type : TYPES) {
+                long value = adders[codec.ordinal()][type.ordinal()].sum();
+                if(value == 0)
+                    continue;
+                sb.append(name).append("{codec=\"").append(label(codec)).append("\",type=\"").append(label(type))
+                        .append("\"} ").append(value).append('\n');
+            }
+        }
+    }
+
+    private void appendOutbound(StringBuilder sb, String name, int row) {
+        for(Map.Entry<String, Traffic> entry : outbound.entrySet()) {
+            for(Codec codec : Codec.values()) {
+                long value = entry.getValue().counts[row][codec.ordinal()].sum();
+                if(value == 0)
+                    continue;
+                sb.append(name).append("{codec=\"").append(label(codec)).append("\",type=\"").append(entry.getKey())
+                        .append("\"} ").append(value).append('\n');
+            }
+        }
+    }
+
+    private static void appendSummary(StringBuilder sb, String name, LatencyHistogram histogram, double scale) {
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for(double quantile : QUANTILES) {
+            sb.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getValueAtPercentile(quantile * 100) * scale).append('\n');
+        }
+        sb.append(name).append("_sum ").append(histogram.getSum() * scale).append('\n');
+        sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    private static void appendGauge(StringBuilder sb, String name, long value) {
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String label(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
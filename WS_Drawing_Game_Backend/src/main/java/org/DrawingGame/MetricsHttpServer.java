@@ -0,0 +1,57 @@
+package org.DrawingGame;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * serves {@link Metrics#toPrometheus()} on /metrics<br>
+ * only binds to the loopback address, the endpoint is meant for a local scraper or an ssh tunnel
+ */
+public class MetricsHttpServer {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Metrics metrics;
+    private final int port;
+    private HttpServer server;
+
+    public MetricsHttpServer(Metrics metrics, int port) {
+        this.metrics = metrics;
+        this.port = port;
+    }
+
+    /**
+     * starts the endpoint, requests are answered on a single background thread
+     * @throws IOException if the port can not be bound
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        System.out.println("Metrics available on http://127.0.0.1:" + port + "/metrics");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if(!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public void stop() {
+        if(server != null)
+            server.stop(0);
+    }
+}
@@ -0,0 +1,57 @@
+package org.DrawingGame;
+
+/**
+ * jmx view of {@link Metrics}, registered as org.DrawingGame:type=Metrics<br>
+ * times are in milliseconds
+ */
+public interface MetricsMXBean {
+    int getActiveSessions();
+
+    int getActivePlayers();
+
+    long getStoredStrokes();
+
+    long getMessagesIn();
+
+    /**
+     * @return messages dropped because their sender was over its budget
+     */
+    long getMessagesFlooded();
+
+    /**
+     * @return handshakes that were upgraded to a connection
+     */
+    long getConnectionsAdmitted();
+
+    /**
+     * @return handshakes refused by admission control, see {@link AdmissionControl.Decision}
+     */
+    long getConnectionsRefused();
+
+    long getMessagesOut();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    double getHandleTimeP50Millis();
+
+    double getHandleTimeP99Millis();
+
+    double getHandleTimeMaxMillis();
+
+    double getBroadcastTimeP99Millis();
+
+    double getBroadcastTimeMaxMillis();
+
+    double getTimerLagP99Millis();
+
+    double getTimerLagMaxMillis();
+
+    /**
+     * @return compressed size divided by uncompressed size of the compressed frames
+     */
+    double getCompressionRatio();
+
+    double getCompressionTimeP99Millis();
+}
@@ -0,0 +1,148 @@
+package org.DrawingGame;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * keeps slow consumers from piling up outgoing data on the server<br>
+ * live drawing frames are only sent to a player while the number of frames
+ * queued on their connection is below the soft limit, what happens above it depends on the {@link Policy}<br>
+ * above the hard limit the player is always disconnected<br>
+ * shared by all sessions, counters are thread-safe
+ */
+public class OutboundLimiter {
+    public enum Policy {
+        DROP, // drop live frames while over the limit, resync with a replay once the queue drained
+        SNAPSHOT, // downgrade to periodic replays for the rest of the turn
+        DISCONNECT // disconnect as soon as the soft limit is exceeded
+    }
+
+    public enum Decision {
+        SEND, // send the live frame
+        SKIP, // do not send the live frame
+        RESYNC // send a full replay instead of the live frame
+    }
+
+    private final Policy policy;
+    private final int softLimit;
+    private final int hardLimit;
+    private final long snapshotInterval;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    /**
+     * @param policy what to do with players over the soft limit
+     * @param softLimit queued frames above which live frames are not sent anymore
+     * @param hardLimit queued frames above which the player is disconnected
+     * @param snapshotInterval min milliseconds between replays of downgraded players
+     */
+    public OutboundLimiter(Policy policy, int softLimit, int hardLimit, long snapshotInterval) {
+        this.policy = policy;
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+        this.snapshotInterval = TimeUnit.MILLISECONDS.toNanos(snapshotInterval);
+    }
+
+    /**
+     * decides if a live drawing frame can be sent to the player
+     * @param player player to send to
+     * @return decision for this frame
+     */
+    public Decision admitDrawing(Player player) {
+        int queued = queuedFrames(player.getWebSocket());
+        if(queued > hardLimit || (queued > softLimit && policy == Policy.DISCONNECT)) {
+            disconnect(player.getWebSocket());
+            return Decision.SKIP;
+        }
+
+        if(player.isSnapshotOnly()) {
+            // a player that only got the history on join has no replay yet, the subtraction would overflow
+            boolean due = player.getLastStrokeReplay() == Long.MIN_VALUE
+                    || System.nanoTime() - player.getLastStrokeReplay() >= snapshotInterval;
+            if(queued == 0 && due) {
+                coalesced.increment();
+                return Decision.RESYNC;
+            }
+            dropped.increment();
+            return Decision.SKIP;
+        }
+
+        if(queued > softLimit) {
+            if(policy == Policy.SNAPSHOT)
+                player.setSnapshotOnly(true);
+            else
+                player.setNeedsResync(true);
+            dropped.increment();
+            return Decision.SKIP;
+        }
+
+        if(player.needsResync()) {
+            // a replay on top of a backlog would push the player over the limit again
+            if(queued > 0) {
+                dropped.increment();
+                return Decision.SKIP;
+            }
+            player.setNeedsResync(false);
+            coalesced.increment();
+            return Decision.RESYNC;
+        }
+        return Decision.SEND;
+    }
+
+    /**
+     * decides if a batch can be sent to a spectator<br>
+     * batches can't be skipped without breaking the drawing, so a spectator over the soft limit is disconnected,
+     * it reconnects and starts again from the current state
+     * @param spectator connection of the spectator
+     * @return false if the spectator was disconnected
+     */
+    public boolean admitSpectator(WebSocket spectator) {
+        if(queuedFrames(spectator) <= softLimit)
+            return true;
+        disconnect(spectator);
+        return false;
+    }
+
+    private void disconnect(WebSocket ws) {
+        if(ws.isOpen()) {
+            disconnected.increment();
+            ws.close(CloseFrame.TRY_AGAIN_LATER, "connection too slow");
+        }
+    }
+
+    /**
+     * @param ws connection
+     * @return number of frames waiting to be written to the socket
+     */
+    private static int queuedFrames(WebSocket ws) {
+        if(ws instanceof WebSocketImpl impl)
+            return impl.outQueue.size();
+        return ws.hasBufferedData() ? 1 : 0;
+    }
+
+    /**
+     * @return frames that were not sent to slow players
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return replays that were sent to slow players instead of the dropped frames
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return players that were disconnected for being too slow
+     */
+    public long getDisconnected() {
+        return disconnected.sum();
+    }
+}
@@ -2,18 +2,49 @@ package org.DrawingGame;
 
 import org.java_websocket.WebSocket;
 
+import java.security.SecureRandom;
+import java.util.Base64;
+
 public class Player {
+    private static final SecureRandom random = new SecureRandom();
+
     private int id;
     private final WebSocket ws;
     private final String username;
+    private final String token; // secret the client keeps to reclaim the player after a reconnect
     private int points;
+    private boolean binaryStrokes = false;
+    private long lastStrokeReplay = Long.MIN_VALUE; // System.nanoTime() of the last history replay
+    private boolean strokeReplayPending = false;
+    private boolean needsResync = false;
+    private boolean snapshotOnly = false;
+    private long lastClockSync = Long.MIN_VALUE; // System.nanoTime() of the last clock sync reply
+    private FloodControl floodControl;
+    private boolean guessed = false; // guessed the word of the current turn
 
     public Player(WebSocket ws, String username) {
+        this(ws, username, newToken());
+    }
+
+    /**
+     * @param token token of a player that is reclaimed
+     */
+    public Player(WebSocket ws, String username, String token) {
         this.ws = ws;
         this.username = username;
+        this.token = token;
         points = 0;
     }
 
+    /**
+     * @return random url-safe token
+     */
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
     public void setId(int id) {
         this.id = id;
     }
@@ -30,6 +61,10 @@ public class Player {
         return username;
     }
 
+    public String getToken() {
+        return token;
+    }
+
     public int getPoints() {
         return points;
     }
@@ -38,7 +73,86 @@ public class Player {
         points += amount;
     }
 
+    /**
+     * @return true if the player negotiated the binary stroke codec
+     */
+    public boolean usesBinaryStrokes() {
+        return binaryStrokes;
+    }
+
+    public void setBinaryStrokes(boolean binaryStrokes) {
+        this.binaryStrokes = binaryStrokes;
+    }
+
+    public long getLastStrokeReplay() {
+        return lastStrokeReplay;
+    }
+
+    public void setLastStrokeReplay(long lastStrokeReplay) {
+        this.lastStrokeReplay = lastStrokeReplay;
+    }
+
+    /**
+     * @return true if a rate-limited history replay is already scheduled for the player
+     */
+    public boolean isStrokeReplayPending() {
+        return strokeReplayPending;
+    }
+
+    public void setStrokeReplayPending(boolean strokeReplayPending) {
+        this.strokeReplayPending = strokeReplayPending;
+    }
+
+    /**
+     * @return true if live drawing frames were dropped and the player needs a replay
+     */
+    public boolean needsResync() {
+        return needsResync;
+    }
+
+    public void setNeedsResync(boolean needsResync) {
+        this.needsResync = needsResync;
+    }
+
+    /**
+     * @return true if the player only gets periodic replays instead of live drawing frames
+     */
+    public boolean isSnapshotOnly() {
+        return snapshotOnly;
+    }
+
+    public void setSnapshotOnly(boolean snapshotOnly) {
+        this.snapshotOnly = snapshotOnly;
+    }
+
     public void resetPoints() {
         points = 0;
     }
+
+    public long getLastClockSync() {
+        return lastClockSync;
+    }
+
+    public void setLastClockSync(long lastClockSync) {
+        this.lastClockSync = lastClockSync;
+    }
+
+    /**
+     * @return message budgets of the player, set when it joins a session
+     */
+    public FloodControl getFloodControl() {
+        return floodControl;
+    }
+
+    public void setFloodControl(FloodControl floodControl) {
+        this.floodControl = floodControl;
+    }
+
+    public boolean hasGuessed() {
+        return guessed;
+    }
+
+    public void setGuessed(boolean guessed) {
+        this.guessed = guessed;
+    }
 }
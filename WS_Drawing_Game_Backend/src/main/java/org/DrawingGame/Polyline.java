@@ -0,0 +1,65 @@
+package org.DrawingGame;
+
+import java.util.Arrays;
+
+/**
+ * connected line through a list of points with one color and width<br>
+ * coordinates are normalized to the canvas size (0 to 1)
+ */
+public class Polyline {
+    private final String color;
+    private final int width;
+    private float[] points = new float[16]; // x0, y0, x1, y1, ...
+    private int pointCount = 0;
+
+    public Polyline(String color, int width, float x, float y) {
+        this.color = color;
+        this.width = width;
+        points[0] = x;
+        points[1] = y;
+        pointCount = 1;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public float getX(int idx) {
+        return points[idx * 2];
+    }
+
+    public float getY(int idx) {
+        return points[idx * 2 + 1];
+    }
+
+    /**
+     * @return points as x0, y0, x1, y1, ...
+     */
+    public float[] getPoints() {
+        return Arrays.copyOf(points, pointCount * 2);
+    }
+
+    public void addPoint(float x, float y) {
+        if(pointCount * 2 == points.length)
+            points = Arrays.copyOf(points, points.length * 2);
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        pointCount++;
+    }
+
+    /**
+     * moves the last point
+     */
+    public void setLastPoint(float x, float y) {
+        points[(pointCount - 1) * 2] = x;
+        points[(pointCount - 1) * 2 + 1] = y;
+    }
+}
@@ -0,0 +1,188 @@
+package org.DrawingGame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * order-statistic tree of (points, username), ordered by points descending and username ascending<br>
+ * a treap whose nodes keep the size of their subtree, so inserting, removing and the rank of an entry
+ * take O(log n) and the first k entries O(log n + k)<br>
+ * nodes live in parallel arrays instead of objects, so millions of entries stay compact and cheap to collect<br>
+ * not thread-safe
+ */
+class RankTree {
+    private static final int NIL = 0; // node 0 is the empty tree
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Random random = new Random();
+    private long[] points = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int[] priorities = new int[INITIAL_CAPACITY];
+    private int root = NIL;
+    private int used = 1; // nodes handed out so far, including NIL
+    private int freeList = NIL; // removed nodes, linked through right
+    private int splitLeft; // results of split
+    private int splitRight;
+
+    /**
+     * @return number of entries
+     */
+    int size() {
+        return sizes[root];
+    }
+
+    /**
+     * @param name username, unique in the tree
+     * @param score points of the user
+     */
+    void insert(String name, long score) {
+        int node = allocate(name, score);
+        split(root, name, score, false);
+        int after = splitRight;
+        root = merge(merge(splitLeft, node), after);
+    }
+
+    /**
+     * @param name username of an entry
+     * @param score points the entry was inserted with
+     */
+    void remove(String name, long score) {
+        split(root, name, score, false);
+        int before = splitLeft;
+        split(splitRight, name, score, true);
+        int after = splitRight;
+        if(splitLeft != NIL)
+            free(splitLeft);
+        root = merge(before, after);
+    }
+
+    /**
+     * @param name username of an entry
+     * @param score points of the entry
+     * @return number of entries ranked before it
+     */
+    int countBefore(String name, long score) {
+        int count = 0;
+        int node = root;
+        while(node != NIL) {
+            if(compare(node, name, score) < 0) {
+                count += sizes[left[node]] + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param count number of entries
+     * @param out receives the first entries in rank order
+     */
+    void top(int count, List<Leaderboard.Rank> out) {
+        collect(root, Math.min(count, size()), out);
+    }
+
+    private void collect(int node, int count, List<Leaderboard.Rank> out) {
+        if(node == NIL || out.size() >= count)
+            return;
+        collect(left[node], count, out);
+        if(out.size() < count)
+            out.add(new Leaderboard.Rank(out.size() + 1, names[node], points[node]));
+        collect(right[node], count, out);
+    }
+
+    /**
+     * @return negative if the node ranks before the entry, 0 if it is the entry, positive if after
+     */
+    private int compare(int node, String name, long score) {
+        int byPoints = Long.compare(score, points[node]);
+        return byPoints != 0 ? byPoints : names[node].compareTo(name);
+    }
+
+    /**
+     * splits the tree into the entries before the key (and the key itself if inclusive) and the rest,
+     * the parts are left in {@link #splitLeft} and {@link #splitRight}
+     */
+    private void split(int node, String name, long score, boolean inclusive) {
+        if(node == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        int c = compare(node, name, score);
+        if(c < 0 || (inclusive && c == 0)) {
+            split(right[node], name, score, inclusive);
+            right[node] = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            split(left[node], name, score, inclusive);
+            left[node] = splitRight;
+            update(node);
+            splitRight = node;
+        }
+    }
+
+    /**
+     * @return tree of all entries of a followed by all entries of b
+     */
+    private int merge(int a, int b) {
+        if(a == NIL)
+            return b;
+        if(b == NIL)
+            return a;
+        if(priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private void update(int node) {
+        sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+    }
+
+    private int allocate(String name, long score) {
+        int node;
+        if(freeList != NIL) {
+            node = freeList;
+            freeList = right[node];
+        } else {
+            if(used == names.length)
+                grow();
+            node = used++;
+        }
+        names[node] = name;
+        points[node] = score;
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        priorities[node] = random.nextInt();
+        return node;
+    }
+
+    private void free(int node) {
+        names[node] = null;
+        left[node] = NIL;
+        right[node] = freeList;
+        freeList = node;
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        points = Arrays.copyOf(points, capacity);
+        names = Arrays.copyOf(names, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+}
@@ -0,0 +1,270 @@
+package org.DrawingGame;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * websocket of a player that is connected to another node of the cluster<br>
+ * lives on the node that owns the room, so game sessions treat local and remote players the same;
+ * everything sent is forwarded over the {@link RoomBus} to the node holding the connection,
+ * frames are joined into whole messages since the bus carries messages<br>
+ * broadcasts are grouped per node by {@link GameServer#broadcast(String, Collection)} instead of using this class
+ */
+public class RemoteConnection implements WebSocket {
+    private final RoomBus bus;
+    private final String localNode;
+    private final String holderNode;
+    private final long connectionId;
+    private final long roomId;
+    private volatile boolean open = true;
+    private Object attachment;
+    private Opcode fragmentedType = null; // text or binary while a fragmented message is joined, null otherwise
+    private final ByteArrayOutputStream fragments = new ByteArrayOutputStream();
+
+    /**
+     * @param bus bus of the owning node
+     * @param localNode id of the owning node
+     * @param holderNode id of the node that holds the connection
+     * @param connectionId id of the connection on the holding node
+     * @param roomId room the player is in
+     */
+    public RemoteConnection(RoomBus bus, String localNode, String holderNode, long connectionId, long roomId) {
+        this.bus = bus;
+        this.localNode = localNode;
+        this.holderNode = holderNode;
+        this.connectionId = connectionId;
+        this.roomId = roomId;
+    }
+
+    public String getHolderNode() {
+        return holderNode;
+    }
+
+    public long getConnectionId() {
+        return connectionId;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * marks the connection as closed after the holding node reported the disconnect
+     */
+    void markClosed() {
+        open = false;
+    }
+
+    @Override
+    public void send(String text) {
+        if(!open)
+            throw new WebsocketNotConnectedException();
+        bus.send(holderNode, BusMessage.sendText(localNode, new long[]{connectionId}, text));
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        if(!open)
+            throw new WebsocketNotConnectedException();
+        bus.send(holderNode, BusMessage.sendBinary(localNode, new long[]{connectionId}, bytes));
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        send(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * forwards data frames as messages and closes on a close frame,
+     * pings and pongs are left to the connection on the holding node
+     */
+    @Override
+    public void sendFrame(Framedata framedata) {
+        switch (framedata.getOpcode()) {
+            case TEXT, BINARY, CONTINUOUS -> sendData(framedata.getOpcode(), framedata.getPayloadData(), framedata.isFin());
+            case CLOSING -> {
+                if(framedata instanceof CloseFrame closeFrame)
+                    close(closeFrame.getCloseCode(), closeFrame.getMessage());
+                else
+                    close();
+            }
+            default -> { }
+        }
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> frames) {
+        for(Framedata frame : frames) {
+            sendFrame(frame);
+        }
+    }
+
+    @Override
+    public void sendPing() {
+    }
+
+    /**
+     * @param op text or binary, the type of the whole message
+     */
+    @Override
+    public synchronized void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {
+        if(op != Opcode.TEXT && op != Opcode.BINARY)
+            throw new IllegalArgumentException("only text and binary messages can be fragmented, got " + op);
+        sendData(fragmentedType == null ? op : Opcode.CONTINUOUS, buffer, fin);
+    }
+
+    /**
+     * sends a message once its last fragment arrived
+     * @param op text or binary for the first fragment, continuous for the others
+     * @param payload payload of the fragment, not consumed
+     * @param fin true for the last fragment
+     */
+    private synchronized void sendData(Opcode op, ByteBuffer payload, boolean fin) {
+        if(op == Opcode.CONTINUOUS) {
+            if(fragmentedType == null)
+                throw new IllegalArgumentException("continuation frame without a fragmented message");
+        } else if(fragmentedType != null) {
+            throw new IllegalArgumentException("fragmented message is not finished");
+        } else if(fin) {
+            sendMessage(op, payload.duplicate()); // not fragmented, the common case
+            return;
+        } else {
+            fragmentedType = op;
+        }
+
+        byte[] fragment = new byte[payload.remaining()];
+        payload.duplicate().get(fragment);
+        fragments.writeBytes(fragment);
+        if(!fin)
+            return;
+        Opcode type = fragmentedType;
+        fragmentedType = null;
+        ByteBuffer message = ByteBuffer.wrap(fragments.toByteArray());
+        fragments.reset();
+        sendMessage(type, message);
+    }
+
+    private void sendMessage(Opcode type, ByteBuffer payload) {
+        if(type == Opcode.TEXT)
+            send(StandardCharsets.UTF_8.decode(payload).toString());
+        else
+            send(payload);
+    }
+
+    @Override
+    public void close(int code, String message) {
+        if(!open)
+            return;
+        open = false;
+        bus.send(holderNode, BusMessage.close(localNode, connectionId, code, message == null ? "" : message));
+    }
+
+    @Override
+    public void close(int code) {
+        close(code, "");
+    }
+
+    @Override
+    public void close() {
+        close(CloseFrame.NORMAL, "");
+    }
+
+    @Override
+    public void closeConnection(int code, String message) {
+        close(code, message);
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return false; // the outgoing queue is on the holding node
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return false;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !open;
+    }
+
+    @Override
+    public Draft getDraft() {
+        return null;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        return open ? ReadyState.OPEN : ReadyState.CLOSED;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return "/";
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return false;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        throw new IllegalArgumentException("no ssl");
+    }
+
+    @Override
+    public IProtocol getProtocol() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return holderNode + "/" + connectionId;
+    }
+}
@@ -0,0 +1,256 @@
+package org.DrawingGame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * room directory and message router behind a {@link RoomBus}<br>
+ * used in-process by {@link LocalRoomBus} and over tcp by {@link TcpRoomBroker}<br>
+ * placement uses one {@link Matchmaker} for the whole cluster, so rooms fill up no matter which node a player connects to<br>
+ * thread-safe, messages are delivered on the caller's thread
+ */
+public class RoomBroker {
+    public static final int DEFAULT_ROOM_SIZE = 8;
+    public static final long DEFAULT_LEASE = 10_000; // ms
+
+    private final Matchmaker<RoomBus.Room> matchmaker;
+    private final long leaseNanos;
+    private final Map<String, Consumer<BusMessage>> inboxes = new ConcurrentHashMap<>(); // node -> delivery
+    private final Map<String, Long> leases = new HashMap<>(); // node -> System.nanoTime() when its lease runs out
+    private final Map<String, Set<RoomBus.Room>> ownedRooms = new HashMap<>();
+    private final Map<Long, RoomBus.Room> rooms = new HashMap<>();
+    private final Set<String> draining = new HashSet<>(); // nodes that get no new players
+    private long nextRoomId = 0;
+
+    /**
+     * @param roomSize max player count per room
+     * @param leaseMillis time in ms after which the rooms of a node that did not renew are closed
+     */
+    public RoomBroker(int roomSize, long leaseMillis) {
+        this.matchmaker = new Matchmaker<>(roomSize);
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+    }
+
+    /**
+     * adds a node, a node that registers again with the same id keeps its rooms
+     * @param node id of the node
+     * @param inbox receives the messages addressed to the node
+     */
+    public void register(String node, Consumer<BusMessage> inbox) {
+        synchronized (this) {
+            leases.put(node, System.nanoTime() + leaseNanos);
+            ownedRooms.computeIfAbsent(node, n -> new HashSet<>());
+        }
+        inboxes.put(node, inbox);
+        System.out.println("Node registered: " + node);
+    }
+
+    /**
+     * removes a node and closes its rooms
+     * @param node id of the node
+     */
+    public void unregister(String node) {
+        Consumer<BusMessage> inbox = inboxes.get(node);
+        if(inbox != null)
+            unregister(node, inbox);
+    }
+
+    /**
+     * removes a node and closes its rooms if it is still registered with the given inbox,
+     * so a connection that closes late does not remove the node after it registered again
+     * @param node id of the node
+     * @param inbox inbox the node registered with
+     */
+    public void unregister(String node, Consumer<BusMessage> inbox) {
+        if(!inboxes.remove(node, inbox))
+            return;
+        List<RoomBus.Room> closed;
+        synchronized (this) {
+            closed = dropNode(node);
+        }
+        System.out.println("Node unregistered: " + node + ", " + closed.size() + " rooms closed");
+        notifyClosed(closed);
+    }
+
+    /**
+     * @param node id of the node the player connected to
+     * @return room with a reserved slot, owned by the given node if a new room had to be created,
+     *         null if the node is not registered or its lease ran out
+     */
+    public RoomBus.Room join(String node) {
+        List<RoomBus.Room> expired;
+        RoomBus.Room room = null;
+        synchronized (this) {
+            expired = expireLeases();
+            if(leases.containsKey(node) && !draining.contains(node))
+                room = matchmaker.join(() -> {
+                    RoomBus.Room created = new RoomBus.Room(nextRoomId++, node);
+                    rooms.put(created.id(), created);
+                    ownedRooms.get(node).add(created);
+                    return created;
+                });
+        }
+        notifyClosed(expired);
+        return room;
+    }
+
+    /**
+     * creates a room owned by the node with slots already reserved, used for rooms restored after a restart
+     * @param node id of the owning node
+     * @param players number of slots to reserve
+     * @return the new room, null if the node is not registered or its lease ran out
+     */
+    public RoomBus.Room create(String node, int players) {
+        List<RoomBus.Room> expired;
+        RoomBus.Room room = null;
+        synchronized (this) {
+            expired = expireLeases();
+            if(leases.containsKey(node) && !draining.contains(node)) {
+                room = new RoomBus.Room(nextRoomId++, node);
+                rooms.put(room.id(), room);
+                ownedRooms.get(node).add(room);
+                matchmaker.add(room, players);
+            }
+        }
+        notifyClosed(expired);
+        return room;
+    }
+
+    /**
+     * @param roomId id of a room
+     * @return the room with its owner, null if there is no such room
+     */
+    public synchronized RoomBus.Room find(long roomId) {
+        return rooms.get(roomId);
+    }
+
+    /**
+     * takes the rooms of the node out of matchmaking, the node can't join or create rooms anymore<br>
+     * its rooms stay in the directory until the node unregisters, so frames of their players are still routed
+     * @param node id of the draining node
+     */
+    public synchronized void drain(String node) {
+        Set<RoomBus.Room> owned = ownedRooms.get(node);
+        if(owned == null)
+            return;
+        draining.add(node);
+        for(RoomBus.Room room : owned) {
+            matchmaker.remove(room);
+        }
+    }
+
+    /**
+     * @param roomId room a player left
+     * @return true if the room is empty now and was removed
+     */
+    public synchronized boolean leave(long roomId) {
+        RoomBus.Room room = rooms.get(roomId);
+        if(room == null || !matchmaker.leave(room))
+            return false;
+        rooms.remove(roomId);
+        Set<RoomBus.Room> owned = ownedRooms.get(room.owner());
+        if(owned != null)
+            owned.remove(room);
+        return true;
+    }
+
+    /**
+     * renews the lease of all rooms of the node and closes the rooms of nodes whose lease ran out
+     * @param node id of the node
+     * @return false if the lease of the node already ran out, its rooms are gone and it has to register again
+     */
+    public boolean renew(String node) {
+        List<RoomBus.Room> expired;
+        boolean renewed;
+        synchronized (this) {
+            expired = expireLeases();
+            renewed = leases.containsKey(node);
+            if(renewed)
+                leases.put(node, System.nanoTime() + leaseNanos);
+        }
+        notifyClosed(expired);
+        return renewed;
+    }
+
+    /**
+     * @param node id of the receiving node
+     * @param message message to deliver
+     * @return false if the node is unknown and the message was dropped
+     */
+    public boolean route(String node, BusMessage message) {
+        Consumer<BusMessage> inbox = inboxes.get(node);
+        if(inbox == null)
+            return false;
+        inbox.accept(message);
+        return true;
+    }
+
+    /**
+     * @return number of rooms in the cluster
+     */
+    public synchronized int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * drops nodes whose lease ran out, must hold the lock
+     * @return rooms that were closed
+     */
+    private List<RoomBus.Room> expireLeases() {
+        long now = System.nanoTime();
+        List<String> expiredNodes = null;
+        for(Map.Entry<String, Long> lease : leases.entrySet()) {
+            if(lease.getValue() - now < 0) {
+                if(expiredNodes == null)
+                    expiredNodes = new ArrayList<>();
+                expiredNodes.add(lease.getKey());
+            }
+        }
+        if(expiredNodes == null)
+            return List.of();
+
+        List<RoomBus.Room> closed = new ArrayList<>();
+        for(String node : expiredNodes) {
+            System.out.println("Lease of node " + node + " ran out");
+            closed.addAll(dropNode(node));
+            inboxes.remove(node);
+        }
+        return closed;
+    }
+
+    /**
+     * removes the node and its rooms, must hold the lock
+     * @return rooms that were closed
+     */
+    private List<RoomBus.Room> dropNode(String node) {
+        leases.remove(node);
+        draining.remove(node);
+        Set<RoomBus.Room> owned = ownedRooms.remove(node);
+        if(owned == null)
+            return List.of();
+        for(RoomBus.Room room : owned) {
+            matchmaker.remove(room);
+            rooms.remove(room.id());
+        }
+        return new ArrayList<>(owned);
+    }
+
+    /**
+     * tells all nodes that the rooms are gone, called without holding the lock
+     */
+    private void notifyClosed(List<RoomBus.Room> closed) {
+        for(RoomBus.Room room : closed) {
+            BusMessage message = BusMessage.roomClosed(room.owner(), room.id());
+            for(Consumer<BusMessage> inbox : inboxes.values()) {
+                inbox.accept(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.DrawingGame;
+
+import java.io.IOException;
+
+/**
+ * connects the game servers of a cluster<br>
+ * keeps the directory of rooms with their owner node, the node that runs the game session,
+ * and routes {@link BusMessage}s between nodes: player events from the node that holds the connection
+ * to the owner and outgoing frames back from the owner<br>
+ * rooms are owned under a lease the node renews, rooms of a node whose lease ran out are closed
+ * and all nodes get a {@link BusMessage.Kind#ROOM_CLOSED}<br>
+ * implementations are thread-safe
+ */
+public interface RoomBus {
+    /**
+     * @param id id of the room, unique in the cluster
+     * @param owner id of the node that runs the game session of the room
+     */
+    record Room(long id, String owner) {
+    }
+
+    interface Listener {
+        /**
+         * called for every message addressed to this node, messages of one sender arrive in order<br>
+         * must not block, the bus may call it on the sender's thread
+         * @param message received message
+         */
+        void onMessage(BusMessage message);
+    }
+
+    /**
+     * joins the cluster
+     * @param nodeId id of this node, unique in the cluster
+     * @param listener receives the messages addressed to this node
+     * @throws IOException if the bus is not reachable
+     */
+    void register(String nodeId, Listener listener) throws IOException;
+
+    /**
+     * leaves the cluster, rooms owned by this node are closed
+     */
+    void unregister();
+
+    /**
+     * reserves a slot in the fullest room of the cluster that is not full yet<br>
+     * creates a room owned by this node if there is none
+     * @return room the player joins
+     * @throws IOException if the bus is not reachable
+     */
+    Room join() throws IOException;
+
+    /**
+     * creates a room owned by this node with slots already reserved for players that are expected to join,
+     * e.g. the players of a room restored after a restart
+     * @param players number of slots to reserve
+     * @return the new room
+     * @throws IOException if the bus is not reachable
+     */
+    Room create(int players) throws IOException;
+
+    /**
+     * @param roomId id of a room
+     * @return the room with its owner, null if there is no such room
+     * @throws IOException if the bus is not reachable
+     */
+    Room find(long roomId) throws IOException;
+
+    /**
+     * answered without waiting for the broker, so it can be called from the listener
+     * @param roomId id of a room
+     * @return true if the room is owned by this node and was not freed or closed since
+     */
+    boolean holdsLease(long roomId);
+
+    /**
+     * stops placing players in rooms of this node and creating rooms for it, used before the node shuts down<br>
+     * players already in its rooms stay until the node unregisters
+     * @throws IOException if the bus is not reachable
+     */
+    void drain() throws IOException;
+
+    /**
+     * frees a slot, only called by the owner of the room
+     * @param roomId room the player left
+     * @return true if the room is empty now and was removed
+     * @throws IOException if the bus is not reachable
+     */
+    boolean leave(long roomId) throws IOException;
+
+    /**
+     * renews the lease of all rooms owned by this node, has to be called more often than the lease runs out
+     * @return false if the lease already ran out, the rooms of this node are gone and it is registered again
+     * @throws IOException if the bus is not reachable
+     */
+    boolean renewLeases() throws IOException;
+
+    /**
+     * sends a message to a node without waiting, messages to unknown nodes are dropped
+     * @param nodeId id of the receiving node
+     * @param message message to send
+     */
+    void send(String nodeId, BusMessage message);
+}
@@ -0,0 +1,58 @@
+package org.DrawingGame;
+
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+/**
+ * permessage-deflate that only compresses frames worth compressing<br>
+ * text frames below the threshold (sync replies, single strokes, chat) are sent as they are,
+ * binary frames are already compact (quantized strokes, png snapshots) and are only compressed if enabled<br>
+ * broadcasts share their frames between recipients, so a frame is compressed by the first recipient
+ * and sent as it is to the others; this is only valid because the server resets its compression context
+ * after every message (server_no_context_takeover)
+ */
+public final class SelectiveDeflateExtension extends PerMessageDeflateExtension {
+    private final boolean compressBinary;
+    private final CompressionStats stats;
+
+    /**
+     * @param level deflate level from 0 to 9
+     * @param threshold minimum payload size in bytes to compress
+     * @param compressBinary whether binary frames are compressed
+     * @param stats stats to record compression ratio and time in
+     */
+    public SelectiveDeflateExtension(int level, int threshold, boolean compressBinary, CompressionStats stats) {
+        super(level);
+        this.compressBinary = compressBinary;
+        this.stats = stats;
+        setThreshold(threshold);
+        setServerNoContextTakeover(true);
+    }
+
+    @Override
+    public void encodeFrame(Framedata frame) {
+        if(!(frame instanceof DataFrame) || frame.isRSV1()) // not a message or compressed for another recipient
+            return;
+        if(frame.getOpcode() == Opcode.BINARY && !compressBinary)
+            return;
+
+        int before = frame.getPayloadData().remaining();
+        if(before < getThreshold()) {
+            stats.recordSkipped();
+            return;
+        }
+        long start = System.nanoTime();
+        super.encodeFrame(frame);
+        stats.recordCompressed(before, frame.getPayloadData().remaining(), System.nanoTime() - start);
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        SelectiveDeflateExtension copy = new SelectiveDeflateExtension(getCompressionLevel(), getThreshold(), compressBinary, stats);
+        copy.setClientNoContextTakeover(isClientNoContextTakeover());
+        return copy;
+    }
+}
@@ -0,0 +1,693 @@
+package org.DrawingGame;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * tunable server settings<br>
+ * defaults can be overridden with system properties (e.g. -Ddrawing.strokeFlushRate=60),
+ * the node reads them with {@link #load(String[])} from a file, environment variables and the command line as well
+ */
+public class ServerConfig {
+    private static final String PREFIX = "drawing.";
+    private static final String ENV_PREFIX = "DRAWING_";
+    private static final String CONFIG_KEY = "config"; // path of the properties file
+
+    private int strokeFlushRate = 30; // flushes per second, 0 relays every stroke immediately
+    private double strokeTolerance = 0.002; // normalized distance under which points are merged
+    private String wordsDirectory = null; // directory with additional word files, null for the bundled words only
+    private String wordCategory = WordDictionary.DEFAULT_CATEGORY;
+    private OutboundLimiter.Policy slowConsumerPolicy = OutboundLimiter.Policy.DROP;
+    private int outboundSoftLimit = 256; // queued frames per connection
+    private int outboundHardLimit = 4096; // queued frames per connection
+    private long snapshotInterval = 2000; // ms between replays of downgraded players
+    private int metricsPort = 9464; // local port of the prometheus endpoint, 0 disables it
+    private boolean compression = true; // offer permessage-deflate to clients
+    private int compressionLevel = 1; // deflate level, fastest by default
+    private int compressionThreshold = 256; // bytes, smaller frames are sent uncompressed
+    private boolean compressBinary = false; // binary frames are quantized strokes and png snapshots
+    private String roomBus = null; // host:port of a TcpRoomBroker, null runs the node alone
+    private String nodeId = null; // id of the node in the cluster, null for a random id
+    private String journalDirectory = null; // directory of the session journal, null disables crash recovery
+    private long journalCommitInterval = 5; // ms, min time between two syncs of the journal
+    private int journalCheckpointInterval = 60; // seconds between checkpoints, older journal segments are deleted after
+    private int handoffPort = 0; // local port a new process receives the sessions of the old one on, 0 disables it
+    private String handoffAddress = null; // host:port of the process that takes over the sessions on shutdown, null disables it
+    private int handoffWait = 30; // seconds a new process waits for the old one to hand off before it starts empty
+    private long spectatorDelay = 0; // ms spectators are behind the players, e.g. for streamed rooms
+    private long spectatorBatchInterval = 100; // ms between two batches sent to spectators
+    private int spectatorRelayThreads = 2; // threads that send to the spectators of this node
+    private int snapshotThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2); // threads that rasterize compacted strokes, 0 on the session threads
+    private int spectatorShardSize = 512; // spectators one relay thread sends a batch to in one go
+    private int floodStrokeRate = 240; // strokes per second and connection, 0 disables the limit
+    private int floodStrokeBurst = 480; // strokes a connection can send at once
+    private int floodChatRate = 3; // chat messages per second and connection, 0 disables the limit
+    private int floodChatBurst = 6; // chat messages a connection can send at once
+    private int floodOtherRate = 20; // other messages (clear, replay requests, clock syncs) per second and connection, 0 disables the limit
+    private int floodOtherBurst = 40; // other messages a connection can send at once
+    private String leaderboardDirectory = null; // directory of the leaderboard files, null keeps the leaderboard in memory
+    private long leaderboardFlushInterval = 1000; // ms between two updates of the leaderboard ranking and files
+    private int maxConnections = 10000; // open connections of players and spectators per node, 0 for no limit
+    private int connectRate = 500; // new connections per second on the node, 0 disables the limit
+    private int connectBurst = 2000; // new connections the node takes at once
+    private int connectAddressRate = 10; // new connections per second from one remote address, 0 disables the limit
+    private int connectAddressBurst = 30; // new connections one address can open at once, e.g. players behind one NAT
+    private int maxUsernameLength = 20; // characters, longer usernames are refused in the handshake
+    private String host = "0.0.0.0"; // address the node listens on
+    private int port = 3000; // nodes of a cluster on one host need different ports
+    private int decoders = Runtime.getRuntime().availableProcessors(); // threads that read and frame websocket messages
+    private GameServer.SessionExecution sessionExecution = GameServer.SessionExecution.VIRTUAL; // threads the sessions run on
+    private int sessionThreads = Runtime.getRuntime().availableProcessors(); // threads of the session pool, only used with POOL
+    private boolean tcpNoDelay = true; // send small frames like strokes without waiting for more data
+    private int receiveBufferSize = 0; // bytes of the socket receive buffer, 0 for the default of the os
+    private int sendBufferSize = 0; // bytes of the socket send buffer, 0 for the default of the os
+    private int connectionLostTimeout = 60; // seconds without a pong before a connection is closed, 0 disables pings
+
+    /**
+     * @return config with defaults overridden by system properties, unknown ones are logged
+     * @throws IllegalArgumentException if a value is malformed
+     */
+    public static ServerConfig fromSystemProperties() {
+        return fromSettings(systemProperties(), Set.of());
+    }
+
+    /**
+     * reads the settings of a node, later sources override earlier ones:
+     * <ol>
+     *     <li>properties file given with --config or drawing.config, keys without prefix (strokeFlushRate=60)</li>
+     *     <li>environment variables, DRAWING_ and the key in upper snake case (DRAWING_STROKE_FLUSH_RATE=60)</li>
+     *     <li>system properties (-Ddrawing.strokeFlushRate=60)</li>
+     *     <li>command line arguments (--strokeFlushRate=60 or --strokeFlushRate 60)</li>
+     * </ol>
+     * unknown keys of the file and the command line are typos and refused, unknown environment variables and
+     * system properties with the prefix are only logged, they may be meant for another version or tool
+     * @param args command line arguments
+     * @return config with defaults overridden by the settings
+     * @throws IOException if the properties file can not be read
+     * @throws IllegalArgumentException if a setting of the file or command line is unknown or a value malformed
+     */
+    public static ServerConfig load(String[] args) throws IOException {
+        Map<String, String> commandLine = new HashMap<>();
+        for(int i = 0; i < args.length; i++) {
+            if(!args[i].startsWith("--") || args[i].length() == 2)
+                throw new IllegalArgumentException("unexpected argument " + args[i]);
+            String argument = args[i].substring(2);
+            int separator = argument.indexOf('=');
+            if(separator != -1)
+                commandLine.put(argument.substring(0, separator), argument.substring(separator + 1));
+            else if(i + 1 < args.length)
+                commandLine.put(argument, args[++i]);
+            else
+                throw new IllegalArgumentException("missing value of --" + argument);
+        }
+        Map<String, String> environment = new HashMap<>();
+        for(Map.Entry<String, String> variable : System.getenv().entrySet()) {
+            if(variable.getKey().startsWith(ENV_PREFIX))
+                environment.put(camelCase(variable.getKey().substring(ENV_PREFIX.length())), variable.getValue());
+        }
+        Map<String, String> properties = systemProperties();
+
+        Map<String, String> settings = new HashMap<>();
+        Set<String> checked = new HashSet<>(commandLine.keySet()); // keys that have to be known
+        String file = commandLine.getOrDefault(CONFIG_KEY, properties.getOrDefault(CONFIG_KEY, environment.get(CONFIG_KEY)));
+        if(file != null) {
+            Properties fileSettings = new Properties();
+            try (Reader reader = Files.newBufferedReader(Path.of(file))) {
+                fileSettings.load(reader);
+            }
+            for(String key : fileSettings.stringPropertyNames()) {
+                settings.put(key, fileSettings.getProperty(key).trim());
+            }
+            checked.addAll(fileSettings.stringPropertyNames());
+        }
+        settings.putAll(environment);
+        settings.putAll(properties);
+        settings.putAll(commandLine);
+        return fromSettings(settings, checked);
+    }
+
+    /**
+     * @param values settings by key without prefix
+     * @param checked keys that are refused if unknown, other unknown keys are logged
+     * @return config with defaults overridden by the settings
+     * @throws IllegalArgumentException if a checked setting is unknown or a value malformed
+     */
+    private static ServerConfig fromSettings(Map<String, String> values, Set<String> checked) {
+        Settings settings = new Settings(values);
+        ServerConfig config = new ServerConfig();
+        config.strokeFlushRate = settings.getInt("strokeFlushRate", config.strokeFlushRate);
+        config.strokeTolerance = settings.getDouble("strokeTolerance", config.strokeTolerance);
+        config.wordsDirectory = settings.getString("wordsDirectory", config.wordsDirectory);
+        config.wordCategory = settings.getString("wordCategory", config.wordCategory);
+        config.slowConsumerPolicy = settings.getEnum("slowConsumerPolicy", config.slowConsumerPolicy);
+        config.outboundSoftLimit = settings.getInt("outboundSoftLimit", config.outboundSoftLimit);
+        config.outboundHardLimit = settings.getInt("outboundHardLimit", config.outboundHardLimit);
+        config.snapshotInterval = settings.getLong("snapshotInterval", config.snapshotInterval);
+        config.metricsPort = settings.getInt("metricsPort", config.metricsPort);
+        config.compression = settings.getBoolean("compression", config.compression);
+        config.compressionLevel = settings.getInt("compressionLevel", config.compressionLevel);
+        config.compressionThreshold = settings.getInt("compressionThreshold", config.compressionThreshold);
+        config.compressBinary = settings.getBoolean("compressBinary", config.compressBinary);
+        config.roomBus = settings.getString("roomBus", config.roomBus);
+        config.nodeId = settings.getString("nodeId", config.nodeId);
+        config.journalDirectory = settings.getString("journalDirectory", config.journalDirectory);
+        config.journalCommitInterval = settings.getLong("journalCommitInterval", config.journalCommitInterval);
+        config.journalCheckpointInterval = settings.getInt("journalCheckpointInterval", config.journalCheckpointInterval);
+        config.handoffPort = settings.getInt("handoffPort", config.handoffPort);
+        config.handoffAddress = settings.getString("handoffAddress", config.handoffAddress);
+        config.handoffWait = settings.getInt("handoffWait", config.handoffWait);
+        config.spectatorDelay = settings.getLong("spectatorDelay", config.spectatorDelay);
+        config.spectatorBatchInterval = settings.getLong("spectatorBatchInterval", config.spectatorBatchInterval);
+        config.spectatorRelayThreads = settings.getInt("spectatorRelayThreads", config.spectatorRelayThreads);
+        config.spectatorShardSize = settings.getInt("spectatorShardSize", config.spectatorShardSize);
+        config.snapshotThreads = settings.getInt("snapshotThreads", config.snapshotThreads);
+        config.floodStrokeRate = settings.getInt("floodStrokeRate", config.floodStrokeRate);
+        config.floodStrokeBurst = settings.getInt("floodStrokeBurst", config.floodStrokeBurst);
+        config.floodChatRate = settings.getInt("floodChatRate", config.floodChatRate);
+        config.floodChatBurst = settings.getInt("floodChatBurst", config.floodChatBurst);
+        config.floodOtherRate = settings.getInt("floodOtherRate", config.floodOtherRate);
+        config.floodOtherBurst = settings.getInt("floodOtherBurst", config.floodOtherBurst);
+        config.leaderboardDirectory = settings.getString("leaderboardDirectory", config.leaderboardDirectory);
+        config.leaderboardFlushInterval = settings.getLong("leaderboardFlushInterval", config.leaderboardFlushInterval);
+        config.maxConnections = settings.getInt("maxConnections", config.maxConnections);
+        config.connectRate = settings.getInt("connectRate", config.connectRate);
+        config.connectBurst = settings.getInt("connectBurst", config.connectBurst);
+        config.connectAddressRate = settings.getInt("connectAddressRate", config.connectAddressRate);
+        config.connectAddressBurst = settings.getInt("connectAddressBurst", config.connectAddressBurst);
+        config.maxUsernameLength = settings.getInt("maxUsernameLength", config.maxUsernameLength);
+        config.host = settings.getString("host", config.host);
+        config.port = settings.getInt("port", config.port);
+        config.decoders = settings.getInt("decoders", config.decoders);
+        config.sessionExecution = settings.getEnum("sessionExecution", config.sessionExecution);
+        config.sessionThreads = settings.getInt("sessionThreads", config.sessionThreads);
+        config.tcpNoDelay = settings.getBoolean("tcpNoDelay", config.tcpNoDelay);
+        config.receiveBufferSize = settings.getInt("receiveBufferSize", config.receiveBufferSize);
+        config.sendBufferSize = settings.getInt("sendBufferSize", config.sendBufferSize);
+        config.connectionLostTimeout = settings.getInt("connectionLostTimeout", config.connectionLostTimeout);
+        Set<String> refused = new TreeSet<>(settings.unread);
+        refused.retainAll(checked);
+        if(!refused.isEmpty())
+            throw new IllegalArgumentException("unknown settings " + refused);
+        if(!settings.unread.isEmpty())
+            System.out.println("Ignoring unknown settings of the environment or system properties: " + new TreeSet<>(settings.unread));
+        return config;
+    }
+
+    /**
+     * settings by key without prefix, keeps track of the keys that were never read to report typos
+     */
+    private static final class Settings {
+        private final Map<String, String> values;
+        private final Set<String> unread;
+
+        private Settings(Map<String, String> values) {
+            this.values = values;
+            this.unread = new HashSet<>(values.keySet());
+            unread.remove(CONFIG_KEY);
+        }
+
+        private String getString(String key, String defaultValue) {
+            unread.remove(key);
+            return values.getOrDefault(key, defaultValue);
+        }
+
+        private int getInt(String key, int defaultValue) {
+            String value = getString(key, null);
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + " has to be a number, got " + value);
+            }
+        }
+
+        private long getLong(String key, long defaultValue) {
+            String value = getString(key, null);
+            try {
+                return value == null ? defaultValue : Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + " has to be a number, got " + value);
+            }
+        }
+
+        private double getDouble(String key, double defaultValue) {
+            String value = getString(key, null);
+            try {
+                return value == null ? defaultValue : Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + " has to be a number, got " + value);
+            }
+        }
+
+        private boolean getBoolean(String key, boolean defaultValue) {
+            String value = getString(key, null);
+            if(value == null)
+                return defaultValue;
+            if(value.trim().equalsIgnoreCase("true"))
+                return true;
+            if(value.trim().equalsIgnoreCase("false"))
+                return false;
+            throw new IllegalArgumentException(key + " has to be true or false, got " + value);
+        }
+
+        private <E extends Enum<E>> E getEnum(String key, E defaultValue) {
+            String value = getString(key, null);
+            try {
+                return value == null ? defaultValue : Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(key + " has to be one of "
+                        + Arrays.toString(defaultValue.getDeclaringClass().getEnumConstants()) + ", got " + value);
+            }
+        }
+    }
+
+    /**
+     * @return system properties with the prefix, keys without it
+     */
+    private static Map<String, String> systemProperties() {
+        Map<String, String> settings = new HashMap<>();
+        for(String name : System.getProperties().stringPropertyNames()) {
+            if(name.startsWith(PREFIX))
+                settings.put(name.substring(PREFIX.length()), System.getProperty(name));
+        }
+        return settings;
+    }
+
+    /**
+     * @return STROKE_FLUSH_RATE as strokeFlushRate
+     */
+    private static String camelCase(String snakeCase) {
+        StringBuilder key = new StringBuilder(snakeCase.length());
+        boolean upper = false;
+        for(char c : snakeCase.toCharArray()) {
+            if(c == '_') {
+                upper = key.length() > 0;
+                continue;
+            }
+            key.append(upper ? Character.toUpperCase(c) : Character.toLowerCase(c));
+            upper = false;
+        }
+        return key.toString();
+    }
+
+    public int getStrokeFlushRate() {
+        return strokeFlushRate;
+    }
+
+    public void setStrokeFlushRate(int strokeFlushRate) {
+        this.strokeFlushRate = strokeFlushRate;
+    }
+
+    public double getStrokeTolerance() {
+        return strokeTolerance;
+    }
+
+    public void setStrokeTolerance(double strokeTolerance) {
+        this.strokeTolerance = strokeTolerance;
+    }
+
+    public String getWordsDirectory() {
+        return wordsDirectory;
+    }
+
+    public void setWordsDirectory(String wordsDirectory) {
+        this.wordsDirectory = wordsDirectory;
+    }
+
+    public String getWordCategory() {
+        return wordCategory;
+    }
+
+    public void setWordCategory(String wordCategory) {
+        this.wordCategory = wordCategory;
+    }
+
+    public OutboundLimiter.Policy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(OutboundLimiter.Policy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public int getOutboundSoftLimit() {
+        return outboundSoftLimit;
+    }
+
+    public void setOutboundSoftLimit(int outboundSoftLimit) {
+        this.outboundSoftLimit = outboundSoftLimit;
+    }
+
+    public int getOutboundHardLimit() {
+        return outboundHardLimit;
+    }
+
+    public void setOutboundHardLimit(int outboundHardLimit) {
+        this.outboundHardLimit = outboundHardLimit;
+    }
+
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(long snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public boolean isCompressBinary() {
+        return compressBinary;
+    }
+
+    public void setCompressBinary(boolean compressBinary) {
+        this.compressBinary = compressBinary;
+    }
+
+    public String getRoomBus() {
+        return roomBus;
+    }
+
+    public void setRoomBus(String roomBus) {
+        this.roomBus = roomBus;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public long getJournalCommitInterval() {
+        return journalCommitInterval;
+    }
+
+    public void setJournalCommitInterval(long journalCommitInterval) {
+        this.journalCommitInterval = journalCommitInterval;
+    }
+
+    public int getJournalCheckpointInterval() {
+        return journalCheckpointInterval;
+    }
+
+    public void setJournalCheckpointInterval(int journalCheckpointInterval) {
+        this.journalCheckpointInterval = journalCheckpointInterval;
+    }
+
+    public int getHandoffPort() {
+        return handoffPort;
+    }
+
+    public void setHandoffPort(int handoffPort) {
+        this.handoffPort = handoffPort;
+    }
+
+    public String getHandoffAddress() {
+        return handoffAddress;
+    }
+
+    public void setHandoffAddress(String handoffAddress) {
+        this.handoffAddress = handoffAddress;
+    }
+
+    public int getHandoffWait() {
+        return handoffWait;
+    }
+
+    public void setHandoffWait(int handoffWait) {
+        this.handoffWait = handoffWait;
+    }
+
+    public long getSpectatorDelay() {
+        return spectatorDelay;
+    }
+
+    public void setSpectatorDelay(long spectatorDelay) {
+        this.spectatorDelay = spectatorDelay;
+    }
+
+    public long getSpectatorBatchInterval() {
+        return spectatorBatchInterval;
+    }
+
+    public void setSpectatorBatchInterval(long spectatorBatchInterval) {
+        this.spectatorBatchInterval = spectatorBatchInterval;
+    }
+
+    public int getSpectatorRelayThreads() {
+        return spectatorRelayThreads;
+    }
+
+    public void setSpectatorRelayThreads(int spectatorRelayThreads) {
+        this.spectatorRelayThreads = spectatorRelayThreads;
+    }
+
+    public int getSpectatorShardSize() {
+        return spectatorShardSize;
+    }
+
+    public void setSpectatorShardSize(int spectatorShardSize) {
+        this.spectatorShardSize = spectatorShardSize;
+    }
+
+    public int getSnapshotThreads() {
+        return snapshotThreads;
+    }
+
+    public void setSnapshotThreads(int snapshotThreads) {
+        this.snapshotThreads = snapshotThreads;
+    }
+
+    public int getFloodStrokeRate() {
+        return floodStrokeRate;
+    }
+
+    public void setFloodStrokeRate(int floodStrokeRate) {
+        this.floodStrokeRate = floodStrokeRate;
+    }
+
+    public int getFloodStrokeBurst() {
+        return floodStrokeBurst;
+    }
+
+    public void setFloodStrokeBurst(int floodStrokeBurst) {
+        this.floodStrokeBurst = floodStrokeBurst;
+    }
+
+    public int getFloodChatRate() {
+        return floodChatRate;
+    }
+
+    public void setFloodChatRate(int floodChatRate) {
+        this.floodChatRate = floodChatRate;
+    }
+
+    public int getFloodChatBurst() {
+        return floodChatBurst;
+    }
+
+    public void setFloodChatBurst(int floodChatBurst) {
+        this.floodChatBurst = floodChatBurst;
+    }
+
+    public int getFloodOtherRate() {
+        return floodOtherRate;
+    }
+
+    public void setFloodOtherRate(int floodOtherRate) {
+        this.floodOtherRate = floodOtherRate;
+    }
+
+    public int getFloodOtherBurst() {
+        return floodOtherBurst;
+    }
+
+    public void setFloodOtherBurst(int floodOtherBurst) {
+        this.floodOtherBurst = floodOtherBurst;
+    }
+
+    public String getLeaderboardDirectory() {
+        return leaderboardDirectory;
+    }
+
+    public void setLeaderboardDirectory(String leaderboardDirectory) {
+        this.leaderboardDirectory = leaderboardDirectory;
+    }
+
+    public long getLeaderboardFlushInterval() {
+        return leaderboardFlushInterval;
+    }
+
+    public void setLeaderboardFlushInterval(long leaderboardFlushInterval) {
+        this.leaderboardFlushInterval = leaderboardFlushInterval;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getConnectRate() {
+        return connectRate;
+    }
+
+    public void setConnectRate(int connectRate) {
+        this.connectRate = connectRate;
+    }
+
+    public int getConnectBurst() {
+        return connectBurst;
+    }
+
+    public void setConnectBurst(int connectBurst) {
+        this.connectBurst = connectBurst;
+    }
+
+    public int getConnectAddressRate() {
+        return connectAddressRate;
+    }
+
+    public void setConnectAddressRate(int connectAddressRate) {
+        this.connectAddressRate = connectAddressRate;
+    }
+
+    public int getConnectAddressBurst() {
+        return connectAddressBurst;
+    }
+
+    public void setConnectAddressBurst(int connectAddressBurst) {
+        this.connectAddressBurst = connectAddressBurst;
+    }
+
+    public int getMaxUsernameLength() {
+        return maxUsernameLength;
+    }
+
+    public void setMaxUsernameLength(int maxUsernameLength) {
+        this.maxUsernameLength = maxUsernameLength;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getDecoders() {
+        return decoders;
+    }
+
+    public void setDecoders(int decoders) {
+        this.decoders = decoders;
+    }
+
+    public GameServer.SessionExecution getSessionExecution() {
+        return sessionExecution;
+    }
+
+    public void setSessionExecution(GameServer.SessionExecution sessionExecution) {
+        this.sessionExecution = sessionExecution;
+    }
+
+    public int getSessionThreads() {
+        return sessionThreads;
+    }
+
+    public void setSessionThreads(int sessionThreads) {
+        this.sessionThreads = sessionThreads;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getConnectionLostTimeout() {
+        return connectionLostTimeout;
+    }
+
+    public void setConnectionLostTimeout(int connectionLostTimeout) {
+        this.connectionLostTimeout = connectionLostTimeout;
+    }
+}
@@ -0,0 +1,172 @@
+package org.DrawingGame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * moves the sessions of a draining process to the process that replaces it, over a local socket<br>
+ * the new process listens with {@link #receive(int, long)} before it binds the game port,
+ * the old one sends the state of its sessions, disconnects its players and releases the port,
+ * then the new one binds and its players reclaim their seat with their token<br>
+ * protocol: magic, session count, then per session journal id, length and checkpoint payload (see {@link JournalRoom});
+ * the receiver answers with {@link #RECEIVED}, the sender finishes with {@link #RELEASED} once its port is free
+ */
+public class SessionHandoff implements Closeable {
+    private static final int MAGIC = 0x44474831; // "DGH1"
+    private static final int RECEIVED = 1;
+    private static final int RELEASED = 2;
+    private static final int CONNECT_TIMEOUT = 2000; // ms, also the time the new process has to start listening
+    private static final long CONNECT_RETRY_INTERVAL = 100; // ms
+    private static final long ACK_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final long RELEASE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private SessionHandoff(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * connects to the process that takes over the sessions
+     * @param address host:port the new process listens on
+     * @return open hand-off, {@link #close()} tells the new process that the game port is free
+     * @throws IOException if no process listens on the address
+     */
+    public static SessionHandoff connect(String address) throws IOException {
+        int separator = address.lastIndexOf(':');
+        if(separator <= 0)
+            throw new IllegalArgumentException("hand-off address has to be host:port, got " + address);
+        InetSocketAddress target = new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT);
+        while(true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(target, CONNECT_TIMEOUT);
+                return new SessionHandoff(socket);
+            } catch (ConnectException e) {
+                socket.close();
+                if(System.nanoTime() - deadline >= 0)
+                    throw e;
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            // the new process may still be starting
+            try {
+                Thread.sleep(CONNECT_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while connecting", e);
+            }
+        }
+    }
+
+    /**
+     * sends the sessions and waits until the new process has them
+     * @param sessions state of the sessions, the players are absent until they reconnect to the new process
+     * @throws IOException if the new process did not confirm them
+     */
+    public void send(List<JournalRoom> sessions) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        out.writeInt(MAGIC);
+        out.writeInt(sessions.size());
+        for(JournalRoom session : sessions) {
+            payload.reset();
+            session.write(new DataOutputStream(payload));
+            out.writeLong(session.journalId);
+            out.writeInt(payload.size());
+            payload.writeTo(out);
+        }
+        out.flush();
+
+        socket.setSoTimeout((int) ACK_TIMEOUT);
+        if(in.readUnsignedByte() != RECEIVED)
+            throw new IOException("hand-off was not confirmed");
+    }
+
+    /**
+     * tells the new process that the game port is free
+     */
+    @Override
+    public void close() throws IOException {
+        try (socket) {
+            out.writeByte(RELEASED);
+            out.flush();
+        }
+    }
+
+    /**
+     * waits for the old process to hand off its sessions and release the game port
+     * @param port local port to listen on
+     * @param waitMillis time to wait for the old process to connect
+     * @return sessions of the old process, empty if none connected in time or the hand-off failed
+     */
+    public static List<JournalRoom> receive(int port, long waitMillis) {
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverSocket.setSoTimeout((int) Math.max(1, waitMillis));
+            System.out.println("Waiting " + TimeUnit.MILLISECONDS.toSeconds(waitMillis) + "s for a hand-off on port " + port);
+            try (Socket socket = serverSocket.accept()) {
+                return new SessionHandoff(socket).receive();
+            }
+        } catch (SocketTimeoutException e) {
+            System.out.println("No process handed off its sessions, starting empty");
+        } catch (IOException e) {
+            System.out.println("Hand-off failed, starting empty: " + e.getMessage());
+        }
+        return List.of();
+    }
+
+    private List<JournalRoom> receive() throws IOException {
+        socket.setSoTimeout((int) ACK_TIMEOUT);
+        if(in.readInt() != MAGIC)
+            throw new IOException("not a session hand-off");
+        int count = in.readInt();
+        List<JournalRoom> sessions = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            long journalId = in.readLong();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            try {
+                sessions.add(JournalRoom.read(journalId, ByteBuffer.wrap(payload)));
+            } catch (RuntimeException e) {
+                throw new IOException("malformed session " + journalId, e);
+            }
+        }
+        out.writeByte(RECEIVED);
+        out.flush();
+
+        // the old process closes its players and frees the game port before it answers
+        socket.setSoTimeout((int) RELEASE_TIMEOUT);
+        try {
+            in.readUnsignedByte();
+        } catch (EOFException e) {
+            // the old process exited, its port is free as well
+        } catch (SocketTimeoutException e) {
+            System.out.println("Old process did not release the game port in time");
+        }
+        System.out.println("Received " + sessions.size() + " sessions from the old process");
+        return sessions;
+    }
+}
@@ -0,0 +1,260 @@
+package org.DrawingGame;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fan-out of one room to the spectators connected to this node<br>
+ * the owner of the room sends every frame once per node that has spectators of it (see {@link GameSession}),
+ * the relay queues the frames and sends them every batch interval, after the spectator delay, as one batch message
+ * that is encoded once and shared by all its spectators<br>
+ * the spectators are split into shards that are sent to on different relay threads, so a popular room
+ * slows neither its session nor the other rooms; a spectator stays in its shard and the sends of a shard
+ * run one after another, so its batches arrive in order<br>
+ * new spectators wait for the state of the room from the owner, then get the frames that followed it<br>
+ * thread-safe, frames arrive on the session or bus thread, spectators join on websocket threads
+ */
+class SpectatorRelay {
+    static final int LIVE = 0; // frame of the running game
+    static final int STATE = 1; // state of the room for the spectators that wait for it
+    static final int CLOSED = 2; // room is gone
+    private static final long WAITING = Long.MAX_VALUE; // start of a spectator that has no state yet
+    private static final long STATE_RETRY = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * @param seq position in the stream of the room
+     * @param receivedAt {@link System#nanoTime()} when the frame arrived
+     * @param json one message, or several separated by commas for a state
+     * @param state whether the frame is a state that only the spectators starting with it get
+     */
+    private record Frame(long seq, long receivedAt, String json, boolean state) {
+    }
+
+    /**
+     * spectators whose batches are sent one after another on the relay threads
+     */
+    private static final class Shard {
+        private final Mailbox sends;
+        private int size = 0;
+
+        private Shard(Mailbox sends) {
+            this.sends = sends;
+        }
+    }
+
+    private final long roomId;
+    private final String owner;
+    private final GameServer server;
+    private final ScheduledExecutorService executor;
+    private final long delayNanos;
+    private final int shardSize;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final Map<WebSocket, Long> spectators = new HashMap<>(); // -> seq of the state the spectator starts with
+    private final Map<WebSocket, Shard> shardOf = new HashMap<>();
+    private final List<Shard> shards = new ArrayList<>(); // kept when they run empty, new spectators fill them up
+    private long nextSeq = 0;
+    private long stateRequestedAt = -1; // System.nanoTime() of the pending state request, -1 if there is none
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * @param roomId room the spectators watch
+     * @param owner node that runs the session of the room
+     * @param server server that holds the spectator connections
+     * @param executor relay threads of the server
+     */
+    SpectatorRelay(long roomId, String owner, GameServer server, ScheduledExecutorService executor) {
+        this.roomId = roomId;
+        this.owner = owner;
+        this.server = server;
+        this.executor = executor;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(server.getConfig().getSpectatorDelay());
+        this.shardSize = Math.max(1, server.getConfig().getSpectatorShardSize());
+    }
+
+    long getRoomId() {
+        return roomId;
+    }
+
+    String getOwner() {
+        return owner;
+    }
+
+    /**
+     * adds a spectator, it gets frames once the state of the room arrived (see {@link #watch()})
+     * @param spectator connection of the spectator
+     */
+    synchronized void add(WebSocket spectator) {
+        if(spectators.put(spectator, WAITING) == null) {
+            Shard shard = null;
+            for(Shard candidate : shards) {
+                if(candidate.size < shardSize) {
+                    shard = candidate;
+                    break;
+                }
+            }
+            if(shard == null) {
+                shard = new Shard(new Mailbox(executor));
+                shards.add(shard);
+            }
+            shard.size++;
+            shardOf.put(spectator, shard);
+        }
+        if(flushTask == null) {
+            long interval = Math.max(1, server.getConfig().getSpectatorBatchInterval());
+            flushTask = executor.scheduleAtFixedRate(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * asks the owner for the state of the room unless a request is pending<br>
+     * called once the relay is reachable for the answer
+     */
+    synchronized void watch() {
+        if(stateRequestedAt < 0)
+            requestState(System.nanoTime());
+    }
+
+    /**
+     * @param spectator connection of the spectator
+     * @return true if it was the last spectator, the relay is stopped and has to be dropped
+     */
+    synchronized boolean remove(WebSocket spectator) {
+        spectators.remove(spectator);
+        Shard shard = shardOf.remove(spectator);
+        if(shard != null)
+            shard.size--;
+        if(!spectators.isEmpty())
+            return false;
+        stop();
+        return true;
+    }
+
+    /**
+     * stops sending, called when the last spectator left or the room is gone
+     */
+    synchronized void stop() {
+        if(flushTask != null)
+            flushTask.cancel(false);
+        flushTask = null;
+        frames.clear();
+    }
+
+    /**
+     * @return number of spectators of the room on this node
+     */
+    synchronized int size() {
+        return spectators.size();
+    }
+
+    /**
+     * handles frames of the owner
+     * @param json frames, several messages separated by commas for a state
+     * @param code {@link #LIVE}, {@link #STATE} or {@link #CLOSED}
+     */
+    void receive(String json, int code) {
+        if(code == CLOSED) {
+            List<WebSocket> closed;
+            synchronized (this) {
+                closed = new ArrayList<>(spectators.keySet());
+                stop();
+            }
+            for(WebSocket spectator : closed) {
+                spectator.close(CloseFrame.NORMAL, "room closed");
+            }
+            return;
+        }
+
+        synchronized (this) {
+            long seq = nextSeq++;
+            frames.add(new Frame(seq, System.nanoTime(), json, code == STATE));
+            if(code == STATE) {
+                stateRequestedAt = -1;
+                for(Map.Entry<WebSocket, Long> entry : spectators.entrySet()) {
+                    if(entry.getValue() == WAITING)
+                        entry.setValue(seq);
+                }
+            }
+        }
+    }
+
+    /**
+     * asks the owner for the state, must hold the lock
+     */
+    private void requestState(long now) {
+        stateRequestedAt = now;
+        server.watchRoom(roomId, owner, true);
+    }
+
+    /**
+     * sends the frames that are due, spectators that joined in between get their state and the frames after it
+     */
+    private void flush() {
+        long now = System.nanoTime();
+        List<Frame> due = new ArrayList<>();
+        Map<Long, Map<Shard, List<WebSocket>>> byStart = new LinkedHashMap<>(); // start seq -> spectators per shard, MIN_VALUE for live only
+        synchronized (this) {
+            if(stateRequestedAt >= 0 && now - stateRequestedAt > STATE_RETRY)
+                requestState(now); // the request or its answer got lost
+            while(!frames.isEmpty() && now - frames.peekFirst().receivedAt() >= delayNanos) {
+                due.add(frames.pollFirst());
+            }
+            if(due.isEmpty())
+                return;
+
+            long first = due.getFirst().seq();
+            long last = due.getLast().seq();
+            for(Map.Entry<WebSocket, Long> entry : spectators.entrySet()) {
+                long start = entry.getValue();
+                if(start > last)
+                    continue; // its state is not due yet
+                byStart.computeIfAbsent(start < first ? Long.MIN_VALUE : start, s -> new LinkedHashMap<>())
+                        .computeIfAbsent(shardOf.get(entry.getKey()), s -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        for(Map.Entry<Long, Map<Shard, List<WebSocket>>> group : byStart.entrySet()) {
+            String batch = encodeBatch(due, group.getKey());
+            if(batch == null)
+                continue;
+            for(Map.Entry<Shard, List<WebSocket>> shard : group.getValue().entrySet()) {
+                List<WebSocket> recipients = shard.getValue();
+                shard.getKey().sends.execute(() -> server.sendToSpectators(batch, recipients));
+            }
+        }
+    }
+
+    /**
+     * @param due frames to send
+     * @param start seq of the state the spectators start with, {@link Long#MIN_VALUE} for live frames only
+     * @return the frames as one message, a single frame as is, null if there is nothing to send
+     */
+    private static String encodeBatch(List<Frame> due, long start) {
+        List<Frame> included = new ArrayList<>(due.size());
+        for(Frame frame : due) {
+            if(frame.state() ? frame.seq() == start : frame.seq() > start)
+                included.add(frame);
+        }
+        if(included.isEmpty())
+            return null;
+        if(included.size() == 1 && !included.getFirst().state())
+            return included.getFirst().json();
+
+        StringBuilder batch = new StringBuilder("{\"type\":\"batch\",\"data\":[");
+        for(int i = 0; i < included.size(); i++) {
+            if(i > 0)
+                batch.append(',');
+            batch.append(included.get(i).json());
+        }
+        return batch.append("]}").toString();
+    }
+}
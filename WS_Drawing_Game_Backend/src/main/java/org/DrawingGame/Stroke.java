@@ -0,0 +1,18 @@
+package org.DrawingGame;
+
+/**
+ * single line segment of a drawing<br>
+ * coordinates are normalized to the canvas size (0 to 1)
+ */
+public record Stroke(float x1, float y1, float x2, float y2, String color, int width) {
+    public static final int MAX_WIDTH = 100; // pixels, the client offers 5 to 20
+
+    /**
+     * clamps the width of a stroke from a client, decoders call it once so stored and relayed strokes agree
+     * @param width width sent by the client
+     * @return width between 1 and {@link #MAX_WIDTH}
+     */
+    public static int clampWidth(int width) {
+        return Math.max(1, Math.min(MAX_WIDTH, width));
+    }
+}
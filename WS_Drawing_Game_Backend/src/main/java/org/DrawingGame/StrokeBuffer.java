@@ -0,0 +1,185 @@
+package org.DrawingGame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * append-only store for the strokes of a turn<br>
+ * strokes are kept as primitive columns in fixed-size chunks instead of one object per stroke,
+ * colors are interned into a palette that starts with {@link StrokeCodec#PALETTE}<br>
+ * some chunks are kept on {@link #clear()}, so the next turn reuses them
+ */
+public class StrokeBuffer {
+    private static final int CHUNK_SIZE = 1024;
+    private static final int MAX_COLORS = 1024; // limits palette growth from clients sending arbitrary colors
+    private static final int MAX_RETAINED_CHUNKS = 8; // chunks kept for reuse after a clear
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final List<String> colors = new ArrayList<>();
+    private final Map<String, Integer> colorToIndex = new HashMap<>();
+    private int size = 0;
+
+    private static final class Chunk {
+        private final float[] x1 = new float[CHUNK_SIZE];
+        private final float[] y1 = new float[CHUNK_SIZE];
+        private final float[] x2 = new float[CHUNK_SIZE];
+        private final float[] y2 = new float[CHUNK_SIZE];
+        private final short[] color = new short[CHUNK_SIZE];
+        private final short[] width = new short[CHUNK_SIZE];
+    }
+
+    public StrokeBuffer() {
+        resetPalette();
+    }
+
+    /**
+     * appends a stroke
+     * @param stroke stroke to append
+     * @return false if the stroke was rejected because the palette is full
+     */
+    public boolean add(Stroke stroke) {
+        return add(stroke.x1(), stroke.y1(), stroke.x2(), stroke.y2(), stroke.color(), stroke.width());
+    }
+
+    /**
+     * appends a stroke
+     * @return false if the stroke was rejected because the palette is full
+     */
+    public boolean add(float x1, float y1, float x2, float y2, String color, int width) {
+        int colorIdx = internColor(color);
+        if(colorIdx == -1)
+            return false;
+
+        int chunkIdx = size / CHUNK_SIZE;
+        if(chunkIdx == chunks.size())
+            chunks.add(new Chunk());
+
+        Chunk chunk = chunks.get(chunkIdx);
+        int i = size % CHUNK_SIZE;
+        chunk.x1[i] = x1;
+        chunk.y1[i] = y1;
+        chunk.x2[i] = x2;
+        chunk.y2[i] = y2;
+        chunk.color[i] = (short) colorIdx;
+        chunk.width[i] = (short) width; // clamped to Stroke.MAX_WIDTH by the decoders
+        size++;
+        return true;
+    }
+
+    private int internColor(String color) {
+        Integer idx = colorToIndex.get(color);
+        if(idx != null)
+            return idx;
+        if(colors.size() >= MAX_COLORS)
+            return -1;
+
+        colors.add(color);
+        colorToIndex.put(color, colors.size() - 1);
+        return colors.size() - 1;
+    }
+
+    private void resetPalette() {
+        colors.clear();
+        colorToIndex.clear();
+        for(String color : StrokeCodec.PALETTE) {
+            internColor(color);
+        }
+    }
+
+    /**
+     * removes all strokes but keeps some of the allocated chunks for reuse
+     */
+    public void clear() {
+        size = 0;
+        while(chunks.size() > MAX_RETAINED_CHUNKS) {
+            chunks.removeLast();
+        }
+        if(colors.size() > StrokeCodec.PALETTE.size())
+            resetPalette();
+    }
+
+    /**
+     * drops all but the newest strokes
+     * @param count number of newest strokes to keep
+     */
+    public void keepLast(int count) {
+        if(count >= size)
+            return;
+
+        int offset = size - count;
+        for(int i = 0; i < count; i++) {
+            Chunk from = chunks.get((offset + i) / CHUNK_SIZE);
+            Chunk to = chunks.get(i / CHUNK_SIZE);
+            int fi = (offset + i) % CHUNK_SIZE;
+            int ti = i % CHUNK_SIZE;
+            to.x1[ti] = from.x1[fi];
+            to.y1[ti] = from.y1[fi];
+            to.x2[ti] = from.x2[fi];
+            to.y2[ti] = from.y2[fi];
+            to.color[ti] = from.color[fi];
+            to.width[ti] = from.width[fi];
+        }
+        size = count;
+        while(chunks.size() > MAX_RETAINED_CHUNKS && chunks.size() * CHUNK_SIZE - size >= CHUNK_SIZE) {
+            chunks.removeLast();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Chunk chunk(int idx) {
+        if(idx < 0 || idx >= size)
+            throw new IndexOutOfBoundsException(idx);
+        return chunks.get(idx / CHUNK_SIZE);
+    }
+
+    public float x1(int idx) {
+        return chunk(idx).x1[idx % CHUNK_SIZE];
+    }
+
+    public float y1(int idx) {
+        return chunk(idx).y1[idx % CHUNK_SIZE];
+    }
+
+    public float x2(int idx) {
+        return chunk(idx).x2[idx % CHUNK_SIZE];
+    }
+
+    public float y2(int idx) {
+        return chunk(idx).y2[idx % CHUNK_SIZE];
+    }
+
+    /**
+     * @param idx index of the stroke
+     * @return palette index of the color, equal to the {@link StrokeCodec} index for palette colors
+     */
+    public int colorIndex(int idx) {
+        return chunk(idx).color[idx % CHUNK_SIZE];
+    }
+
+    public String color(int idx) {
+        return colors.get(colorIndex(idx));
+    }
+
+    public int width(int idx) {
+        return chunk(idx).width[idx % CHUNK_SIZE];
+    }
+
+    /**
+     * @param idx index of the stroke
+     * @return stroke at the index as a new object
+     */
+    public Stroke get(int idx) {
+        Chunk chunk = chunk(idx);
+        int i = idx % CHUNK_SIZE;
+        return new Stroke(chunk.x1[i], chunk.y1[i], chunk.x2[i], chunk.y2[i], colors.get(chunk.color[i]), chunk.width[i]);
+    }
+}
@@ -0,0 +1,118 @@
+package org.DrawingGame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * collects the strokes of the drawer between two flushes<br>
+ * connected segments with the same color and width are joined into one polyline,
+ * the last point of a line is moved to a new point while the line from the point before it (the anchor) to the new point
+ * stays within the tolerance of every point received since the anchor, so the error of a merged line never grows past it
+ */
+public class StrokeCoalescer {
+    private static final int MAX_MERGED = 64; // received points one line may replace, bounds the check per point
+
+    private final float tolerance;
+    private final List<Polyline> pending = new ArrayList<>();
+    private final float[] merged = new float[MAX_MERGED * 2]; // points received since the anchor of the last line
+    private int mergedCount = 0;
+    private float lastX;
+    private float lastY;
+
+    /**
+     * @param tolerance max normalized distance a merged point may be away from the resulting line
+     */
+    public StrokeCoalescer(double tolerance) {
+        this.tolerance = (float) tolerance;
+    }
+
+    /**
+     * adds a stroke to the pending polylines
+     * @param stroke stroke to add
+     */
+    public void add(Stroke stroke) {
+        Polyline line = pending.isEmpty() ? null : pending.getLast();
+        boolean continues = line != null && line.getWidth() == stroke.width() && line.getColor().equals(stroke.color())
+                && lastX == stroke.x1() && lastY == stroke.y1();
+
+        if(continues) {
+            appendPoint(line, stroke.x2(), stroke.y2());
+        } else {
+            line = new Polyline(stroke.color(), stroke.width(), stroke.x1(), stroke.y1());
+            line.addPoint(stroke.x2(), stroke.y2());
+            pending.add(line);
+            mergedCount = 0;
+            remember(stroke.x2(), stroke.y2());
+        }
+        lastX = stroke.x2();
+        lastY = stroke.y2();
+    }
+
+    /**
+     * replaces the last point if the line from the anchor to the new point still passes all received points,
+     * appends the point otherwise, then the last point becomes the anchor
+     */
+    private void appendPoint(Polyline line, float x, float y) {
+        int last = line.getPointCount() - 1;
+        if(last >= 1 && mergedCount < MAX_MERGED && coversMerged(line.getX(last - 1), line.getY(last - 1), x, y)) {
+            line.setLastPoint(x, y);
+        } else {
+            line.addPoint(x, y);
+            mergedCount = 0;
+        }
+        remember(x, y);
+    }
+
+    /**
+     * @return true if every point received since the anchor is within the tolerance of the line from the anchor to b
+     */
+    private boolean coversMerged(float ax, float ay, float bx, float by) {
+        for(int i = 0; i < mergedCount; i++) {
+            if(distanceToLine(merged[i * 2], merged[i * 2 + 1], ax, ay, bx, by) >= tolerance)
+                return false;
+        }
+        return true;
+    }
+
+    private void remember(float x, float y) {
+        merged[mergedCount * 2] = x;
+        merged[mergedCount * 2 + 1] = y;
+        mergedCount++;
+    }
+
+    /**
+     * @return distance of point p to the segment from a to b
+     */
+    private static double distanceToLine(float px, float py, float ax, float ay, float bx, float by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        if(lengthSquared == 0)
+            return Math.hypot(px - ax, py - ay);
+
+        double t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * removes and returns the pending polylines
+     * @return polylines since the last drain
+     */
+    public List<Polyline> drain() {
+        List<Polyline> lines = new ArrayList<>(pending);
+        pending.clear();
+        return lines;
+    }
+
+    /**
+     * drops the pending polylines
+     */
+    public void clear() {
+        pending.clear();
+        mergedCount = 0;
+    }
+}
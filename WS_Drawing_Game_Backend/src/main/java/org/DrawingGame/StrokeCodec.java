@@ -0,0 +1,200 @@
+package org.DrawingGame;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * binary wire format for strokes<br>
+ * used instead of json for clients that connect with codec=binary<br>
+ * stroke frame layout: [type u8][x1 u16][y1 u16][x2 u16][y2 u16][color u8][width varint]<br>
+ * batch frame layout: [type u8][count varint] followed by count strokes without the type byte<br>
+ * polyline frame layout: [type u8][color u8][width varint][count varint] followed by count points [x u16][y u16]<br>
+ * snapshot frame layout: [type u8] followed by a png image<br>
+ * coordinates are quantized to 16 bit, the color is an index into {@link #PALETTE}
+ */
+public final class StrokeCodec {
+    public static final byte STROKE = 1;
+    public static final byte STROKE_BATCH = 2;
+    public static final byte POLYLINE = 3;
+    public static final byte SNAPSHOT = 4;
+    public static final String QUERY_VALUE = "binary";
+
+    // has to match the palette in game.html and game.js
+    public static final List<String> PALETTE = List.of(
+            "rgba(255, 255, 255, 1)", "rgba(163, 171, 176, 1)", "rgba(255, 0, 0, 1)", "rgba(255, 255, 0, 1)",
+            "rgba(139, 69, 1, 1)", "rgba(35, 255, 178, 1)", "rgba(0, 255, 0, 1)", "rgba(150, 239, 255, 1)",
+            "rgba(0, 0, 255, 1)", "rgba(253, 53, 205, 1)", "rgba(255, 0, 255, 1)", "rgba(0, 0, 0, 1)",
+            "rgba(88, 90, 92, 1)", "rgba(119, 39, 39, 1)", "rgba(255, 164, 0, 1)", "rgba(84, 48, 12, 1)",
+            "rgba(40, 205, 45, 1)", "rgba(3, 103, 3, 1)", "rgba(145, 63, 249, 1)", "rgba(23, 31, 156, 1)",
+            "rgba(173, 63, 147, 1)", "rgba(148, 29, 182, 1)");
+
+    private static final Map<String, Integer> PALETTE_INDEX = new HashMap<>();
+    private static final int MAX_COORD = 0xFFFF;
+    private static final int FIXED_STROKE_SIZE = 4 * 2 + 1; // coordinates, color
+    private static final int MAX_VARINT_SIZE = 5;
+
+    static {
+        for(int i = 0; i < PALETTE.size(); i++) {
+            PALETTE_INDEX.put(PALETTE.get(i), i);
+        }
+    }
+
+    private StrokeCodec() {
+    }
+
+    /**
+     * @param color color string
+     * @return index of the color in the palette or -1 if it is not in the palette
+     */
+    public static int paletteIndex(String color) {
+        return PALETTE_INDEX.getOrDefault(color, -1);
+    }
+
+    /**
+     * encodes a stroke into a binary frame
+     * @param stroke stroke to encode
+     * @return frame ready to send or null if the color is not in the palette
+     */
+    public static ByteBuffer encode(Stroke stroke) {
+        int color = paletteIndex(stroke.color());
+        if(color == -1 || stroke.width() < 0)
+            return null;
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + FIXED_STROKE_SIZE + varIntSize(stroke.width()));
+        buffer.put(STROKE);
+        putStroke(buffer, stroke.x1(), stroke.y1(), stroke.x2(), stroke.y2(), color, stroke.width());
+        return buffer.flip();
+    }
+
+    /**
+     * encodes a range of stored strokes into one batch frame
+     * @param strokes stroke store
+     * @param from index of the first stroke (inclusive)
+     * @param to index of the last stroke (exclusive)
+     * @return frame ready to send or null if a color of the range is not in the palette
+     */
+    public static ByteBuffer encodeBatch(StrokeBuffer strokes, int from, int to) {
+        int count = to - from;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + MAX_VARINT_SIZE + count * (FIXED_STROKE_SIZE + MAX_VARINT_SIZE));
+        buffer.put(STROKE_BATCH);
+        putVarInt(buffer, count);
+        for(int i = from; i < to; i++) {
+            int color = strokes.colorIndex(i);
+            if(color >= PALETTE.size())
+                return null;
+            putStroke(buffer, strokes.x1(i), strokes.y1(i), strokes.x2(i), strokes.y2(i), color, strokes.width(i));
+        }
+        // copy to the exact size, the frame payload has to fill its whole array
+        ByteBuffer frame = ByteBuffer.allocate(buffer.position());
+        frame.put(buffer.flip());
+        return frame.flip();
+    }
+
+    /**
+     * encodes a polyline into a binary frame
+     * @param line polyline to encode
+     * @return frame ready to send or null if the color is not in the palette
+     */
+    public static ByteBuffer encodePolyline(Polyline line) {
+        int color = paletteIndex(line.getColor());
+        if(color == -1 || line.getWidth() < 0)
+            return null;
+
+        int count = line.getPointCount();
+        ByteBuffer buffer = ByteBuffer.allocate(2 + varIntSize(line.getWidth()) + varIntSize(count) + count * 4);
+        buffer.put(POLYLINE);
+        buffer.put((byte) color);
+        putVarInt(buffer, line.getWidth());
+        putVarInt(buffer, count);
+        for(int i = 0; i < count; i++) {
+            buffer.putShort(quantize(line.getX(i)));
+            buffer.putShort(quantize(line.getY(i)));
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * wraps a png canvas snapshot into a binary frame
+     * @param png encoded image
+     * @return frame ready to send
+     */
+    public static ByteBuffer encodeSnapshot(byte[] png) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + png.length);
+        buffer.put(SNAPSHOT);
+        buffer.put(png);
+        return buffer.flip();
+    }
+
+    private static void putStroke(ByteBuffer buffer, float x1, float y1, float x2, float y2, int color, int width) {
+        buffer.putShort(quantize(x1));
+        buffer.putShort(quantize(y1));
+        buffer.putShort(quantize(x2));
+        buffer.putShort(quantize(y2));
+        buffer.put((byte) color);
+        putVarInt(buffer, width);
+    }
+
+    /**
+     * decodes a binary stroke frame
+     * @param buffer frame to decode
+     * @return decoded stroke
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static Stroke decode(ByteBuffer buffer) {
+        try {
+            if(buffer.get() != STROKE)
+                throw new IllegalArgumentException("not a stroke frame");
+            float x1 = dequantize(buffer.getShort());
+            float y1 = dequantize(buffer.getShort());
+            float x2 = dequantize(buffer.getShort());
+            float y2 = dequantize(buffer.getShort());
+            int color = Byte.toUnsignedInt(buffer.get());
+            if(color >= PALETTE.size())
+                throw new IllegalArgumentException("unknown color index " + color);
+            int width = Stroke.clampWidth(getVarInt(buffer));
+            return new Stroke(x1, y1, x2, y2, PALETTE.get(color), width);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("stroke frame too short", e);
+        }
+    }
+
+    private static short quantize(float value) {
+        float clamped = Math.max(0, Math.min(1, value));
+        return (short) Math.round(clamped * MAX_COORD);
+    }
+
+    private static float dequantize(short value) {
+        return Short.toUnsignedInt(value) / (float) MAX_COORD;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+}
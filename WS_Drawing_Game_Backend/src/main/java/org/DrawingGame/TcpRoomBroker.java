@@ -0,0 +1,178 @@
+package org.DrawingGame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * {@link RoomBroker} served over tcp for nodes in other jvms, see {@link TcpRoomBus}<br>
+ * a single process stand-in for a real pub/sub system, meant for local clusters and tests:
+ * no persistence, no redundancy, and a slow node slows down the nodes sending to it<br>
+ * protocol: every request starts with an op byte, join, create, find, drain, leave and renew are answered with a reply
+ * that carries the request id, messages for a node are pushed as deliver
+ */
+public class TcpRoomBroker {
+    static final int REGISTER = 1; // node id
+    static final int JOIN = 2; // request id
+    static final int LEAVE = 3; // request id, room id
+    static final int RENEW = 4; // request id
+    static final int SEND = 5; // receiving node id, message
+    static final int REPLY = 6; // request id, value, text
+    static final int DELIVER = 7; // message
+    static final int CREATE = 8; // request id, player count
+    static final int DRAIN = 9; // request id
+    static final int FIND = 10; // request id, room id
+
+    private final RoomBroker broker;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * binds the broker, {@link #start()} accepts nodes
+     * @param broker room directory and router
+     * @param host address to listen on
+     * @param port port to listen on, 0 for any free port
+     */
+    public TcpRoomBroker(RoomBroker broker, String host, int port) throws IOException {
+        this.broker = broker;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(host, port));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 3100;
+        long lease = args.length > 1 ? Long.parseLong(args[1]) : RoomBroker.DEFAULT_LEASE;
+        TcpRoomBroker broker = new TcpRoomBroker(new RoomBroker(RoomBroker.DEFAULT_ROOM_SIZE, lease),
+                InetAddress.getLoopbackAddress().getHostAddress(), port);
+        broker.start();
+    }
+
+    public void start() {
+        System.out.println("Room broker started on " + serverSocket.getLocalSocketAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "room-broker"); // keeps a standalone broker alive
+        acceptor.start();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return port the broker listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while(!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if(!serverSocket.isClosed())
+                    System.out.println("Room broker could not accept a node: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * handles the requests of one node until it disconnects, then closes its rooms
+     */
+    private void serve(Socket socket) {
+        String node = null;
+        Consumer<BusMessage> inbox = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while(true) {
+                int op = in.readUnsignedByte();
+                switch (op) {
+                    case REGISTER -> {
+                        node = in.readUTF();
+                        inbox = message -> deliver(out, message);
+                        broker.register(node, inbox);
+                    }
+                    case JOIN -> {
+                        long request = in.readLong();
+                        RoomBus.Room room = node == null ? null : broker.join(node);
+                        reply(out, request, room == null ? -1 : room.id(), room == null ? "" : room.owner());
+                    }
+                    case CREATE -> {
+                        long request = in.readLong();
+                        int players = (int) in.readLong();
+                        RoomBus.Room room = node == null ? null : broker.create(node, players);
+                        reply(out, request, room == null ? -1 : room.id(), room == null ? "" : room.owner());
+                    }
+                    case FIND -> {
+                        long request = in.readLong();
+                        RoomBus.Room room = broker.find(in.readLong());
+                        reply(out, request, room == null ? -1 : room.id(), room == null ? "" : room.owner());
+                    }
+                    case DRAIN -> {
+                        long request = in.readLong();
+                        if(node != null)
+                            broker.drain(node);
+                        reply(out, request, 1, "");
+                    }
+                    case LEAVE -> {
+                        long request = in.readLong();
+                        long room = in.readLong();
+                        reply(out, request, broker.leave(room) ? 1 : 0, "");
+                    }
+                    case RENEW -> {
+                        long request = in.readLong();
+                        reply(out, request, node != null && broker.renew(node) ? 1 : 0, "");
+                    }
+                    case SEND -> {
+                        String to = in.readUTF();
+                        broker.route(to, BusMessage.read(in));
+                    }
+                    default -> throw new IOException("unknown op " + op);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // node disconnected
+        } catch (IOException e) {
+            System.out.println("Room broker dropped node " + node + ": " + e.getMessage());
+        } finally {
+            if(node != null)
+                broker.unregister(node, inbox);
+        }
+    }
+
+    private static void reply(DataOutputStream out, long request, long value, String text) throws IOException {
+        synchronized (out) {
+            out.writeByte(REPLY);
+            out.writeLong(request);
+            out.writeLong(value);
+            out.writeUTF(text);
+            out.flush();
+        }
+    }
+
+    private static void deliver(DataOutputStream out, BusMessage message) {
+        try {
+            synchronized (out) {
+                out.writeByte(DELIVER);
+                message.write(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the reading side of the connection notices the failure and unregisters the node
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.DrawingGame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RoomBus} of a node on a {@link TcpRoomBroker}<br>
+ * one connection per node, messages for the node are passed to the listener on the reading thread<br>
+ * the rooms of the node are tracked from the replies on the reading thread, before the listener gets any message for them<br>
+ * a lost connection is opened again on the next lease renewal, the broker has closed the rooms of the node by then
+ */
+public class TcpRoomBus implements RoomBus {
+    private static final long REQUEST_TIMEOUT = 5000; // ms
+
+    private final String host;
+    private final int port;
+    private final Map<Long, Request> pending = new ConcurrentHashMap<>();
+    private final Set<Long> leases = ConcurrentHashMap.newKeySet(); // ids of the rooms owned by this node
+    private final AtomicLong nextRequest = new AtomicLong();
+    private volatile Socket socket;
+    private volatile DataOutputStream out; // null until registered
+    private volatile String nodeId;
+    private volatile Listener listener;
+    private volatile boolean unregistered = false;
+
+    private record Reply(long value, String text) {
+    }
+
+    private record Request(int op, long argument, CompletableFuture<Reply> future) {
+    }
+
+    /**
+     * @param host host of the broker
+     * @param port port of the broker
+     */
+    public TcpRoomBus(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @param address host:port of the broker
+     * @return bus for the broker
+     */
+    public static TcpRoomBus fromAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if(separator <= 0)
+            throw new IllegalArgumentException("room bus address has to be host:port, got " + address);
+        return new TcpRoomBus(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+    }
+
+    @Override
+    public synchronized void register(String nodeId, Listener listener) throws IOException {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        connect();
+    }
+
+    private void connect() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), (int) REQUEST_TIMEOUT);
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        writeRegister();
+
+        Thread reader = new Thread(() -> read(socket, in), "room-bus-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void writeRegister() throws IOException {
+        synchronized (out) {
+            out.writeByte(TcpRoomBroker.REGISTER);
+            out.writeUTF(nodeId);
+            out.flush();
+        }
+    }
+
+    /**
+     * passes replies to the waiting requests and messages to the listener until the connection is closed
+     */
+    private void read(Socket socket, DataInputStream in) {
+        try {
+            while(true) {
+                int op = in.readUnsignedByte();
+                if(op == TcpRoomBroker.REPLY) {
+                    long request = in.readLong();
+                    Reply reply = new Reply(in.readLong(), in.readUTF());
+                    Request waiting = pending.remove(request);
+                    if(waiting != null) {
+                        trackLeases(waiting, reply);
+                        waiting.future().complete(reply);
+                    }
+                } else if(op == TcpRoomBroker.DELIVER) {
+                    BusMessage message = BusMessage.read(in);
+                    if(message.getKind() == BusMessage.Kind.ROOM_CLOSED)
+                        leases.remove(message.getRoom());
+                    listener.onMessage(message);
+                } else {
+                    throw new IOException("unknown op " + op);
+                }
+            }
+        } catch (IOException e) {
+            if(!socket.isClosed())
+                System.out.println("Lost connection to room broker: " + e.getMessage());
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already lost
+        }
+        leases.clear(); // the broker closes the rooms of disconnected nodes
+        IOException closed = new IOException("connection to room broker closed");
+        for(Request waiting : pending.values()) {
+            waiting.future().completeExceptionally(closed);
+        }
+        pending.clear();
+    }
+
+    /**
+     * updates the rooms owned by this node from the reply to one of its requests
+     */
+    private void trackLeases(Request request, Reply reply) {
+        switch (request.op()) {
+            case TcpRoomBroker.JOIN, TcpRoomBroker.CREATE -> {
+                if(reply.value() >= 0 && reply.text().equals(nodeId))
+                    leases.add(reply.value());
+            }
+            case TcpRoomBroker.LEAVE -> {
+                if(reply.value() == 1)
+                    leases.remove(request.argument());
+            }
+            case TcpRoomBroker.RENEW -> {
+                if(reply.value() != 1)
+                    leases.clear();
+            }
+            default -> { }
+        }
+    }
+
+    @Override
+    public synchronized void unregister() {
+        unregistered = true;
+        if(socket == null)
+            return;
+        try {
+            socket.close(); // the broker closes the rooms of disconnected nodes
+        } catch (IOException e) {
+            System.out.println("Could not close room bus: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Room join() throws IOException {
+        Reply reply = request(TcpRoomBroker.JOIN, -1);
+        if(reply.value() < 0)
+            throw new IOException("node " + nodeId + " is not registered");
+        return new Room(reply.value(), reply.text());
+    }
+
+    @Override
+    public Room create(int players) throws IOException {
+        Reply reply = request(TcpRoomBroker.CREATE, players);
+        if(reply.value() < 0)
+            throw new IOException("node " + nodeId + " is not registered");
+        return new Room(reply.value(), reply.text());
+    }
+
+    @Override
+    public Room find(long roomId) throws IOException {
+        Reply reply = request(TcpRoomBroker.FIND, roomId);
+        return reply.value() < 0 ? null : new Room(reply.value(), reply.text());
+    }
+
+    @Override
+    public boolean holdsLease(long roomId) {
+        return leases.contains(roomId);
+    }
+
+    @Override
+    public void drain() throws IOException {
+        request(TcpRoomBroker.DRAIN, -1);
+    }
+
+    @Override
+    public boolean leave(long roomId) throws IOException {
+        return request(TcpRoomBroker.LEAVE, roomId).value() == 1;
+    }
+
+    @Override
+    public boolean renewLeases() throws IOException {
+        synchronized (this) {
+            if(unregistered)
+                return true;
+            if(socket == null || socket.isClosed()) {
+                connect();
+                return false;
+            }
+        }
+        if(request(TcpRoomBroker.RENEW, -1).value() == 1)
+            return true;
+        writeRegister();
+        return false;
+    }
+
+    @Override
+    public void send(String nodeId, BusMessage message) {
+        DataOutputStream out = this.out;
+        if(out == null)
+            return;
+        try {
+            synchronized (out) {
+                out.writeByte(TcpRoomBroker.SEND);
+                out.writeUTF(nodeId);
+                message.write(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the reading thread reports the lost connection
+        }
+    }
+
+    /**
+     * sends a request and waits for its reply
+     * @param op request op
+     * @param argument room id for leave and find, player count for create, ignored otherwise
+     */
+    private Reply request(int op, long argument) throws IOException {
+        DataOutputStream out = this.out;
+        if(out == null)
+            throw new IOException("not connected to the room broker");
+        long request = nextRequest.getAndIncrement();
+        CompletableFuture<Reply> future = new CompletableFuture<>();
+        pending.put(request, new Request(op, argument, future));
+        try {
+            synchronized (out) {
+                out.writeByte(op);
+                out.writeLong(request);
+                if(op == TcpRoomBroker.LEAVE || op == TcpRoomBroker.CREATE || op == TcpRoomBroker.FIND)
+                    out.writeLong(argument);
+                out.flush();
+            }
+            return future.get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the room broker", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("room broker did not answer in " + REQUEST_TIMEOUT + " ms");
+        } finally {
+            pending.remove(request);
+        }
+    }
+}
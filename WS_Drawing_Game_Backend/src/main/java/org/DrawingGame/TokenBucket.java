@@ -0,0 +1,46 @@
+package org.DrawingGame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * token bucket that refills at a fixed rate up to a burst<br>
+ * kept as the time the bucket is full again (generic cell rate algorithm), so taking a token is one comparison
+ * and one addition without allocation<br>
+ * not thread-safe, every connection owns its own buckets
+ */
+public class TokenBucket {
+    private final long interval; // nanos per token
+    private final long tolerance; // nanos the bucket may run ahead of now, burst - 1 tokens
+    private long full = Long.MIN_VALUE; // System.nanoTime() when all tokens are back
+
+    /**
+     * @param rate tokens per second, 0 or less for no limit
+     * @param burst tokens that can be taken at once, at least 1
+     */
+    public TokenBucket(int rate, int burst) {
+        this.interval = rate <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / rate;
+        this.tolerance = interval * (Math.max(1, burst) - 1);
+    }
+
+    /**
+     * @param now {@link System#nanoTime()}
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    public boolean tryAcquire(long now) {
+        if(interval == 0)
+            return true;
+        long start = full == Long.MIN_VALUE || full - now < 0 ? now : full;
+        if(start - now > tolerance)
+            return false;
+        full = start + interval;
+        return true;
+    }
+
+    /**
+     * @param now {@link System#nanoTime()}
+     * @return true if all tokens are back, a new bucket would decide the same
+     */
+    public boolean isFull(long now) {
+        return full == Long.MIN_VALUE || full - now <= 0;
+    }
+}
@@ -0,0 +1,38 @@
+package org.DrawingGame;
+
+import java.util.Random;
+
+/**
+ * draws words of a word list in a shuffled order without repeats<br>
+ * shuffles an index array per session (Fisher-Yates, one swap per drawn word), so the order can't be
+ * predicted from the words already drawn and the words themselves are not copied;
+ * the next pass shuffles the same array again
+ */
+public class WordCursor {
+    private final WordList words;
+    private final Random rand;
+    private final int[] order; // indices into the word list, the first position ones are drawn in this pass
+    private int position = 0;
+
+    public WordCursor(WordList words, Random rand) {
+        this.words = words;
+        this.rand = rand;
+        this.order = new int[words.size()];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+    }
+
+    /**
+     * @return next word, each word is returned once before any word repeats
+     */
+    public String next() {
+        if(position == order.length)
+            position = 0;
+        int pick = position + rand.nextInt(order.length - position);
+        int idx = order[pick];
+        order[pick] = order[position];
+        order[position++] = idx;
+        return words.get(idx);
+    }
+}
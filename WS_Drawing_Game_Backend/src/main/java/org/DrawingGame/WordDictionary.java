@@ -0,0 +1,95 @@
+package org.DrawingGame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * process-wide word lists, loaded once at startup and shared by all sessions<br>
+ * the bundled words.txt is the default category, every *.txt file in an optional
+ * words directory is memory-mapped as an additional category (e.g. en.txt becomes "en")
+ */
+public class WordDictionary {
+    public static final String DEFAULT_CATEGORY = "default";
+    private static final String DEFAULT_RESOURCE = "/words.txt";
+
+    private final Map<String, WordList> categories;
+
+    private WordDictionary(Map<String, WordList> categories) {
+        this.categories = Map.copyOf(categories);
+    }
+
+    /**
+     * loads the bundled words and the word files of the directory
+     * @param directory directory with additional word files or null
+     * @return loaded dictionary
+     * @throws UncheckedIOException if a word file can not be read
+     * @throws IllegalStateException if the bundled words.txt is missing or a list is empty
+     */
+    public static WordDictionary load(Path directory) {
+        Map<String, WordList> categories = new HashMap<>();
+        categories.put(DEFAULT_CATEGORY, readResource(DEFAULT_RESOURCE));
+
+        if(directory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+                for(Path file : files) {
+                    String name = file.getFileName().toString();
+                    categories.put(name.substring(0, name.length() - ".txt".length()), new MappedWordList(file));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("could not load words from " + directory, e);
+            }
+        }
+
+        for(Map.Entry<String, WordList> category : categories.entrySet()) {
+            if(category.getValue().size() == 0)
+                throw new IllegalStateException("word list " + category.getKey() + " is empty");
+        }
+        return new WordDictionary(categories);
+    }
+
+    private static WordList readResource(String path) {
+        InputStream input = WordDictionary.class.getResourceAsStream(path);
+        if(input == null)
+            throw new IllegalStateException(path + " not found!");
+
+        Set<String> words = new LinkedHashSet<>(); // the bundled list contains duplicates
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(!line.isBlank())
+                    words.add(line.trim());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not read " + path, e);
+        }
+        return WordList.of(new ArrayList<>(words));
+    }
+
+    /**
+     * @param category name of the category
+     * @return words of the category
+     * @throws IllegalArgumentException if the category does not exist
+     */
+    public WordList get(String category) {
+        WordList words = categories.get(category);
+        if(words == null)
+            throw new IllegalArgumentException("unknown word category " + category);
+        return words;
+    }
+
+    public Set<String> getCategories() {
+        return categories.keySet();
+    }
+}
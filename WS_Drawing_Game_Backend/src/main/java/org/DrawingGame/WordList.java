@@ -0,0 +1,32 @@
+package org.DrawingGame;
+
+import java.util.List;
+
+/**
+ * immutable, indexed list of words<br>
+ * implementations must be safe to read from any thread
+ */
+public interface WordList {
+    int size();
+
+    String get(int idx);
+
+    /**
+     * @param words words to keep in memory
+     * @return word list backed by an immutable copy of the words
+     */
+    static WordList of(List<String> words) {
+        List<String> copy = List.copyOf(words);
+        return new WordList() {
+            @Override
+            public int size() {
+                return copy.size();
+            }
+
+            @Override
+            public String get(int idx) {
+                return copy.get(idx);
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package org.DrawingGame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageDecoderTest {
+    private final MessageDecoder decoder = new MessageDecoder();
+
+    private static String stroke(String x1) {
+        return "{\"type\":\"stroke\",\"data\":{\"x1\":" + x1 + ",\"y1\":0.5,\"x2\":0.25,\"y2\":0.75,\"color\":\"rgba(0, 0, 0, 1)\",\"width\":4}}";
+    }
+
+    @Test
+    void decodesStrokeInCanvas() {
+        MessageDecoder.Message message = decoder.decode(stroke("0"));
+        assertEquals(MessageDecoder.Type.STROKE, message.getType());
+        assertEquals(new Stroke(0, 0.5f, 0.25f, 0.75f, "rgba(0, 0, 0, 1)", 4), message.toStroke());
+        assertEquals(MessageDecoder.Type.STROKE, decoder.decode(stroke("1")).getType());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1e300", "-1e300", "1.5", "-0.01"})
+    void refusesCoordinatesOutsideCanvas(String x1) {
+        MessageDecoder.Message message = decoder.decode(stroke(x1));
+        assertEquals(MessageDecoder.Type.INVALID, message.getType());
+        assertEquals("stroke outside the canvas", message.getError());
+    }
+
+    @Test
+    void refusesLargeNumbersInEveryCoordinate() {
+        for(String field : new String[]{"y1", "x2", "y2"}) {
+            String json = stroke("0.5").replaceFirst("\"" + field + "\":[0-9.]+", "\"" + field + "\":1e300");
+            assertEquals(MessageDecoder.Type.INVALID, decoder.decode(json).getType(), field);
+        }
+    }
+}
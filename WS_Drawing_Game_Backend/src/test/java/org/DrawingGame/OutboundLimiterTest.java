@@ -0,0 +1,67 @@
+package org.DrawingGame;
+
+import org.java_websocket.WebSocket;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundLimiterTest {
+    private static final long SNAPSHOT_INTERVAL = 60_000; // ms, longer than the test
+
+    private boolean buffered = false; // queue of the stub connection, one frame if true
+
+    /**
+     * @return connection that is open and has a queued frame while {@link #buffered} is set
+     */
+    private WebSocket connection() {
+        return (WebSocket) Proxy.newProxyInstance(WebSocket.class.getClassLoader(), new Class<?>[]{WebSocket.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "hasBufferedData" -> buffered;
+                    case "isOpen" -> true;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    /**
+     * @return player that was over the soft limit and got downgraded to snapshots
+     */
+    private Player downgradedPlayer(OutboundLimiter limiter) {
+        Player player = new Player(connection(), "slow");
+        buffered = true;
+        assertEquals(OutboundLimiter.Decision.SKIP, limiter.admitDrawing(player));
+        assertTrue(player.isSnapshotOnly());
+        buffered = false;
+        return player;
+    }
+
+    @Test
+    void resyncsDowngradedPlayerWithoutReplay() {
+        OutboundLimiter limiter = new OutboundLimiter(OutboundLimiter.Policy.SNAPSHOT, 0, 10, SNAPSHOT_INTERVAL);
+        Player player = downgradedPlayer(limiter); // only got the history on join, never a replay
+
+        assertEquals(OutboundLimiter.Decision.RESYNC, limiter.admitDrawing(player));
+    }
+
+    @Test
+    void skipsDowngradedPlayerUntilIntervalPassed() {
+        OutboundLimiter limiter = new OutboundLimiter(OutboundLimiter.Policy.SNAPSHOT, 0, 10, SNAPSHOT_INTERVAL);
+        Player player = downgradedPlayer(limiter);
+        player.setLastStrokeReplay(System.nanoTime());
+
+        assertEquals(OutboundLimiter.Decision.SKIP, limiter.admitDrawing(player));
+    }
+
+    @Test
+    void skipsDowngradedPlayerWhileQueueNotEmpty() {
+        OutboundLimiter limiter = new OutboundLimiter(OutboundLimiter.Policy.SNAPSHOT, 0, 10, SNAPSHOT_INTERVAL);
+        Player player = downgradedPlayer(limiter);
+        buffered = true;
+
+        assertEquals(OutboundLimiter.Decision.SKIP, limiter.admitDrawing(player));
+    }
+}
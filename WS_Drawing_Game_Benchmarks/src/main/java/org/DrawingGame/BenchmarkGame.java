@@ -0,0 +1,101 @@
+package org.DrawingGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * game session with stub players for the benchmarks<br>
+ * the players join through the mailbox and the turn timer is stopped after the game started,
+ * afterwards the benchmark thread is the only one touching the session and calls it directly
+ */
+public class BenchmarkGame {
+    private final GameServer server;
+    private final GameSession session;
+    private final List<Player> players = new ArrayList<>();
+
+    /**
+     * @param playerCount number of players, at least 2 so the game starts
+     * @param binary whether the players use the binary stroke codec
+     */
+    public BenchmarkGame(int playerCount, boolean binary) {
+        ServerConfig config = new ServerConfig();
+        config.setStrokeFlushRate(0); // relay strokes immediately, flushes would run on the scheduler
+        config.setMetricsPort(0);
+        config.setFloodStrokeRate(0); // the benchmarks send far more than a player may
+        config.setFloodChatRate(0);
+        config.setFloodOtherRate(0);
+        config.setSnapshotThreads(0); // compactions run on the benchmark thread that owns the session
+        server = new GameServer("127.0.0.1", 0, config); // never started, broadcasts only need the recipients
+        session = new GameSession(server, 0);
+        for(int i = 0; i < playerCount; i++) {
+            StubWebSocket ws = new StubWebSocket();
+            Player player = new Player(ws, "player" + i);
+            player.setBinaryStrokes(binary);
+            ws.setAttachment(player);
+            session.execute(() -> session.addPlayer(player));
+            players.add(player);
+        }
+        session.execute(session::close); // stops the turn timer, turn and word stay set
+        awaitMailbox();
+    }
+
+    /**
+     * waits until all commands posted to the session so far have run
+     */
+    private void awaitMailbox() {
+        CountDownLatch done = new CountDownLatch(1);
+        session.execute(done::countDown);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public GameSession getSession() {
+        return session;
+    }
+
+    /**
+     * @return player whose turn it is
+     */
+    public Player getDrawer() {
+        return players.getFirst();
+    }
+
+    /**
+     * @return player that is not drawing
+     */
+    public Player getViewer() {
+        return players.get(1);
+    }
+
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    /**
+     * draws a random walk of strokes as the drawer
+     * @param count number of strokes
+     * @param rand random source
+     */
+    public void draw(int count, Random rand) {
+        float x = 0.5f;
+        float y = 0.5f;
+        for(int i = 0; i < count; i++) {
+            float nx = Math.max(0, Math.min(1, x + (rand.nextFloat() - 0.5f) * 0.02f));
+            float ny = Math.max(0, Math.min(1, y + (rand.nextFloat() - 0.5f) * 0.02f));
+            session.addStroke(getDrawer().getWebSocket(), new Stroke(x, y, nx, ny, StrokeCodec.PALETTE.get(i % 4), 8));
+            x = nx;
+            y = ny;
+        }
+    }
+
+    public void shutdown() {
+        server.getScheduler().shutdown();
+        server.getSessionExecutor().shutdownNow();
+    }
+}
@@ -0,0 +1,46 @@
+package org.DrawingGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * state sent to a player joining a running game, for growing stroke histories<br>
+ * histories above the compaction threshold are sent as snapshot plus the newest strokes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FullGameDataBenchmark {
+    @Param({"0", "500", "4000", "50000"})
+    public int history;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private BenchmarkGame game;
+    private GameSession session;
+    private Player viewer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = new BenchmarkGame(8, codec.equals("binary"));
+        session = game.getSession();
+        viewer = game.getViewer();
+        game.draw(history, new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        game.shutdown();
+    }
+
+    @Benchmark
+    public void sendFullGameData() {
+        session.sendFullGameData(viewer);
+    }
+}
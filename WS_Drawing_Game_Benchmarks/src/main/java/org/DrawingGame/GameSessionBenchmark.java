@@ -0,0 +1,99 @@
+package org.DrawingGame;
+
+import org.java_websocket.WebSocket;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hot paths of a running game for 2 to MAX_SIZE players<br>
+ * strokes are relayed immediately (no flush rate), the drawing is cleared every iteration,
+ * so stroke results include the amortized cost of compacting long histories
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameSessionBenchmark {
+    private static final String STROKE_JSON =
+            "{\"type\":\"stroke\",\"data\":{\"x1\":0.25,\"y1\":0.5,\"x2\":0.2512,\"y2\":0.5034,\"color\":\"rgba(0, 0, 0, 1)\",\"width\":8}}";
+    private static final String CHAT_JSON = "{\"type\":\"message\",\"data\":\"is it a house?\"}";
+    private static final String CLEAR_JSON = "{\"type\":\"clear\"}";
+
+    @Param({"2", "4", "8"})
+    public int players;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private BenchmarkGame game;
+    private GameSession session;
+    private WebSocket drawer;
+    private Player viewer;
+    private ByteBuffer strokeFrame;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = new BenchmarkGame(players, codec.equals("binary"));
+        session = game.getSession();
+        drawer = game.getDrawer().getWebSocket();
+        viewer = game.getViewer();
+        strokeFrame = StrokeCodec.encode(new Stroke(0.25f, 0.5f, 0.2512f, 0.5034f, "rgba(0, 0, 0, 1)", 8));
+    }
+
+    @Setup(Level.Iteration)
+    public void clearDrawing() {
+        session.handleMessage(drawer, CLEAR_JSON);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        game.shutdown();
+    }
+
+    /**
+     * json stroke from the drawer: decode, store and relay to all viewers
+     */
+    @Benchmark
+    public void handleStroke() {
+        session.handleMessage(drawer, STROKE_JSON);
+    }
+
+    /**
+     * binary stroke from the drawer: decode, store and relay to all viewers
+     */
+    @Benchmark
+    public void handleBinaryStroke() {
+        session.handleBinaryMessage(drawer, strokeFrame.duplicate());
+    }
+
+    /**
+     * wrong guess: decode, guess check and broadcastBut to all other players
+     */
+    @Benchmark
+    public void handleChatMessage() {
+        session.handleMessage(viewer.getWebSocket(), CHAT_JSON);
+    }
+
+    /**
+     * guess check and broadcastBut without decoding
+     */
+    @Benchmark
+    public void broadcastChat() {
+        session.handleChatMessage(viewer, "is it a house?");
+    }
+
+    @Benchmark
+    public void broadcastBut() {
+        session.broadcastBut(viewer, Map.of("type", "message", "data", "is it a house?", "username", viewer.getUsername()));
+    }
+
+    @Benchmark
+    public void broadcastScoreboard() {
+        session.broadcastScoreboard();
+    }
+}
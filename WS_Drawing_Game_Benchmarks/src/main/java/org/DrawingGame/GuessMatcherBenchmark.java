@@ -0,0 +1,37 @@
+package org.DrawingGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * guess check of every chat message: {@link GuessMatcher} against the equalsIgnoreCase it replaced<br>
+ * the matcher also folds accents and finds close guesses, a miss should stay in the same range
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessMatcherBenchmark {
+    private static final String WORD = "Elefant";
+
+    @Param({"is it a house?", "elefannt", "ELEFANT"})
+    public String guess;
+
+    private final GuessMatcher matcher = new GuessMatcher(WORD);
+
+    @Benchmark
+    public GuessMatcher.Result matcher() {
+        return matcher.match(guess);
+    }
+
+    /**
+     * the guess check of the old handleChatMessage
+     */
+    @Benchmark
+    public boolean equalsIgnoreCase() {
+        return guess.equalsIgnoreCase(WORD);
+    }
+}
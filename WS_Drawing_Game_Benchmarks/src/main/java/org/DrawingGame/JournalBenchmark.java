@@ -0,0 +1,63 @@
+package org.DrawingGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * appending strokes to the {@link GameJournal} from many session threads while the writer syncs to disk<br>
+ * the throughput has to stay above the stroke rate of all rooms drawing at once,
+ * an append that waits for the writer shows up as a drop in ops/s
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JournalBenchmark {
+    private final AtomicLong nextSession = new AtomicLong();
+    private Path directory;
+    private GameJournal journal;
+
+    @State(Scope.Thread)
+    public static class Room {
+        private long session;
+        private final Stroke stroke = new Stroke(0.1f, 0.2f, 0.3f, 0.4f, StrokeCodec.PALETTE.get(1), 8);
+
+        @Setup
+        public void setup(JournalBenchmark benchmark) {
+            session = benchmark.nextSession.getAndIncrement();
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new GameJournal(directory, 5);
+        journal.recover();
+        journal.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void stroke(Room room) {
+        journal.stroke(room.session, room.stroke);
+    }
+}
@@ -0,0 +1,52 @@
+package org.DrawingGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * join and leave of one player with many partially filled rooms<br>
+ * the rooms never get empty, so no session is created or closed during the measurement
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MatchmakerBenchmark {
+    private static final int MAX_SIZE = 8;
+
+    @Param({"10", "1000"})
+    public int rooms;
+
+    private GameServer server;
+    private Matchmaker<GameSession> matchmaker;
+    private long nextRoomId = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ServerConfig config = new ServerConfig();
+        config.setMetricsPort(0);
+        server = new GameServer("127.0.0.1", 0, config);
+        matchmaker = new Matchmaker<>(MAX_SIZE);
+        for(int i = 0; i < rooms * MAX_SIZE - MAX_SIZE / 2; i++) {
+            matchmaker.join(this::newSession);
+        }
+    }
+
+    private GameSession newSession() {
+        return new GameSession(server, nextRoomId++);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.getScheduler().shutdown();
+        server.getSessionExecutor().shutdownNow();
+    }
+
+    @Benchmark
+    public boolean joinAndLeave() {
+        return matchmaker.leave(matchmaker.join(this::newSession));
+    }
+}
@@ -0,0 +1,47 @@
+package org.DrawingGame;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * streaming {@link MessageDecoder} against the gson tree parsing it replaced
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDecoderBenchmark {
+    private static final String STROKE_JSON =
+            "{\"type\":\"stroke\",\"data\":{\"x1\":0.25,\"y1\":0.5,\"x2\":0.2512,\"y2\":0.5034,\"color\":\"rgba(0, 0, 0, 1)\",\"width\":8}}";
+
+    private final MessageDecoder decoder = new MessageDecoder();
+
+    @Benchmark
+    public Stroke decoder() {
+        return decoder.decode(STROKE_JSON).toStroke();
+    }
+
+    /**
+     * the parsing of the old handleStroke
+     */
+    @Benchmark
+    public Map<String, Object> gsonTree() {
+        JsonObject message = JsonParser.parseString(STROKE_JSON).getAsJsonObject();
+        JsonObject data = message.getAsJsonObject("data");
+        Map<String, Object> stroke = new HashMap<>();
+        stroke.put("x1", data.get("x1").getAsDouble());
+        stroke.put("y1", data.get("y1").getAsDouble());
+        stroke.put("x2", data.get("x2").getAsDouble());
+        stroke.put("y2", data.get("y2").getAsDouble());
+        stroke.put("color", data.get("color").getAsString());
+        stroke.put("width", data.get("width").getAsInt());
+        return stroke;
+    }
+}
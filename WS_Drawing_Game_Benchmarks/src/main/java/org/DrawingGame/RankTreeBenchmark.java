@@ -0,0 +1,80 @@
+package org.DrawingGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ranking of the {@link Leaderboard}: rank of a user, an update of its total and the top 10 in a {@link RankTree}
+ * against counting the users with more points in an array<br>
+ * tree operations should grow with log n, the scan with n
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankTreeBenchmark {
+    @Param({"10000", "1000000"})
+    public int users;
+
+    private final Random random = new Random(42);
+    private final RankTree tree = new RankTree();
+    private final List<Leaderboard.Rank> top = new ArrayList<>(10);
+    private String[] names;
+    private long[] points;
+
+    @Setup
+    public void setup() {
+        names = new String[users];
+        points = new long[users];
+        for(int i = 0; i < users; i++) {
+            names[i] = "player" + i;
+            points[i] = random.nextInt(100_000);
+            tree.insert(names[i], points[i]);
+        }
+    }
+
+    @Benchmark
+    public int rank() {
+        int user = random.nextInt(users);
+        return tree.countBefore(names[user], points[user]) + 1;
+    }
+
+    /**
+     * points of a finished game added to the total of a user
+     */
+    @Benchmark
+    public void update() {
+        int user = random.nextInt(users);
+        tree.remove(names[user], points[user]);
+        points[user] += random.nextInt(1000);
+        tree.insert(names[user], points[user]);
+    }
+
+    @Benchmark
+    public List<Leaderboard.Rank> top10() {
+        top.clear();
+        tree.top(10, top);
+        return top;
+    }
+
+    /**
+     * rank without an ordered structure
+     */
+    @Benchmark
+    public int scanRank() {
+        int user = random.nextInt(users);
+        long own = points[user];
+        int before = 0;
+        for(int i = 0; i < users; i++) {
+            if(points[i] > own || (points[i] == own && names[i].compareTo(names[user]) < 0))
+                before++;
+        }
+        return before + 1;
+    }
+}
@@ -0,0 +1,79 @@
+package org.DrawingGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * storing the strokes of a turn in {@link StrokeBuffer} against the list of maps it replaced<br>
+ * run with -prof gc, the allocation per operation is the memory every stored stroke costs,
+ * {@link StrokeFootprint} measures the memory the stored strokes keep
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(StrokeBufferBenchmark.STROKES)
+public class StrokeBufferBenchmark {
+    static final int STROKES = 10_000;
+
+    private Stroke[] input;
+
+    @Setup
+    public void setup() {
+        input = strokes(STROKES);
+    }
+
+    /**
+     * @return strokes of a drawer using all palette colors
+     */
+    static Stroke[] strokes(int count) {
+        Stroke[] strokes = new Stroke[count];
+        for(int i = 0; i < count; i++) {
+            float x = (i % 100) / 100f;
+            strokes[i] = new Stroke(x, 0.5f, x + 0.01f, 0.51f, StrokeCodec.PALETTE.get(i % StrokeCodec.PALETTE.size()), 8);
+        }
+        return strokes;
+    }
+
+    /**
+     * a new buffer per invocation, so the chunks are allocated like in the first turn
+     */
+    @Benchmark
+    public StrokeBuffer strokeBuffer() {
+        StrokeBuffer buffer = new StrokeBuffer();
+        for(Stroke stroke : input) {
+            buffer.add(stroke);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapList() {
+        return toMapList(input);
+    }
+
+    /**
+     * @return strokes as the list of maps GameSession stored before {@link StrokeBuffer}
+     */
+    static List<Map<String, Object>> toMapList(Stroke[] input) {
+        List<Map<String, Object>> strokes = new ArrayList<>();
+        for(Stroke s : input) {
+            Map<String, Object> stroke = new HashMap<>();
+            stroke.put("x1", (double) s.x1());
+            stroke.put("y1", (double) s.y1());
+            stroke.put("x2", (double) s.x2());
+            stroke.put("y2", (double) s.y2());
+            stroke.put("color", s.color());
+            stroke.put("width", s.width());
+            strokes.add(stroke);
+        }
+        return strokes;
+    }
+}
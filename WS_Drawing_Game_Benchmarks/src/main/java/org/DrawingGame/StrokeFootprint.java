@@ -0,0 +1,33 @@
+package org.DrawingGame;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * retained heap of the strokes of a turn in {@link StrokeBuffer} against the list of maps it replaced<br>
+ * walks the object graph with JOL, so the sizes are exact for the running jvm and include the shared palette strings<br>
+ * run with java -cp target/benchmarks.jar org.DrawingGame.StrokeFootprint [strokes]
+ */
+public class StrokeFootprint {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : StrokeBufferBenchmark.STROKES;
+        Stroke[] input = StrokeBufferBenchmark.strokes(count);
+
+        StrokeBuffer buffer = new StrokeBuffer();
+        for(Stroke stroke : input) {
+            buffer.add(stroke);
+        }
+        List<Map<String, Object>> mapList = StrokeBufferBenchmark.toMapList(input);
+
+        System.out.println(System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"));
+        System.out.printf("retained heap of %d strokes:%n", count);
+        print("List<Map<String,Object>>", GraphLayout.parseInstance(mapList).totalSize(), count);
+        print("StrokeBuffer", GraphLayout.parseInstance(buffer).totalSize(), count);
+    }
+
+    private static void print(String name, long bytes, int count) {
+        System.out.printf("  %-26s %10d bytes  %6.1f bytes per stroke%n", name, bytes, (double) bytes / count);
+    }
+}
@@ -0,0 +1,165 @@
+package org.DrawingGame;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+
+import javax.net.ssl.SSLSession;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * open websocket without a network<br>
+ * frames are encoded to their wire format like {@link org.java_websocket.WebSocketImpl} does and then dropped,
+ * only the number of frames and bytes is kept
+ */
+public class StubWebSocket implements WebSocket {
+    private final Draft draft = new Draft_6455();
+    private Object attachment;
+    private long frames = 0;
+    private long bytes = 0;
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void send(String text) {
+        sendFrame(draft.createFrames(text, false));
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        sendFrame(draft.createFrames(bytes, false));
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        send(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public void sendFrame(Framedata framedata) {
+        sendFrame(List.of(framedata));
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> frames) {
+        for(Framedata frame : frames) {
+            bytes += draft.createBinaryFrame(frame).remaining();
+            this.frames++;
+        }
+    }
+
+    @Override
+    public void sendPing() {
+    }
+
+    @Override
+    public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {
+        bytes += buffer.remaining();
+        frames++;
+    }
+
+    @Override
+    public void close(int code, String message) {
+    }
+
+    @Override
+    public void close(int code) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void closeConnection(int code, String message) {
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return false;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return false;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public Draft getDraft() {
+        return draft;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        return ReadyState.OPEN;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return "/";
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return false;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        throw new IllegalArgumentException("no ssl");
+    }
+
+    @Override
+    public IProtocol getProtocol() {
+        return null;
+    }
+}
@@ -1,8 +1,11 @@
 /* USER AUTHENTICATION */
 
+// Spectators open game.html?spectate=<room id> and need no login
+const spectateRoom = new URLSearchParams(window.location.search).get("spectate");
+
 // Retrieve the username from session storage and redirect to login if not found
 const username = sessionStorage.getItem("username");
-if (!username || username === "") {
+if (!spectateRoom && (!username || username === "")) {
     window.location.href = 'login.html';
     throw new Error("Username is null or empty, redirecting...");
 }
@@ -24,6 +27,13 @@ canvas.addEventListener('mousedown', startDrawing);
 canvas.addEventListener('mouseup', stopDrawing); 
 canvas.addEventListener('mousemove', draw); 
 
+// Spectators only watch
+if (spectateRoom) {
+    document.getElementById("messageInput").disabled = true;
+    document.getElementById("messageInput").placeholder = "Spectating...";
+    document.getElementById("leaderboardButton").hidden = true;
+}
+
 // Sending chat messages on Enter
 document.getElementById("messageInput").addEventListener("keypress", function(event) {
     if (event.key === "Enter") {
@@ -43,8 +53,10 @@ let mouseCoord = { x: 0, y: 0 };    // Current mouse coordinates while drawing
 let isDrawing = false;              // Indicates if the player is drawing
 let color = 'rgba(0, 0, 0, 1)';   // Current drawing color
 let lineWidth = 5;                  // Current line width
-let timeLeft = null;                // Time left in the round
+let timeLeft = null;                // Seconds left in the turn, as displayed
+let turnDeadline = null;            // End of the current turn on the server clock (ms)
 let guessWord = null;               // Word being guessed by players, filled with underscores at start
+let deferredMessages = null;        // Messages received while a snapshot image is loading
 
 
 /* HTML ELEMENTS */
@@ -57,28 +69,127 @@ const roundElement = document.getElementById("round");
 const wordElement = document.getElementById("word");
 
 
+/* BINARY STROKE CODEC */
+
+// Binary frame type of a single stroke
+const STROKE_FRAME = 1;
+// Binary frame type of a batch of strokes (history replay)
+const STROKE_BATCH_FRAME = 2;
+// Binary frame type of a polyline (coalesced strokes)
+const POLYLINE_FRAME = 3;
+// Binary frame type of a canvas snapshot (png)
+const SNAPSHOT_FRAME = 4;
+// Largest quantized coordinate (16 bit)
+const MAX_COORD = 0xFFFF;
+// Color palette, has to match the buttons in game.html and StrokeCodec.java
+const PALETTE = [
+    'rgba(255, 255, 255, 1)', 'rgba(163, 171, 176, 1)', 'rgba(255, 0, 0, 1)', 'rgba(255, 255, 0, 1)',
+    'rgba(139, 69, 1, 1)', 'rgba(35, 255, 178, 1)', 'rgba(0, 255, 0, 1)', 'rgba(150, 239, 255, 1)',
+    'rgba(0, 0, 255, 1)', 'rgba(253, 53, 205, 1)', 'rgba(255, 0, 255, 1)', 'rgba(0, 0, 0, 1)',
+    'rgba(88, 90, 92, 1)', 'rgba(119, 39, 39, 1)', 'rgba(255, 164, 0, 1)', 'rgba(84, 48, 12, 1)',
+    'rgba(40, 205, 45, 1)', 'rgba(3, 103, 3, 1)', 'rgba(145, 63, 249, 1)', 'rgba(23, 31, 156, 1)',
+    'rgba(173, 63, 147, 1)', 'rgba(148, 29, 182, 1)'
+];
+
+
+/* SERVER CLOCK */
+
+// Number of sync requests per sync, the one with the shortest round trip is used
+const SYNC_SAMPLES = 5;
+// Delay between sync requests in ms
+const SYNC_SAMPLE_DELAY = 100;
+// Time in ms without a reply after which a sync request counts as lost
+const SYNC_TIMEOUT = 3000;
+// Difference in ms between wall clock and monotonic clock progress that triggers a resync
+const DRIFT_TOLERANCE = 1000;
+// Interval of the local countdown in ms
+const COUNTDOWN_INTERVAL = 250;
+
+let clockOffset = null;             // Server clock minus performance.now(), null until synced
+let syncRemaining = 0;              // Sync requests left in the running sync
+let syncSentAt = null;              // performance.now() of the pending sync request
+let syncTimer = null;               // Timeout of the pending sync request
+let bestRoundTrip = Infinity;       // Shortest round trip of the running sync
+let lastClockCheck = null;          // Wall and monotonic clock at the last countdown update
+
+setInterval(updateCountdown, COUNTDOWN_INTERVAL);
+
+// Resync after the tab was in the background, timers may not have run and the device may have slept
+document.addEventListener('visibilitychange', () => {
+    if (document.visibilityState === 'visible') {
+        syncClock();
+    }
+});
+
+
 /* WEBSOCKET CONNECTION */
 
-// Connect to the WebSocket server
-const socket = new WebSocket(`ws://localhost:3000?username=${username}`);
+// Close codes after which the page reconnects: going away, abnormal closure, service restart, try again later
+const RECONNECT_CODES = [1001, 1006, 1012, 1013];
+const RECONNECT_DELAY = 2000; // ms, doubled for every failed attempt
+const RECONNECT_MAX_DELAY = 30000; // ms
+// Reconnects in a row that never opened before giving up, a refused handshake also closes with 1006
+const RECONNECT_MAX_FAILED = 5;
+
+// Token of the player, lets the server hand the player back after a restart
+const token = sessionStorage.getItem("token");
+const tokenParam = token ? `&token=${encodeURIComponent(token)}` : '';
+
+// Connect to the WebSocket server, strokes are exchanged in the binary format
+// Spectators get everything as json, batched by the server
+const socket = new WebSocket(spectateRoom
+    ? `ws://localhost:3000?spectate=${encodeURIComponent(spectateRoom)}`
+    : `ws://localhost:3000?username=${encodeURIComponent(username)}&codec=binary${tokenParam}`);
+socket.binaryType = 'arraybuffer';
+let opened = false; // Whether the connection was established, a refused or failed connect closes without opening
 
 // WebSocket connection opened
 socket.onopen = () => {
     console.log("Connected to server");
+    opened = true;
+    sessionStorage.removeItem("reconnects");
+    abortSync(); // a sync of the old connection gets no reply anymore
+    syncClock();
 };
 
 // WebSocket connection closed
 socket.onclose = (event) => {
+    abortSync();
     resetGameState();
     statusElement.innerText = 'Server connection closed!';
     timeElement.innerText = "";
     scoreboardElement.innerText = "";
 
     forceClear();
+
+    // Back off and spread the reconnects, so a restarted or full server is not hit by all players at once
+    const attempts = Number(sessionStorage.getItem("reconnects") || 0);
+    // A connect that never opened is only retried while reconnecting after a lost connection, e.g. to a restarting server
+    const retry = opened || (attempts > 0 && attempts < RECONNECT_MAX_FAILED);
+    if (!retry) {
+        sessionStorage.removeItem("reconnects");
+        statusElement.innerText = 'Could not connect to the server!';
+    } else if (RECONNECT_CODES.includes(event.code)) {
+        statusElement.innerText = 'Reconnecting...';
+        sessionStorage.setItem("reconnects", attempts + 1);
+        const delay = Math.min(RECONNECT_DELAY * 2 ** attempts, RECONNECT_MAX_DELAY) * (0.5 + Math.random());
+        setTimeout(() => window.location.reload(), delay);
+    }
 };
 
 // Handle incoming WebSocket messages
 socket.onmessage = (event) => {
+    // Keep the order of drawing, messages after a snapshot wait until the image is drawn
+    if (deferredMessages !== null) {
+        deferredMessages.push(event);
+        return;
+    }
+
+    if (event.data instanceof ArrayBuffer) {
+        handleBinaryMessage(new DataView(event.data));
+        return;
+    }
+
     const data = JSON.parse(event.data);
     
     switch (data.type) {
@@ -96,6 +207,8 @@ socket.onmessage = (event) => {
             statusElement.innerText = '';
             roundElement.innerText = `Round ${data.round}/${data.maxRound}`;
             isMyTurn = data.id == id;
+            turnDeadline = data.deadline;
+            updateCountdown();
             if (isMyTurn) {
                 optionElement.style.visibility = 'visible'; // Show drawing options
             } else {
@@ -111,6 +224,16 @@ socket.onmessage = (event) => {
         case "id":
             id = data.data; // Set player ID
             break;
+        case "token":
+            sessionStorage.setItem("token", data.data); // Sent again on reconnect to get the player back
+            break;
+        case "room":
+            addMessage(spectateRoom ? `Spectating room ${data.data}` : `Spectators can watch at game.html?spectate=${data.data}`);
+            break;
+        case "batch":
+            // Messages of the spectator relay, handled in order like single messages
+            data.data.forEach(message => socket.onmessage({ data: JSON.stringify(message) }));
+            break;
         case "scoreboard":
             scoreboardElement.innerHTML = '';
             const scoreboardPlayer = data.data;
@@ -134,14 +257,19 @@ socket.onmessage = (event) => {
         case "message":
             addMessage(data.data, data.username); // Display chat message
             break;
-        case "time":
-            timeLeft = data.data;
-            timeElement.innerText = `${timeLeft} seconds left!`; // Update timer
+        case "sync":
+            handleSync(data.data);
             break;
         case "correct":
             addMessage(data.username + ' guessed the word!');
             markGuessed(data.id); // Mark the player who guessed correctly
             break;
+        case "close":
+            addMessage(`'${data.data}' is close!`); // Only this player sees the guess
+            break;
+        case "leaderboard":
+            showLeaderboard(data.data, data.rank);
+            break;
         case "clear":
             forceClear(); // Clear the canvas
             break;
@@ -158,9 +286,161 @@ socket.onmessage = (event) => {
         
             drawStroke(absX1, absY1, absX2, absY2, color, width); // Draw the stroke
             break;
+        case "strokes":
+            // Batch of strokes from a history replay
+            data.data.forEach(stroke => {
+                drawStroke(stroke.x1 * canvas.width, stroke.y1 * canvas.height,
+                    stroke.x2 * canvas.width, stroke.y2 * canvas.height, stroke.color, stroke.width);
+            });
+            break;
+        case "polyline":
+            // Coalesced strokes, points are x0, y0, x1, y1, ...
+            drawPolyline(data.data.points, data.data.color, data.data.width);
+            break;
+        case "snapshot":
+            drawSnapshot(new Blob([Uint8Array.from(atob(data.data), c => c.charCodeAt(0))], { type: 'image/png' }));
+            break;
+        case "replay_done":
+            break;
+        case "error":
+            showError(data.data); // Server rejected a message
+            break;
     }
 };
 
+// Handle incoming binary messages
+function handleBinaryMessage(view) {
+    switch (view.getUint8(0)) {
+        case STROKE_FRAME:
+            const stroke = decodeStroke(view, 1);
+            drawStroke(stroke.x1 * canvas.width, stroke.y1 * canvas.height,
+                stroke.x2 * canvas.width, stroke.y2 * canvas.height, stroke.color, stroke.width);
+            break;
+        case STROKE_BATCH_FRAME:
+            let offset = 1;
+            const count = decodeVarInt(view, offset);
+            offset += count.length;
+            for (let i = 0; i < count.value; i++) {
+                const batchStroke = decodeStroke(view, offset);
+                offset += batchStroke.length;
+                drawStroke(batchStroke.x1 * canvas.width, batchStroke.y1 * canvas.height,
+                    batchStroke.x2 * canvas.width, batchStroke.y2 * canvas.height, batchStroke.color, batchStroke.width);
+            }
+            break;
+        case POLYLINE_FRAME:
+            const lineColor = PALETTE[view.getUint8(1)];
+            const polyWidth = decodeVarInt(view, 2);
+            const pointCount = decodeVarInt(view, 2 + polyWidth.length);
+            const pointOffset = 2 + polyWidth.length + pointCount.length;
+            const points = [];
+            for (let i = 0; i < pointCount.value * 2; i++) {
+                points.push(view.getUint16(pointOffset + i * 2) / MAX_COORD);
+            }
+            drawPolyline(points, lineColor, polyWidth.value);
+            break;
+        case SNAPSHOT_FRAME:
+            drawSnapshot(new Blob([new Uint8Array(view.buffer, view.byteOffset + 1, view.byteLength - 1)], { type: 'image/png' }));
+            break;
+    }
+}
+
+// Draw a snapshot of older strokes, messages received while it loads are handled afterwards
+function drawSnapshot(blob) {
+    deferredMessages = [];
+    createImageBitmap(blob)
+        .then(image => ctx.drawImage(image, 0, 0, canvas.width, canvas.height))
+        .catch(() => console.log("Could not load canvas snapshot"))
+        .finally(() => {
+            const messages = deferredMessages;
+            deferredMessages = null;
+            messages.forEach(message => socket.onmessage(message));
+        });
+}
+
+/* COUNTDOWN */
+
+// Start measuring the offset to the server clock, does nothing if a sync is running
+function syncClock() {
+    if (syncRemaining > 0 || socket.readyState != WebSocket.OPEN)
+        return;
+    syncRemaining = SYNC_SAMPLES;
+    bestRoundTrip = Infinity;
+    sendSync();
+}
+
+// Send one sync request
+function sendSync() {
+    if (socket.readyState != WebSocket.OPEN) {
+        syncRemaining = 0;
+        return;
+    }
+    syncSentAt = performance.now();
+    socket.send(JSON.stringify({ type: "sync" }));
+    clearTimeout(syncTimer);
+    syncTimer = setTimeout(handleSyncLost, SYNC_TIMEOUT);
+}
+
+// Skip a sync request without a reply, so one lost reply does not stop the sync
+function handleSyncLost() {
+    syncSentAt = null;
+    syncRemaining--;
+    if (syncRemaining > 0) {
+        sendSync();
+    } else if (clockOffset === null) {
+        syncRemaining = 0;
+        syncClock(); // no sample was answered, keep trying so the countdown can show
+    }
+}
+
+// Forget the running sync
+function abortSync() {
+    clearTimeout(syncTimer);
+    syncSentAt = null;
+    syncRemaining = 0;
+}
+
+// Estimate the clock offset from the server time, assuming the server answered halfway through the round trip
+function handleSync(serverTime) {
+    if (syncSentAt === null)
+        return;
+    clearTimeout(syncTimer);
+    const roundTrip = performance.now() - syncSentAt;
+    if (roundTrip <= bestRoundTrip) {
+        bestRoundTrip = roundTrip;
+        clockOffset = serverTime - (syncSentAt + roundTrip / 2);
+    }
+    syncSentAt = null;
+
+    syncRemaining--;
+    if (syncRemaining > 0) {
+        setTimeout(sendSync, SYNC_SAMPLE_DELAY);
+    }
+    updateCountdown();
+}
+
+// Resync if the wall clock and the monotonic clock moved apart (sleep, suspended tab or clock change)
+function checkClockDrift() {
+    const wall = Date.now();
+    const mono = performance.now();
+    if (lastClockCheck !== null && Math.abs((wall - lastClockCheck.wall) - (mono - lastClockCheck.mono)) > DRIFT_TOLERANCE) {
+        syncClock();
+    }
+    lastClockCheck = { wall, mono };
+}
+
+// Render the seconds left until the turn deadline
+function updateCountdown() {
+    checkClockDrift();
+    if (turnDeadline === null || clockOffset === null)
+        return;
+
+    const left = Math.max(0, Math.ceil((turnDeadline - (performance.now() + clockOffset)) / 1000));
+    if (left !== timeLeft) {
+        timeLeft = left;
+        timeElement.innerText = `${timeLeft} seconds left!`;
+    }
+}
+
 /* GAME STATE MANAGEMENT */
 
 // Reset game state variables
@@ -171,6 +451,8 @@ function resetGameState() {
     isMyTurn = false;
     roundElement.innerText = "";
     guessWord = null;
+    turnDeadline = null;
+    timeLeft = null;
 }
 
 // Reset the scoreboard styles
@@ -282,12 +564,34 @@ function drawStroke(x1, y1, x2, y2, color, width) {
     ctx.stroke();
 }
 
+// Draw a polyline from normalized points (x0, y0, x1, y1, ...)
+function drawPolyline(points, color, width) {
+    ctx.strokeStyle = color;
+    ctx.lineWidth = width;
+    ctx.lineCap = "round";
+    ctx.lineJoin = "round";
+
+    ctx.beginPath();
+    ctx.moveTo(points[0] * canvas.width, points[1] * canvas.height);
+    for (let i = 2; i < points.length; i += 2) {
+        ctx.lineTo(points[i] * canvas.width, points[i + 1] * canvas.height);
+    }
+    ctx.stroke();
+}
+
 // Send stroke data to the server
 function sendStroke(x1, y1, x2, y2) {
-    const normX1 = x1 / canvas.width;
-    const normY1 = y1 / canvas.height;
-    const normX2 = x2 / canvas.width;
-    const normY2 = y2 / canvas.height;
+    // The server refuses coordinates outside the canvas
+    const normX1 = Math.min(Math.max(x1 / canvas.width, 0), 1);
+    const normY1 = Math.min(Math.max(y1 / canvas.height, 0), 1);
+    const normX2 = Math.min(Math.max(x2 / canvas.width, 0), 1);
+    const normY2 = Math.min(Math.max(y2 / canvas.height, 0), 1);
+
+    const colorIdx = PALETTE.indexOf(color);
+    if (colorIdx !== -1) {
+        socket.send(encodeStroke(normX1, normY1, normX2, normY2, colorIdx, lineWidth));
+        return;
+    }
 
     socket.send(JSON.stringify({
         type: "stroke",
@@ -302,6 +606,46 @@ function sendStroke(x1, y1, x2, y2) {
     }));
 }
 
+// Encode a stroke into a binary frame: [type][x1][y1][x2][y2] (uint16) [color] (uint8) [width] (varint)
+function encodeStroke(x1, y1, x2, y2, colorIdx, width) {
+    const bytes = [STROKE_FRAME];
+    [x1, y1, x2, y2].forEach(coord => {
+        const quantized = Math.round(Math.min(Math.max(coord, 0), 1) * MAX_COORD);
+        bytes.push(quantized >> 8, quantized & 0xFF);
+    });
+    bytes.push(colorIdx);
+    while (width > 0x7F) {
+        bytes.push((width & 0x7F) | 0x80);
+        width >>>= 7;
+    }
+    bytes.push(width);
+    return new Uint8Array(bytes);
+}
+
+// Decode a binary stroke starting at the given offset
+function decodeStroke(view, offset) {
+    const coord = (idx) => view.getUint16(offset + idx * 2) / MAX_COORD;
+    const colorIdx = view.getUint8(offset + 8);
+    const width = decodeVarInt(view, offset + 9);
+
+    return { x1: coord(0), y1: coord(1), x2: coord(2), y2: coord(3), color: PALETTE[colorIdx], width: width.value, length: 9 + width.length };
+}
+
+// Decode an unsigned varint starting at the given offset
+function decodeVarInt(view, offset) {
+    let value = 0;
+    let shift = 0;
+    let pos = offset;
+    let b;
+    do {
+        b = view.getUint8(pos++);
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+    } while (b & 0x80);
+
+    return { value: value, length: pos - offset };
+}
+
 // Set the drawing color
 function setColor(setColor) {
     color = setColor;
@@ -337,6 +681,26 @@ function sendMessage() {
     socket.send(JSON.stringify({ type: "message", data: text}));
 }
 
+// Ask the server for the best players of all games
+function requestLeaderboard() {
+    if (socket.readyState != WebSocket.OPEN) {
+        showError("Not connected to server!");
+        return;
+    }
+    socket.send(JSON.stringify({ type: "leaderboard" }));
+}
+
+// Show the leaderboard and the own rank in the chat
+function showLeaderboard(top, rank) {
+    if (top.length === 0) {
+        addMessage("Nobody is on the leaderboard yet", "Leaderboard");
+        return;
+    }
+    top.forEach(entry => addMessage(`${entry.rank}. ${entry.username}: ${entry.points}`, "Leaderboard"));
+    if (rank && rank.rank > top.length)
+        addMessage(`${rank.rank}. ${rank.username}: ${rank.points}`, "Leaderboard");
+}
+
 // Add a message to the chat
 function addMessage(message, name) {
     let chat = document.getElementById("chat");
@@ -17,6 +17,7 @@ function submitLogin() {
     }
 
     sessionStorage.setItem("username", name);
+    sessionStorage.removeItem("token"); // a new login is a new player
     window.location.href = 'game.html'
 }
 
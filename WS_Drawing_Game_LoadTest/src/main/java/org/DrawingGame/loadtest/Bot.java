@@ -0,0 +1,335 @@
+package org.DrawingGame.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.DrawingGame.Stroke;
+import org.DrawingGame.StrokeCodec;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * headless player that joins like the browser client does<br>
+ * draws mouse-move like stroke streams on its turn, chats and guesses the word while others draw<br>
+ * {@link #tick(long)} is called at the stroke rate, messages are handled on the websocket thread<br>
+ * like the browser, a bot that lost its connection to a restart is replaced by one that reconnects with its token
+ */
+public class Bot extends WebSocketClient {
+    private static final int MAX_COORD = 0xFFFF; // same quantization as StrokeCodec
+    private static final int[] WIDTHS = {4, 8, 12, 20};
+    private static final List<String> CHAT = List.of("hi", "what is that", "nice", "no idea", "a house?", "gg", "lol");
+    private static final Set<Integer> RECONNECT_CODES = Set.of(CloseFrame.GOING_AWAY, CloseFrame.ABNORMAL_CLOSE,
+            CloseFrame.SERVICE_RESTART, CloseFrame.TRY_AGAIN_LATER, CloseFrame.NEVER_CONNECTED); // same as game.js
+    private static final long RECONNECT_DELAY = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final String server;
+    private final String name;
+    private final boolean binary;
+    private final LoadOptions options;
+    private final LoadStats stats;
+    private final Random rand;
+    private final long leaveAt;
+    private final String reclaimToken; // token of the player this bot reconnects as, null for a new player
+    private final int pointsBefore; // points the player had when the connection was lost
+
+    // written by the websocket thread
+    private volatile String drawer;
+    private volatile boolean drawing = false;
+    private volatile int turn = 0;
+    private volatile boolean done = false;
+    private volatile int id = -1;
+    private volatile String token;
+    private volatile boolean reclaimed = false;
+    private volatile int points = 0;
+    private volatile int closeCode = CloseFrame.NORMAL;
+    private volatile long closedAt;
+    private boolean scoreChecked = false; // websocket thread
+
+    // only touched by tick
+    private int seenTurn = 0;
+    private long guessAt = Long.MAX_VALUE;
+    private float x, y, heading, speed;
+    private String color;
+    private int width;
+    private int segmentsLeft = 0;
+    private int penUpTicks = 0;
+
+    /**
+     * @param server url of the server without query
+     * @param name unique username
+     * @param binary whether the bot uses the binary stroke codec
+     */
+    public Bot(String server, String name, boolean binary, LoadOptions options, LoadStats stats, Random rand) {
+        this(server, name, binary, options, stats, rand, null, 0);
+    }
+
+    /**
+     * @param reclaimToken token of the player to reconnect as
+     * @param pointsBefore points of the player when it lost the connection, the server must not give back fewer
+     */
+    public Bot(String server, String name, boolean binary, LoadOptions options, LoadStats stats, Random rand,
+               String reclaimToken, int pointsBefore) {
+        super(URI.create(server + "/?username=" + name + (binary ? "&codec=" + StrokeCodec.QUERY_VALUE : "")
+                + (reclaimToken != null ? "&token=" + reclaimToken : "")));
+        this.server = server;
+        this.name = name;
+        this.binary = binary;
+        this.options = options;
+        this.stats = stats;
+        this.rand = rand;
+        this.leaveAt = options.getChurn() > 0 ? System.nanoTime() + exponentialNanos(options.getChurn()) : Long.MAX_VALUE;
+        this.reclaimToken = reclaimToken;
+        this.pointsBefore = pointsBefore;
+    }
+
+    private long exponentialNanos(double meanSeconds) {
+        return (long) (-Math.log(1 - rand.nextDouble()) * TimeUnit.SECONDS.toNanos(1) * meanSeconds);
+    }
+
+    @Override
+    public void onOpen(ServerHandshake handshake) {
+        stats.connected();
+    }
+
+    @Override
+    public void onMessage(String message) {
+        stats.messageReceived();
+        JsonObject obj = JsonParser.parseString(message).getAsJsonObject();
+        switch (obj.get("type").getAsString()) {
+            case "start" -> {
+                drawer = obj.get("name").getAsString();
+                drawing = name.equals(drawer);
+                if(drawing)
+                    stats.turnStarted(name);
+                turn++;
+            }
+            case "word" -> stats.publishWord(name, obj.get("data").getAsString());
+            case "id" -> id = Integer.parseInt(obj.get("data").getAsString());
+            case "token" -> {
+                token = obj.get("data").getAsString();
+                if(reclaimToken != null) {
+                    reclaimed = token.equals(reclaimToken);
+                    stats.reconnected(reclaimed);
+                }
+            }
+            case "scoreboard" -> scoreboardReceived(obj.getAsJsonArray("data"));
+            case "stroke" -> {
+                JsonObject data = obj.getAsJsonObject("data");
+                strokeReceived(quantize(data.get("x2").getAsFloat()), quantize(data.get("y2").getAsFloat()));
+            }
+            case "polyline" -> {
+                JsonArray points = obj.getAsJsonObject("data").getAsJsonArray("points");
+                int last = points.size() - 2;
+                strokeReceived(quantize(points.get(last).getAsFloat()), quantize(points.get(last + 1).getAsFloat()));
+            }
+            default -> { }
+        }
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        stats.messageReceived();
+        byte type = bytes.get();
+        if(type == StrokeCodec.STROKE) {
+            strokeReceived(Short.toUnsignedInt(bytes.getShort(5)), Short.toUnsignedInt(bytes.getShort(7)));
+        } else if(type == StrokeCodec.POLYLINE) {
+            bytes.get(); // color
+            getVarInt(bytes); // width
+            int count = getVarInt(bytes);
+            bytes.position(bytes.position() + (count - 1) * 4);
+            strokeReceived(Short.toUnsignedInt(bytes.getShort()), Short.toUnsignedInt(bytes.getShort()));
+        }
+    }
+
+    /**
+     * keeps the own points, the first scoreboard after a reclaim must not show fewer points than before
+     */
+    private void scoreboardReceived(JsonArray scoreboard) {
+        String ownId = Integer.toString(id);
+        for(JsonElement entry : scoreboard) {
+            JsonObject score = entry.getAsJsonObject();
+            if(!score.get("id").getAsString().equals(ownId))
+                continue;
+            points = Integer.parseInt(score.get("points").getAsString());
+            if(reclaimed && !scoreChecked) {
+                scoreChecked = true;
+                if(points < pointsBefore)
+                    stats.scoreLost(name, pointsBefore, points);
+            }
+        }
+    }
+
+    private void strokeReceived(int qx, int qy) {
+        String from = drawer;
+        if(from != null)
+            stats.strokeReceived(from, LoadStats.pointKey(qx, qy), System.nanoTime());
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                break;
+        }
+        return value;
+    }
+
+    @Override
+    public void onClose(int code, String reason, boolean remote) {
+        stats.disconnected();
+        closeCode = code;
+        closedAt = System.nanoTime();
+        done = true;
+    }
+
+    @Override
+    public void onError(Exception e) {
+        stats.error();
+    }
+
+    /**
+     * @return true if the bot left or lost its connection and should be replaced
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @param now current time from {@link System#nanoTime()}
+     * @return bot that reconnects as the same player if the connection was lost to a restart and the delay passed,
+     *         null if the bot should be replaced by a new player or has to wait
+     */
+    public Bot reconnect(long now) {
+        String token = this.token != null ? this.token : reclaimToken;
+        if(token == null || !RECONNECT_CODES.contains(closeCode) || now - closedAt < RECONNECT_DELAY)
+            return null;
+        // a bot that got a new player instead of its old one starts from the points of the new one
+        int known = this.token == null ? pointsBefore : reclaimed ? Math.max(points, pointsBefore) : points;
+        return new Bot(server, name, binary, options, stats, rand, token, known);
+    }
+
+    /**
+     * @return true if the bot lost its connection and will reconnect as the same player
+     */
+    public boolean willReconnect() {
+        return (token != null || reclaimToken != null) && RECONNECT_CODES.contains(closeCode);
+    }
+
+    /**
+     * runs one step of the bot: draws, chats, guesses or leaves
+     * @param now current time from {@link System#nanoTime()}
+     */
+    public void tick(long now) {
+        if(done || !isOpen())
+            return;
+        if(now >= leaveAt) {
+            done = true;
+            close();
+            return;
+        }
+
+        if(drawing) {
+            draw(now);
+            return;
+        }
+
+        int currentTurn = turn;
+        if(currentTurn != seenTurn) {
+            seenTurn = currentTurn;
+            guessAt = options.getGuessAfter() > 0 ? now + exponentialNanos(options.getGuessAfter()) : Long.MAX_VALUE;
+        }
+        if(now >= guessAt) {
+            String word = drawer == null ? null : stats.getWord(drawer);
+            if(word != null) {
+                chat(word);
+                stats.guessed();
+            }
+            guessAt = Long.MAX_VALUE;
+        } else if(rand.nextDouble() < options.getChatRate() / options.getStrokeRate()) {
+            chat(CHAT.get(rand.nextInt(CHAT.size())));
+        }
+    }
+
+    private void chat(String text) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("type", "message");
+        obj.addProperty("data", text);
+        send(obj.toString());
+        stats.messageSent();
+    }
+
+    /**
+     * moves the pen like a mouse: lines of 20 to 120 moves with a slowly turning direction,
+     * with short pauses between lines
+     */
+    private void draw(long now) {
+        if(penUpTicks > 0) {
+            penUpTicks--;
+            return;
+        }
+        if(segmentsLeft == 0) {
+            x = 0.1f + rand.nextFloat() * 0.8f;
+            y = 0.1f + rand.nextFloat() * 0.8f;
+            heading = rand.nextFloat() * (float) (2 * Math.PI);
+            speed = 0.004f + rand.nextFloat() * 0.011f;
+            color = StrokeCodec.PALETTE.get(rand.nextInt(StrokeCodec.PALETTE.size()));
+            width = WIDTHS[rand.nextInt(WIDTHS.length)];
+            segmentsLeft = 20 + rand.nextInt(100);
+        }
+
+        heading += (float) rand.nextGaussian() * 0.3f;
+        float nx = x + (float) Math.cos(heading) * speed;
+        float ny = y + (float) Math.sin(heading) * speed;
+        if(nx < 0 || nx > 1 || ny < 0 || ny > 1) {
+            heading += (float) Math.PI;
+            nx = Math.max(0, Math.min(1, nx));
+            ny = Math.max(0, Math.min(1, ny));
+        }
+        // exactly representable on the binary wire, so the viewer can match the point
+        int qx = quantize(nx);
+        int qy = quantize(ny);
+        nx = qx / (float) MAX_COORD;
+        ny = qy / (float) MAX_COORD;
+
+        Stroke stroke = new Stroke(x, y, nx, ny, color, width);
+        stats.strokeSent(name, LoadStats.pointKey(qx, qy), now);
+        if(binary)
+            send(StrokeCodec.encode(stroke));
+        else
+            send(encodeJson(stroke));
+        x = nx;
+        y = ny;
+
+        if(--segmentsLeft == 0)
+            penUpTicks = options.getStrokeRate() / 5 + rand.nextInt(options.getStrokeRate());
+    }
+
+    private static String encodeJson(Stroke stroke) {
+        JsonObject data = new JsonObject();
+        data.addProperty("x1", stroke.x1());
+        data.addProperty("y1", stroke.y1());
+        data.addProperty("x2", stroke.x2());
+        data.addProperty("y2", stroke.y2());
+        data.addProperty("color", stroke.color());
+        data.addProperty("width", stroke.width());
+        JsonObject obj = new JsonObject();
+        obj.addProperty("type", "stroke");
+        obj.add("data", data);
+        return obj.toString();
+    }
+
+    private static int quantize(float value) {
+        return Math.round(Math.max(0, Math.min(1, value)) * MAX_COORD);
+    }
+}
@@ -0,0 +1,155 @@
+package org.DrawingGame.loadtest;
+
+/**
+ * command line options of the load test<br>
+ * every option is given as --name value, see {@link #usage()}
+ */
+public class LoadOptions {
+    private String url = null; // comma-separated servers, null starts servers in this jvm
+    private int port = 3000;
+    private int nodes = 1; // in-process nodes sharing one room broker, on consecutive ports
+    private int players = 64;
+    private int duration = 60; // seconds
+    private int warmup = 10; // seconds not counted in the summary
+    private int ramp = 5; // seconds to connect all players
+    private int strokeRate = 60; // mouse moves per second while drawing
+    private double chatRate = 0.2; // chat messages per viewer and second
+    private int guessAfter = 20; // mean seconds until a viewer guesses the word
+    private int churn = 0; // mean seconds a player stays connected, 0 keeps them
+    private double binaryShare = 0.5; // share of players that use the binary codec
+    private long serverPid = -1; // pid of an external server to report cpu time of
+    private double maxP99 = -1; // ms, -1 disables the check
+    private double minDelivered = -1; // deliveries per second, -1 disables the check
+    private int restartAfter = 0; // seconds until the first in-process node is drained into a new one, 0 never restarts
+
+    /**
+     * @param args command line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException if an option is unknown or has no value
+     */
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for(int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if(name.equals("--help"))
+                throw new IllegalArgumentException(usage());
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("missing value for " + name);
+            String value = args[++i];
+            switch (name) {
+                case "--url" -> options.url = value;
+                case "--port" -> options.port = Integer.parseInt(value);
+                case "--nodes" -> options.nodes = Integer.parseInt(value);
+                case "--players" -> options.players = Integer.parseInt(value);
+                case "--duration" -> options.duration = Integer.parseInt(value);
+                case "--warmup" -> options.warmup = Integer.parseInt(value);
+                case "--ramp" -> options.ramp = Integer.parseInt(value);
+                case "--stroke-rate" -> options.strokeRate = Integer.parseInt(value);
+                case "--chat-rate" -> options.chatRate = Double.parseDouble(value);
+                case "--guess-after" -> options.guessAfter = Integer.parseInt(value);
+                case "--churn" -> options.churn = Integer.parseInt(value);
+                case "--binary-share" -> options.binaryShare = Double.parseDouble(value);
+                case "--server-pid" -> options.serverPid = Long.parseLong(value);
+                case "--max-p99" -> options.maxP99 = Double.parseDouble(value);
+                case "--min-delivered" -> options.minDelivered = Double.parseDouble(value);
+                case "--restart-after" -> options.restartAfter = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("unknown option " + name + "\n" + usage());
+            }
+        }
+        if(options.strokeRate <= 0)
+            throw new IllegalArgumentException("--stroke-rate has to be positive");
+        if(options.nodes <= 0)
+            throw new IllegalArgumentException("--nodes has to be positive");
+        if(options.restartAfter > 0 && options.url != null)
+            throw new IllegalArgumentException("--restart-after only works with in-process servers");
+        return options;
+    }
+
+    public static String usage() {
+        return """
+                usage: java -jar Drawing_Game_LoadTest-1.2.jar [options]
+                  --url ws://host:port      servers to test, comma-separated, bots are spread over them;
+                                            starts servers in this jvm if not given; start the servers with
+                                            -Ddrawing.connectAddressRate=0, all bots connect from one address
+                  --port 3000               port of the first in-process server
+                  --nodes 1                 in-process servers that form one cluster
+                  --players 64              connected bots, rooms are filled by the server's matchmaker
+                  --duration 60             seconds to measure after the warmup
+                  --warmup 10               seconds before measuring
+                  --ramp 5                  seconds to connect all bots
+                  --stroke-rate 60          mouse moves per second while drawing
+                  --chat-rate 0.2           chat messages per viewer and second
+                  --guess-after 20          mean seconds until a viewer guesses the word, 0 never guesses
+                  --churn 0                 mean seconds a bot stays connected, 0 keeps them
+                  --binary-share 0.5        share of bots that use the binary stroke codec
+                  --server-pid -1           pid of an external server to report the cpu usage of
+                  --max-p99 -1              fail if the p99 delivery latency in ms is higher
+                  --min-delivered -1        fail if fewer strokes per second are delivered
+                  --restart-after 0         seconds until the first in-process server hands its rooms to a new one,
+                                            fails if a bot gets its seat back with fewer points""";
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getPlayers() {
+        return players;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public int getRamp() {
+        return ramp;
+    }
+
+    public int getStrokeRate() {
+        return strokeRate;
+    }
+
+    public double getChatRate() {
+        return chatRate;
+    }
+
+    public int getGuessAfter() {
+        return guessAfter;
+    }
+
+    public int getChurn() {
+        return churn;
+    }
+
+    public double getBinaryShare() {
+        return binaryShare;
+    }
+
+    public long getServerPid() {
+        return serverPid;
+    }
+
+    public double getMaxP99() {
+        return maxP99;
+    }
+
+    public double getMinDelivered() {
+        return minDelivered;
+    }
+
+    public int getRestartAfter() {
+        return restartAfter;
+    }
+}
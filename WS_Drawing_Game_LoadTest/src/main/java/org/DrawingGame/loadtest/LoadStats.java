@@ -0,0 +1,193 @@
+package org.DrawingGame.loadtest;
+
+import org.DrawingGame.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters shared by all bots<br>
+ * delivery latency is measured from the drawer sending a point to a viewer receiving it:
+ * the drawer remembers the send time per quantized point, viewers look up the last point of every
+ * stroke or polyline they receive (the server keeps the newest point when it coalesces strokes)
+ */
+public class LoadStats {
+    private static final int MAX_PENDING_POINTS = 16384; // per drawer, older points are forgotten
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder strokesSent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder guesses = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder reclaims = new LongAdder();
+    private final LongAdder scoreLosses = new LongAdder();
+    private final Map<String, Map<Integer, Long>> pendingPoints = new ConcurrentHashMap<>(); // drawer -> point -> send time
+    private final Map<String, String> words = new ConcurrentHashMap<>(); // drawer -> word of the current turn
+    private final AtomicReference<LatencyHistogram> intervalLatency = new AtomicReference<>(new LatencyHistogram());
+    private final AtomicReference<LatencyHistogram> totalLatency = new AtomicReference<>(new LatencyHistogram());
+
+    /**
+     * @param x quantized x coordinate
+     * @param y quantized y coordinate
+     * @return key of the point
+     */
+    public static int pointKey(int x, int y) {
+        return (x << 16) | y;
+    }
+
+    /**
+     * @param drawer name of the drawer
+     * @param point key of the last point of the stroke
+     * @param nanos send time
+     */
+    public void strokeSent(String drawer, int point, long nanos) {
+        Map<Integer, Long> points = pendingPoints.computeIfAbsent(drawer, d -> new ConcurrentHashMap<>());
+        if(points.size() >= MAX_PENDING_POINTS)
+            points.clear();
+        points.put(point, nanos);
+        strokesSent.increment();
+        sent.increment();
+    }
+
+    /**
+     * @param drawer name of the drawer the viewer got the stroke from
+     * @param point key of the last point of the received stroke
+     * @param nanos receive time
+     */
+    public void strokeReceived(String drawer, int point, long nanos) {
+        Map<Integer, Long> points = pendingPoints.get(drawer);
+        Long sentAt = points == null ? null : points.get(point);
+        if(sentAt == null)
+            return;
+        intervalLatency.get().record(nanos - sentAt);
+        totalLatency.get().record(nanos - sentAt);
+        delivered.increment();
+    }
+
+    /**
+     * forgets the points of the drawer, called when a turn starts
+     * @param drawer name of the drawer
+     */
+    public void turnStarted(String drawer) {
+        Map<Integer, Long> points = pendingPoints.get(drawer);
+        if(points != null)
+            points.clear();
+    }
+
+    public void publishWord(String drawer, String word) {
+        words.put(drawer, word);
+    }
+
+    public String getWord(String drawer) {
+        return words.get(drawer);
+    }
+
+    public void messageSent() {
+        sent.increment();
+    }
+
+    public void messageReceived() {
+        received.increment();
+    }
+
+    public void guessed() {
+        guesses.increment();
+    }
+
+    public void connected() {
+        connects.increment();
+    }
+
+    public void disconnected() {
+        disconnects.increment();
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    /**
+     * @param reclaimed whether the server gave the bot its old player back
+     */
+    public void reconnected(boolean reclaimed) {
+        reconnects.increment();
+        if(reclaimed)
+            reclaims.increment();
+    }
+
+    /**
+     * a reclaimed player came back with fewer points than it had before
+     */
+    public void scoreLost(String name, int before, int after) {
+        scoreLosses.increment();
+        System.out.println("score lost: " + name + " had " + before + " points, got back " + after);
+    }
+
+    /**
+     * @return latency histogram since the last call, a new one is started
+     */
+    public LatencyHistogram swapIntervalLatency() {
+        return intervalLatency.getAndSet(new LatencyHistogram());
+    }
+
+    /**
+     * drops the latencies recorded so far from the summary, called at the end of the warmup
+     */
+    public void resetTotalLatency() {
+        totalLatency.set(new LatencyHistogram());
+    }
+
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency.get();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getStrokesSent() {
+        return strokesSent.sum();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getGuesses() {
+        return guesses.sum();
+    }
+
+    public long getConnects() {
+        return connects.sum();
+    }
+
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    public long getReclaims() {
+        return reclaims.sum();
+    }
+
+    public long getScoreLosses() {
+        return scoreLosses.sum();
+    }
+}
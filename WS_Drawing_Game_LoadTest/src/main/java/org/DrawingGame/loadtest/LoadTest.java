@@ -0,0 +1,320 @@
+package org.DrawingGame.loadtest;
+
+import org.DrawingGame.GameServer;
+import org.DrawingGame.LatencyHistogram;
+import org.DrawingGame.LocalRoomBus;
+import org.DrawingGame.RoomBroker;
+import org.DrawingGame.ServerConfig;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * end-to-end load test<br>
+ * connects bots to a local or in-process server, reports latency, throughput and cpu/heap every second
+ * and fails with exit code 1 if the summary is worse than the given limits<br>
+ * in-process cpu and heap include the bots, use --url with --server-pid to measure the server alone<br>
+ * with --restart-after the first in-process server is drained into a new one under load, like a deploy,
+ * and the test fails if a bot gets its seat back with fewer points than it had
+ */
+public class LoadTest {
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final long LOOP_INTERVAL = 100; // ms
+
+    private final LoadOptions options;
+    private final LoadStats stats = new LoadStats();
+    private final Random rand = new Random();
+    private final ScheduledExecutorService botExecutor;
+    private final Map<Bot, ScheduledFuture<?>> bots = new LinkedHashMap<>();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private List<String> urls;
+    private RoomBroker broker;
+    private Thread restart;
+    private int botIdx = 0;
+    private long lastServerCpu = -1;
+    private long lastServerCpuSample;
+
+    public LoadTest(LoadOptions options) {
+        this.options = options;
+        this.botExecutor = Executors.newScheduledThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+            Thread thread = new Thread(r, "bot-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(new LoadTest(options).run() ? 0 : 1);
+    }
+
+    /**
+     * runs warmup and measurement
+     * @return true if all limits were met
+     */
+    public boolean run() throws InterruptedException {
+        List<GameServer> servers = new ArrayList<>();
+        if(options.getUrl() != null) {
+            urls = List.of(options.getUrl().split(","));
+        } else {
+            System.setProperty("java.awt.headless", "true");
+            urls = new ArrayList<>();
+            broker = new RoomBroker(RoomBroker.DEFAULT_ROOM_SIZE, RoomBroker.DEFAULT_LEASE);
+            for(int i = 0; i < options.getNodes(); i++) {
+                ServerConfig config = ServerConfig.fromSystemProperties();
+                config.setConnectAddressRate(0); // all bots connect from one address
+                if(i > 0)
+                    config.setMetricsPort(0); // the first node serves the metrics
+                else if(options.getRestartAfter() > 0)
+                    config.setHandoffAddress("127.0.0.1:" + handoffPort());
+                GameServer server = new GameServer("127.0.0.1", options.getPort() + i, config, new LocalRoomBus(broker));
+                server.start();
+                servers.add(server);
+                urls.add("ws://127.0.0.1:" + (options.getPort() + i));
+            }
+            Thread.sleep(500); // let the servers bind before the first bots connect
+        }
+
+        long start = System.nanoTime();
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(options.getWarmup());
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(options.getDuration());
+        long nextReport = start + REPORT_INTERVAL;
+        Sample last = sample(start);
+        Sample measureStart = null;
+        double cpuSum = 0;
+        int cpuSamples = 0;
+        long maxHeap = 0;
+
+        while(true) {
+            long now = System.nanoTime();
+            if(now >= end)
+                break;
+            replaceDoneBots(now);
+            connectBots(now - start);
+            if(restart == null && options.getRestartAfter() > 0 && now - start >= TimeUnit.SECONDS.toNanos(options.getRestartAfter())) {
+                restart = new Thread(() -> restartNode(servers), "restart");
+                restart.start();
+            }
+
+            if(measureStart == null && now >= warmupEnd) {
+                stats.resetTotalLatency();
+                measureStart = sample(now);
+                System.out.println("--- warmup done, measuring for " + options.getDuration() + "s ---");
+            }
+            if(now >= nextReport) {
+                Sample current = sample(now);
+                report(now - start, last, current, stats.swapIntervalLatency());
+                if(measureStart != null && current.cpu >= 0) {
+                    cpuSum += current.cpu;
+                    cpuSamples++;
+                }
+                if(measureStart != null)
+                    maxHeap = Math.max(maxHeap, current.heap);
+                last = current;
+                nextReport += REPORT_INTERVAL;
+            }
+            Thread.sleep(LOOP_INTERVAL);
+        }
+
+        Sample measureEnd = sample(System.nanoTime());
+        if(measureStart == null)
+            measureStart = measureEnd;
+        boolean passed = summary(measureStart, measureEnd, cpuSamples == 0 ? -1 : cpuSum / cpuSamples, maxHeap);
+
+        for(Bot bot : bots.keySet()) {
+            bot.close();
+        }
+        botExecutor.shutdownNow();
+        if(restart != null)
+            restart.join();
+        for(GameServer server : servers) {
+            server.stop(1000);
+        }
+        return passed;
+    }
+
+    /**
+     * connects bots until the target for the elapsed ramp time is reached
+     */
+    private void connectBots(long elapsed) {
+        long rampNanos = TimeUnit.SECONDS.toNanos(options.getRamp());
+        int target = rampNanos == 0 ? options.getPlayers()
+                : (int) Math.min(options.getPlayers(), (double) options.getPlayers() * elapsed / rampNanos);
+        while(bots.size() < target) {
+            String url = urls.get(botIdx % urls.size());
+            startBot(new Bot(url, "bot-" + botIdx++, rand.nextDouble() < options.getBinaryShare(), options, stats, new Random(rand.nextLong())));
+        }
+    }
+
+    private void startBot(Bot bot) {
+        bot.connect();
+        long period = TimeUnit.SECONDS.toNanos(1) / options.getStrokeRate();
+        ScheduledFuture<?> tick = botExecutor.scheduleAtFixedRate(() -> bot.tick(System.nanoTime()),
+                rand.nextLong(period), period, TimeUnit.NANOSECONDS);
+        bots.put(bot, tick);
+    }
+
+    /**
+     * removes bots that left or got disconnected, {@link #connectBots(long)} replaces them<br>
+     * bots that lost their connection to a restart reconnect as the same player after a delay
+     */
+    private void replaceDoneBots(long now) {
+        List<Bot> reconnecting = new ArrayList<>();
+        Iterator<Map.Entry<Bot, ScheduledFuture<?>>> it = bots.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Bot, ScheduledFuture<?>> entry = it.next();
+            Bot bot = entry.getKey();
+            if(!bot.isDone())
+                continue;
+            Bot successor = bot.reconnect(now);
+            if(successor == null && bot.willReconnect())
+                continue; // keeps its place until the reconnect delay passed
+            entry.getValue().cancel(false);
+            it.remove();
+            if(successor != null)
+                reconnecting.add(successor);
+        }
+        for(Bot bot : reconnecting) {
+            startBot(bot);
+        }
+    }
+
+    /**
+     * @return port the new server waits for the hand-off on, the one after the ports of the nodes
+     */
+    private int handoffPort() {
+        return options.getPort() + options.getNodes();
+    }
+
+    /**
+     * replaces the first node like a deploy: a new server on the same port waits for the hand-off,
+     * the old one is drained into it
+     */
+    private void restartNode(List<GameServer> servers) {
+        long start = System.nanoTime();
+        System.out.println("--- restarting node 0 ---");
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        config.setConnectAddressRate(0);
+        config.setHandoffPort(handoffPort());
+        config.setHandoffAddress("127.0.0.1:" + handoffPort());
+        GameServer successor = new GameServer("127.0.0.1", options.getPort(), config, new LocalRoomBus(broker));
+        Thread starter = new Thread(successor::start, "successor");
+        starter.start();
+        servers.getFirst().drain();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        servers.set(0, successor);
+        System.out.printf("--- node 0 restarted in %.0fms ---%n", (System.nanoTime() - start) / 1e6);
+    }
+
+    private record Sample(long nanos, long sent, long received, long strokesSent, long delivered, double cpu, long heap) {
+    }
+
+    private Sample sample(long now) {
+        return new Sample(now, stats.getSent(), stats.getReceived(), stats.getStrokesSent(), stats.getDelivered(),
+                cpuLoad(now), options.getUrl() == null ? memory.getHeapMemoryUsage().getUsed() : -1);
+    }
+
+    /**
+     * @return cpu usage in percent of one core, -1 if unknown
+     */
+    private double cpuLoad(long now) {
+        if(options.getUrl() == null)
+            return os.getProcessCpuLoad() * 100 * os.getAvailableProcessors();
+        if(options.getServerPid() < 0)
+            return -1;
+
+        long cpu = ProcessHandle.of(options.getServerPid())
+                .flatMap(p -> p.info().totalCpuDuration())
+                .map(Duration::toNanos)
+                .orElse(-1L);
+        double load = -1;
+        if(cpu >= 0 && lastServerCpu >= 0 && now > lastServerCpuSample)
+            load = (cpu - lastServerCpu) * 100.0 / (now - lastServerCpuSample);
+        lastServerCpu = cpu;
+        lastServerCpuSample = now;
+        return load;
+    }
+
+    private void report(long elapsed, Sample from, Sample to, LatencyHistogram latency) {
+        double seconds = (to.nanos - from.nanos) / 1e9;
+        System.out.printf("t=%3ds bots=%d sent/s=%.0f recv/s=%.0f strokes/s=%.0f delivered/s=%.0f latency p50=%.1fms p99=%.1fms max=%.1fms cpu=%s heap=%s%n",
+                TimeUnit.NANOSECONDS.toSeconds(elapsed), bots.size(),
+                (to.sent - from.sent) / seconds, (to.received - from.received) / seconds,
+                (to.strokesSent - from.strokesSent) / seconds, (to.delivered - from.delivered) / seconds,
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)), millis(latency.getMax()),
+                to.cpu < 0 ? "n/a" : String.format("%.0f%%", to.cpu),
+                to.heap < 0 ? "n/a" : (to.heap >> 20) + "MiB");
+    }
+
+    /**
+     * prints the summary of the measured time and checks the limits
+     * @return true if all limits were met
+     */
+    private boolean summary(Sample from, Sample to, double avgCpu, long maxHeap) {
+        double seconds = Math.max(1e-9, (to.nanos - from.nanos) / 1e9);
+        LatencyHistogram latency = stats.getTotalLatency();
+        double deliveredPerSecond = (to.delivered - from.delivered) / seconds;
+        double p99 = millis(latency.getValueAtPercentile(99));
+
+        System.out.println("=== summary ===");
+        System.out.printf("players: %d, connects: %d, disconnects: %d, errors: %d, correct guesses: %d%n",
+                options.getPlayers(), stats.getConnects(), stats.getDisconnects(), stats.getErrors(), stats.getGuesses());
+        System.out.printf("messages: %.0f sent/s, %.0f received/s%n",
+                (to.sent - from.sent) / seconds, (to.received - from.received) / seconds);
+        System.out.printf("strokes: %.0f sent/s, %.0f delivered/s%n", (to.strokesSent - from.strokesSent) / seconds, deliveredPerSecond);
+        System.out.printf("delivery latency: p50 %.2fms, p90 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms (%d samples)%n",
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)), p99,
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMax()), latency.getCount());
+        if(options.getRestartAfter() > 0)
+            System.out.printf("restart: %d reconnects, %d seats reclaimed, %d scores lost%n",
+                    stats.getReconnects(), stats.getReclaims(), stats.getScoreLosses());
+        System.out.printf("cpu: %s, max heap: %s%n", avgCpu < 0 ? "n/a" : String.format("%.0f%% of one core", avgCpu),
+                maxHeap <= 0 ? "n/a" : (maxHeap >> 20) + "MiB");
+
+        List<String> failures = new ArrayList<>();
+        if(stats.getConnects() == 0)
+            failures.add("no bot could connect to " + String.join(", ", urls));
+        else if(latency.getCount() == 0 && (options.getMaxP99() >= 0 || options.getMinDelivered() >= 0))
+            failures.add("no stroke was delivered");
+        if(options.getMaxP99() >= 0 && p99 > options.getMaxP99())
+            failures.add(String.format("p99 latency %.2fms is above %.2fms", p99, options.getMaxP99()));
+        if(options.getMinDelivered() >= 0 && deliveredPerSecond < options.getMinDelivered())
+            failures.add(String.format("%.0f delivered/s is below %.0f", deliveredPerSecond, options.getMinDelivered()));
+        if(options.getRestartAfter() > 0 && stats.getReclaims() == 0)
+            failures.add("no bot got its seat back after the restart");
+        if(stats.getScoreLosses() > 0)
+            failures.add(stats.getScoreLosses() + " bots got their seat back with fewer points");
+        for(String failure : failures) {
+            System.out.println("FAIL: " + failure);
+        }
+        return failures.isEmpty();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
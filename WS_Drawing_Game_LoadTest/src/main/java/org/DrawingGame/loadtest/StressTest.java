@@ -0,0 +1,326 @@
+package org.DrawingGame.loadtest;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.DrawingGame.GameServer;
+import org.DrawingGame.MetricsMXBean;
+import org.DrawingGame.RoomBroker;
+import org.DrawingGame.ServerConfig;
+import org.DrawingGame.Stroke;
+import org.DrawingGame.StrokeCodec;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * concurrency stress test of the game sessions<br>
+ * in every round thousands of players join an in-process server at the same moment,
+ * then all drawers draw, all viewers guess and all players leave at the same moment<br>
+ * fails with exit code 1 if a player could not join, a room got more players than fit, a drawing or a correct guess
+ * did not reach its room, or a session or player is left on the server after everyone left
+ */
+public class StressTest {
+    private static final long PHASE_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+    private static final long POLL_INTERVAL = 50; // ms
+    private static final int CONNECT_TIMEOUT = 30; // seconds
+
+    private final int port;
+    private final int playerCount;
+    private final int rounds;
+    private final int strokes;
+    private final List<String> failures = new ArrayList<>();
+    private MetricsMXBean metrics;
+
+    public StressTest(int port, int playerCount, int rounds, int strokes) {
+        this.port = port;
+        this.playerCount = playerCount;
+        this.rounds = rounds;
+        this.strokes = strokes;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = 3000, players = 2000, rounds = 3, strokes = 20;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if(name.equals("--help") || i + 1 >= args.length)
+                    throw new IllegalArgumentException(usage());
+                int value = Integer.parseInt(args[++i]);
+                switch (name) {
+                    case "--port" -> port = value;
+                    case "--players" -> players = value;
+                    case "--rounds" -> rounds = value;
+                    case "--strokes" -> strokes = value;
+                    default -> throw new IllegalArgumentException("unknown option " + name + "\n" + usage());
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(new StressTest(port, players, rounds, strokes).run() ? 0 : 1);
+    }
+
+    public static String usage() {
+        return """
+                usage: java -cp Drawing_Game_LoadTest-1.2.jar org.DrawingGame.loadtest.StressTest [options]
+                  --port 3000               port of the in-process server
+                  --players 2000            players that join, draw, guess and leave at the same moment
+                  --rounds 3                times the players join and leave
+                  --strokes 20              strokes every drawer sends at once""";
+    }
+
+    /**
+     * runs all rounds against a server started in this jvm
+     * @return true if no round failed
+     */
+    public boolean run() throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        config.setConnectRate(0); // all players connect at once
+        config.setConnectAddressRate(0); // from one address
+        config.setMaxConnections(Math.max(config.getMaxConnections(), playerCount));
+        GameServer server = new GameServer("127.0.0.1", port, config);
+        server.start();
+        Thread.sleep(500); // let the server bind before the first players connect
+        try {
+            metrics = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                    new ObjectName("org.DrawingGame:type=Metrics"), MetricsMXBean.class);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for(int round = 1; round <= rounds && failures.isEmpty(); round++) {
+            runRound(round);
+        }
+        server.stop(1000);
+
+        for(String failure : failures) {
+            System.out.println("FAIL: " + failure);
+        }
+        if(failures.isEmpty())
+            System.out.println("=== passed ===");
+        return failures.isEmpty();
+    }
+
+    private void runRound(int round) throws InterruptedException {
+        Map<Long, String> words = new ConcurrentHashMap<>(); // room -> word of its drawer
+        List<StressPlayer> players = new ArrayList<>(playerCount);
+        for(int i = 0; i < playerCount; i++) {
+            players.add(new StressPlayer(port, "stress-" + round + "-" + i, i % 2 == 0, words));
+        }
+
+        long start = System.nanoTime();
+        runAtOnce(players, StressPlayer::join);
+        if(!await("round " + round + ": not all players joined", () -> players.stream().allMatch(StressPlayer::hasJoined)))
+            return;
+        long joined = System.nanoTime();
+
+        Map<Long, List<StressPlayer>> rooms = new HashMap<>();
+        for(StressPlayer player : players) {
+            rooms.computeIfAbsent(player.room, r -> new ArrayList<>()).add(player);
+        }
+        for(Map.Entry<Long, List<StressPlayer>> room : rooms.entrySet()) {
+            if(room.getValue().size() > RoomBroker.DEFAULT_ROOM_SIZE)
+                failures.add("round " + round + ": room " + room.getKey() + " got " + room.getValue().size() + " players");
+        }
+        List<StressPlayer> games = players.stream().filter(p -> rooms.get(p.room).size() >= 2).toList();
+        if(!await("round " + round + ": not every room started a turn",
+                () -> rooms.entrySet().stream().allMatch(r -> r.getValue().size() < 2 || words.containsKey(r.getKey()))))
+            return;
+
+        List<StressPlayer> drawers = games.stream().filter(p -> p.drawing).toList();
+        List<StressPlayer> guessers = games.stream().filter(p -> !p.drawing).toList();
+        runAtOnce(drawers, p -> p.draw(strokes));
+        if(!await("round " + round + ": drawings did not reach all viewers", () -> guessers.stream().allMatch(p -> p.drawings.sum() > 0)))
+            return;
+
+        runAtOnce(guessers, p -> p.guess(words.get(p.room)));
+        if(!await("round " + round + ": correct guesses were lost", () -> guessers.stream().allMatch(p -> p.guessed)))
+            return;
+
+        long leaving = System.nanoTime();
+        runAtOnce(players, StressPlayer::leave);
+        if(!await("round " + round + ": sessions or players left after everyone left",
+                () -> metrics.getActivePlayers() == 0 && metrics.getActiveSessions() == 0))
+            System.out.printf("  %d sessions, %d players left%n", metrics.getActiveSessions(), metrics.getActivePlayers());
+        long left = System.nanoTime();
+
+        int errors = players.stream().mapToInt(p -> p.errors.get()).sum();
+        if(errors > 0)
+            failures.add("round " + round + ": players got " + errors + " errors");
+        System.out.printf("round %d: %d players in %d rooms joined in %.0fms, %d drawers, %d correct guesses, left in %.0fms, %.1fs total%n",
+                round, players.size(), rooms.size(), (joined - start) / 1e6, drawers.size(), guessers.size(),
+                (left - leaving) / 1e6, (left - start) / 1e9);
+    }
+
+    /**
+     * runs the action for all players on a thread each, released at the same moment
+     */
+    private static void runAtOnce(List<StressPlayer> players, Consumer<StressPlayer> action) throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch ready = new CountDownLatch(players.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for(StressPlayer player : players) {
+                executor.execute(() -> {
+                    ready.countDown();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    action.accept(player);
+                });
+            }
+            ready.await();
+            gate.countDown();
+        }
+    }
+
+    /**
+     * @return true if the condition became true before the timeout, adds the failure otherwise
+     */
+    private boolean await(String failure, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + PHASE_TIMEOUT;
+        while(!condition.getAsBoolean()) {
+            if(System.nanoTime() >= deadline) {
+                failures.add(failure);
+                return false;
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        return true;
+    }
+
+    /**
+     * player that joins, draws or guesses once and leaves when told to
+     */
+    private static class StressPlayer extends WebSocketClient {
+        private final boolean binary;
+        private final Map<Long, String> words;
+        private final LongAdder drawings = new LongAdder(); // stroke messages received
+        private final AtomicInteger errors = new AtomicInteger();
+        private volatile long room = -1;
+        private volatile int id = -1;
+        private volatile boolean drawing = false;
+        private volatile boolean guessed = false;
+
+        StressPlayer(int port, String name, boolean binary, Map<Long, String> words) {
+            super(URI.create("ws://127.0.0.1:" + port + "/?username=" + name + (binary ? "&codec=" + StrokeCodec.QUERY_VALUE : "")));
+            this.binary = binary;
+            this.words = words;
+        }
+
+        void join() {
+            try {
+                if(!connectBlocking(CONNECT_TIMEOUT, TimeUnit.SECONDS))
+                    errors.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean hasJoined() {
+            return room != -1 && id != -1;
+        }
+
+        void draw(int count) {
+            for(int i = 0; i < count; i++) {
+                float x = 0.1f + 0.8f * i / count;
+                Stroke stroke = new Stroke(x, 0.5f, x + 0.01f, 0.6f, StrokeCodec.PALETTE.getFirst(), 4);
+                if(binary) {
+                    send(StrokeCodec.encode(stroke));
+                } else {
+                    JsonObject data = new JsonObject();
+                    data.addProperty("x1", stroke.x1());
+                    data.addProperty("y1", stroke.y1());
+                    data.addProperty("x2", stroke.x2());
+                    data.addProperty("y2", stroke.y2());
+                    data.addProperty("color", stroke.color());
+                    data.addProperty("width", stroke.width());
+                    send(message("stroke", data).toString());
+                }
+            }
+        }
+
+        void guess(String word) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("type", "message");
+            obj.addProperty("data", word);
+            send(obj.toString());
+        }
+
+        void leave() {
+            try {
+                closeBlocking();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static JsonObject message(String type, JsonObject data) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("type", type);
+            obj.add("data", data);
+            return obj;
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            JsonObject obj = JsonParser.parseString(message).getAsJsonObject();
+            switch (obj.get("type").getAsString()) {
+                case "id" -> id = Integer.parseInt(obj.get("data").getAsString());
+                case "room" -> room = Long.parseLong(obj.get("data").getAsString());
+                case "word" -> {
+                    drawing = true;
+                    words.put(room, obj.get("data").getAsString()); // "room" is sent before the first turn starts
+                }
+                case "stroke", "polyline", "strokes" -> drawings.increment();
+                case "correct" -> {
+                    if(Integer.parseInt(obj.get("id").getAsString()) == id)
+                        guessed = true;
+                }
+                case "error" -> errors.incrementAndGet();
+                default -> { }
+            }
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            drawings.increment();
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+}